@@ -3,16 +3,26 @@ package model;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 public class Epic extends Task {
-    private final ArrayList<Integer> subtaskIdList;
+    private final ConcurrentSkipListSet<Integer> subtaskIdList;
 
     private LocalDateTime endTime;
 
+    //Накопленные данные подзадач, из которых считаются статус и время эпика. Не сериализуются
+    private transient SubtaskRollup rollup;
+
     public Epic(int id, String name, String description, TaskStatus status, ArrayList<Integer> subtaskIdList,
                 Duration duration, LocalDateTime startTime) {
         super(id, name, description, status, duration, startTime);
-        this.subtaskIdList = subtaskIdList;
+        this.subtaskIdList = new ConcurrentSkipListSet<>(subtaskIdList);
         endTime = null;
     }
 
@@ -24,12 +34,25 @@ public class Epic extends Task {
         this(-1, name, description, TaskStatus.NEW, new ArrayList<>());
     }
 
+    //Копия с текущими расчётными полями, без накопленных данных подзадач
+    public Epic(Epic epic) {
+        this(epic.id, epic.name, epic.description, epic.status, epic.getSubtaskIdList(), epic.duration, epic.startTime);
+        endTime = epic.endTime;
+    }
+
     public ArrayList<Integer> getSubtaskIdList() {
         return new ArrayList<>(subtaskIdList);
     }
 
+    //id подзадач больше afterId по возрастанию. Живое представление только для чтения
+    public NavigableSet<Integer> getSubtaskIdsAfter(int afterId) {
+        return Collections.unmodifiableNavigableSet(subtaskIdList.tailSet(afterId, false));
+    }
+
     public void clearSubtaskIdList() {
         subtaskIdList.clear();
+        rollup = null;
+        applyRollup();
     }
 
     public void addSubtaskId(int id) {
@@ -42,6 +65,43 @@ public class Epic extends Task {
         subtaskIdList.remove(id);
     }
 
+    //Учитывает подзадачу в статусе и времени эпика за O(log k)
+    public void addSubtaskData(Subtask subtask) {
+        getRollup().add(subtask);
+        applyRollup();
+    }
+
+    //Заменяет подзадачи эпика и пересчитывает статус и время за один проход
+    public void setSubtaskData(Collection<Subtask> subtasks) {
+        subtaskIdList.clear();
+        rollup = new SubtaskRollup();
+        for (Subtask subtask : subtasks) {
+            addSubtaskId(subtask.getId());
+            rollup.add(subtask);
+        }
+        applyRollup();
+    }
+
+    public void removeSubtaskData(Subtask subtask) {
+        getRollup().remove(subtask);
+        applyRollup();
+    }
+
+    private SubtaskRollup getRollup() {
+        if (rollup == null) {
+            rollup = new SubtaskRollup();
+        }
+        return rollup;
+    }
+
+    private void applyRollup() {
+        SubtaskRollup currRollup = getRollup();
+        status = currRollup.getStatus();
+        startTime = currRollup.startTimes.isEmpty() ? null : currRollup.startTimes.firstKey();
+        endTime = currRollup.endTimes.isEmpty() ? null : currRollup.endTimes.lastKey();
+        duration = currRollup.startTimes.isEmpty() ? null : currRollup.totalDuration;
+    }
+
     public void setEndTime(LocalDateTime endTime) {
         this.endTime = endTime;
     }
@@ -65,4 +125,86 @@ public class Epic extends Task {
                 ", endTime=" + getEndTime() +
                 '}';
     }
-}
\ No newline at end of file
+
+    /*
+     * Вклад каждой подзадачи запоминается по id в момент учёта. Поэтому вычитается именно то, что было добавлено,
+     * даже если сохранённый объект подзадачи изменили на месте до вызова обновления
+     */
+    private static class SubtaskRollup {
+        private final int[] statusCounts = new int[TaskStatus.values().length];
+        private final Map<Integer, Contribution> contributions = new HashMap<>();
+        private Duration totalDuration = Duration.ZERO;
+        //Мультимножества времени начала и окончания подзадач: время -> количество подзадач
+        private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+        private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+
+        //Повторный учёт той же подзадачи заменяет её прежний вклад
+        private void add(Subtask subtask) {
+            Contribution contribution = new Contribution(subtask);
+            Contribution previous = contributions.put(subtask.getId(), contribution);
+            if (previous != null) {
+                subtract(previous);
+            }
+            if (contribution.status != null) {
+                statusCounts[contribution.status.ordinal()]++;
+            }
+            if (contribution.start != null) {
+                totalDuration = totalDuration.plus(contribution.duration);
+                startTimes.merge(contribution.start, 1, Integer::sum);
+                endTimes.merge(contribution.end, 1, Integer::sum);
+            }
+        }
+
+        private void remove(Subtask subtask) {
+            Contribution contribution = contributions.remove(subtask.getId());
+            if (contribution != null) {
+                subtract(contribution);
+            }
+        }
+
+        private void subtract(Contribution contribution) {
+            if (contribution.status != null) {
+                statusCounts[contribution.status.ordinal()]--;
+            }
+            if (contribution.start != null) {
+                totalDuration = totalDuration.minus(contribution.duration);
+                decrement(startTimes, contribution.start);
+                decrement(endTimes, contribution.end);
+            }
+        }
+
+        private static void decrement(TreeMap<LocalDateTime, Integer> times, LocalDateTime time) {
+            int count = times.get(time);
+            if (count == 1) {
+                times.remove(time);
+            } else {
+                times.put(time, count - 1);
+            }
+        }
+
+        private TaskStatus getStatus() {
+            int subtaskCount = contributions.size();
+            if (subtaskCount == 0) return TaskStatus.NEW;
+            for (TaskStatus taskStatus : TaskStatus.values()) {
+                if (statusCounts[taskStatus.ordinal()] == subtaskCount) return taskStatus;
+            }
+            return TaskStatus.IN_PROGRESS;
+        }
+    }
+
+    //Значения подзадачи на момент учёта. Время учитывается, только если заданы и начало, и продолжительность
+    private static final class Contribution {
+        private final TaskStatus status;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Duration duration;
+
+        private Contribution(Subtask subtask) {
+            status = subtask.getStatus();
+            boolean timed = subtask.getStartTime() != null && subtask.getDuration() != null;
+            start = timed ? subtask.getStartTime() : null;
+            end = timed ? subtask.getEndTime() : null;
+            duration = timed ? subtask.getDuration() : null;
+        }
+    }
+}
@@ -1,13 +0,0 @@
-package model;
-
-public class Node<E> {
-    public E data;
-    public Node<E> next;
-    public Node<E> prev;
-
-    public Node(Node<E> prev, E data, Node<E> next) {
-        this.data = data;
-        this.next = next;
-        this.prev = prev;
-    }
-}
\ No newline at end of file
@@ -32,6 +32,11 @@ public class Subtask extends Task {
         this(-1, name, description, status, epicId);
     }
 
+    public Subtask(Subtask subtask) {
+        this(subtask.id, subtask.name, subtask.description, subtask.status, subtask.epicId, subtask.duration,
+                subtask.startTime);
+    }
+
     public int getEpicId() {
         return epicId;
     }
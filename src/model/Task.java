@@ -35,6 +35,10 @@ public class Task {
         this(-1, name, description, status);
     }
 
+    public Task(Task task) {
+        this(task.id, task.name, task.description, task.status, task.duration, task.startTime);
+    }
+
     public String getName() {
         return name;
     }
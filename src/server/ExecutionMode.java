@@ -0,0 +1,7 @@
+package server;
+
+public enum ExecutionMode {
+    DISPATCHER_THREAD,
+    VIRTUAL_THREADS,
+    PLATFORM_POOL
+}
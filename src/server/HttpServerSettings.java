@@ -0,0 +1,153 @@
+package server;
+
+public class HttpServerSettings {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_BACKLOG = 0;
+    public static final long DEFAULT_MAX_REQUEST_BODY_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 1024;
+
+    private final int port;
+    private final int backlog;
+    private final ExecutionMode executionMode;
+    //Используются только в режиме PLATFORM_POOL
+    private final int poolSize;
+    private final int queueCapacity;
+    //Запросы с телом больше этого размера отклоняются с кодом 413
+    private final long maxRequestBodyBytes;
+    //Сжимать ли JSON-ответы, если клиент принимает gzip или deflate
+    private final boolean compressionEnabled;
+    //Ответы меньше этого размера не сжимаются
+    private final int compressionThresholdBytes;
+
+    public HttpServerSettings(int port, int backlog, ExecutionMode executionMode, int poolSize, int queueCapacity) {
+        this(port, backlog, executionMode, poolSize, queueCapacity, DEFAULT_MAX_REQUEST_BODY_BYTES,
+                true, DEFAULT_COMPRESSION_THRESHOLD_BYTES);
+    }
+
+    public HttpServerSettings(int port, int backlog, ExecutionMode executionMode, int poolSize, int queueCapacity,
+                              long maxRequestBodyBytes, boolean compressionEnabled, int compressionThresholdBytes) {
+        if (maxRequestBodyBytes <= 0) {
+            throw new IllegalArgumentException("Максимальный размер тела запроса должен быть положительным");
+        }
+        if (compressionThresholdBytes < 0) {
+            throw new IllegalArgumentException("Порог сжатия не может быть отрицательным");
+        }
+        if (executionMode == ExecutionMode.PLATFORM_POOL && (poolSize <= 0 || queueCapacity <= 0)) {
+            throw new IllegalArgumentException("Размер пула и очереди должны быть положительными");
+        }
+        this.port = port;
+        this.backlog = backlog;
+        this.executionMode = executionMode;
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+        this.maxRequestBodyBytes = maxRequestBodyBytes;
+        this.compressionEnabled = compressionEnabled;
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    //Все запросы обрабатываются единственным потоком-диспетчером HttpServer
+    public static HttpServerSettings dispatcherThread() {
+        return new HttpServerSettings(DEFAULT_PORT, DEFAULT_BACKLOG, ExecutionMode.DISPATCHER_THREAD, 0, 0);
+    }
+
+    //Каждый запрос обрабатывается в отдельном виртуальном потоке
+    public static HttpServerSettings virtualThreads() {
+        return new HttpServerSettings(DEFAULT_PORT, DEFAULT_BACKLOG, ExecutionMode.VIRTUAL_THREADS, 0, 0);
+    }
+
+    //Фиксированный пул платформенных потоков с ограниченной очередью
+    public static HttpServerSettings platformPool(int poolSize, int queueCapacity) {
+        return new HttpServerSettings(DEFAULT_PORT, DEFAULT_BACKLOG, ExecutionMode.PLATFORM_POOL, poolSize, queueCapacity);
+    }
+
+    /*
+     * Настройки из системных свойств:
+     * kanban.server.port, kanban.server.backlog, kanban.server.mode (DISPATCHER_THREAD, VIRTUAL_THREADS, PLATFORM_POOL),
+     * kanban.server.poolSize, kanban.server.queueCapacity, kanban.server.maxRequestBodyBytes,
+     * kanban.server.compression (true, false), kanban.server.compressionThresholdBytes
+     */
+    public static HttpServerSettings fromSystemProperties() {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        return new HttpServerSettings(
+                Integer.getInteger("kanban.server.port", DEFAULT_PORT),
+                Integer.getInteger("kanban.server.backlog", DEFAULT_BACKLOG),
+                ExecutionMode.valueOf(System.getProperty("kanban.server.mode", ExecutionMode.VIRTUAL_THREADS.name())),
+                Integer.getInteger("kanban.server.poolSize", availableProcessors * 2),
+                Integer.getInteger("kanban.server.queueCapacity", 1024),
+                Long.getLong("kanban.server.maxRequestBodyBytes", DEFAULT_MAX_REQUEST_BODY_BYTES),
+                Boolean.parseBoolean(System.getProperty("kanban.server.compression", "true")),
+                Integer.getInteger("kanban.server.compressionThresholdBytes", DEFAULT_COMPRESSION_THRESHOLD_BYTES));
+    }
+
+    public HttpServerSettings withPort(int port) {
+        return new HttpServerSettings(port, backlog, executionMode, poolSize, queueCapacity, maxRequestBodyBytes,
+                compressionEnabled, compressionThresholdBytes);
+    }
+
+    public HttpServerSettings withBacklog(int backlog) {
+        return new HttpServerSettings(port, backlog, executionMode, poolSize, queueCapacity, maxRequestBodyBytes,
+                compressionEnabled, compressionThresholdBytes);
+    }
+
+    public HttpServerSettings withCompression(boolean compressionEnabled) {
+        return new HttpServerSettings(port, backlog, executionMode, poolSize, queueCapacity, maxRequestBodyBytes,
+                compressionEnabled, compressionThresholdBytes);
+    }
+
+    // Минимальный размер сжимаемого ответа. На буферизацию ответов не влияет
+    public HttpServerSettings withCompressionThresholdBytes(int compressionThresholdBytes) {
+        return new HttpServerSettings(port, backlog, executionMode, poolSize, queueCapacity, maxRequestBodyBytes,
+                compressionEnabled, compressionThresholdBytes);
+    }
+
+    public HttpServerSettings withMaxRequestBodyBytes(long maxRequestBodyBytes) {
+        return new HttpServerSettings(port, backlog, executionMode, poolSize, queueCapacity, maxRequestBodyBytes,
+                compressionEnabled, compressionThresholdBytes);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getMaxRequestBodyBytes() {
+        return maxRequestBodyBytes;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpServerSettings{" +
+                "port=" + port +
+                ", backlog=" + backlog +
+                ", executionMode=" + executionMode +
+                ", poolSize=" + poolSize +
+                ", queueCapacity=" + queueCapacity +
+                ", maxRequestBodyBytes=" + maxRequestBodyBytes +
+                ", compressionEnabled=" + compressionEnabled +
+                ", compressionThresholdBytes=" + compressionThresholdBytes +
+                '}';
+    }
+}
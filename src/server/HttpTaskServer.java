@@ -4,53 +4,139 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.sun.net.httpserver.HttpServer;
 
-import server.json.DurationAdapter;
-import server.json.LocalDateTimeAdapter;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import server.json.*;
 import server.handlers.*;
 import service.FileBackedTaskManager;
+import service.HistorySessionSettings;
+import service.HistorySessions;
+import service.PersistenceSettings;
 import service.TaskManager;
+import utils.Managers;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.concurrent.*;
 
 public class HttpTaskServer {
-    private static final int PORT = 8080;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
     private static final Gson gson = new GsonBuilder()
             .serializeNulls()
             .registerTypeAdapter(Duration.class, new DurationAdapter())
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapter(Task.class, new TaskAdapter())
+            .registerTypeAdapter(Subtask.class, new SubtaskAdapter())
+            .registerTypeAdapter(Epic.class, new EpicAdapter())
             .create();
 
     private final HttpServer httpServer;
+    private final TaskManager taskManager;
+    private final HttpServerSettings settings;
+    private final ExecutorService executor;
+    private final ResponseCache responseCache;
+    private final HistorySessions historySessions;
 
     public HttpTaskServer(TaskManager taskManager) throws IOException {
-        httpServer = HttpServer.create(new InetSocketAddress(PORT), 0);
-        httpServer.createContext("/tasks", new TasksHandler(taskManager, gson));
-        httpServer.createContext("/subtasks", new SubtasksHandler(taskManager, gson));
-        httpServer.createContext("/epics", new EpicsHandler(taskManager, gson));
-        httpServer.createContext("/history", new HistoryHandler(taskManager, gson));
-        httpServer.createContext("/prioritized", new PrioritizedHandler(taskManager, gson));
+        this(taskManager, HttpServerSettings.dispatcherThread());
+    }
+
+    public HttpTaskServer(TaskManager taskManager, HttpServerSettings settings) throws IOException {
+        this(taskManager, settings, HistorySessionSettings.defaults());
+    }
+
+    public HttpTaskServer(TaskManager taskManager, HttpServerSettings settings,
+                          HistorySessionSettings historySessionSettings) throws IOException {
+        this.taskManager = taskManager;
+        this.settings = settings;
+        httpServer = HttpServer.create(new InetSocketAddress(settings.getPort()), settings.getBacklog());
+        executor = createExecutor(settings);
+        httpServer.setExecutor(executor);
+        responseCache = new ResponseCache();
+        historySessions = Managers.getHistorySessions(taskManager, historySessionSettings);
+        int compressionThreshold = settings.isCompressionEnabled() ? settings.getCompressionThresholdBytes()
+                : BaseHttpHandler.COMPRESSION_DISABLED;
+        Router router = new Router();
+        new TasksHandler(taskManager, gson, responseCache, compressionThreshold, historySessions).register(router);
+        new SubtasksHandler(taskManager, gson, responseCache, compressionThreshold, historySessions).register(router);
+        new EpicsHandler(taskManager, gson, responseCache, compressionThreshold, historySessions).register(router);
+        new HistoryHandler(taskManager, gson, responseCache, compressionThreshold, historySessions).register(router);
+        new PrioritizedHandler(taskManager, gson, responseCache, compressionThreshold).register(router);
+        httpServer.createContext("/", router).getFilters()
+                .add(new RequestBodyLimitFilter(settings.getMaxRequestBodyBytes()));
+    }
+
+    private static ExecutorService createExecutor(HttpServerSettings settings) {
+        switch (settings.getExecutionMode()) {
+            case VIRTUAL_THREADS:
+                return Executors.newVirtualThreadPerTaskExecutor();
+            case PLATFORM_POOL:
+                //При заполненной очереди запрос выполняет поток-диспетчер, что притормаживает приём новых соединений
+                return new ThreadPoolExecutor(settings.getPoolSize(), settings.getPoolSize(),
+                        0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+            default:
+                return null;
+        }
     }
 
     public void start() {
         httpServer.start();
-        System.out.println("HttpTaskServer запущен на " + PORT + " порту!");
+        System.out.println("HttpTaskServer запущен на " + settings.getPort() + " порту! Режим: "
+                + settings.getExecutionMode());
     }
 
+    // Менеджер с отложенной записью закрывается после последнего запроса и дописывает на диск всё принятое.
+    // Запросы, не успевшие завершиться за SHUTDOWN_TIMEOUT_SECONDS, прерываются
     public void stop() {
         httpServer.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                    if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        System.out.println("Не все запросы завершились до закрытия менеджера");
+                    }
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (taskManager instanceof AutoCloseable closeableManager) {
+            try {
+                closeableManager.close();
+            } catch (Exception e) {
+                System.out.println("Ошибка при закрытии менеджера: " + e.getMessage());
+            }
+        }
         System.out.println("HttpTaskServer остановлен");
     }
 
+    // Статистика попаданий и объём кэша готовых ответов
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    // Истории клиентов, приславших X-Client-Id или Bearer-токен
+    public HistorySessions getHistorySessions() {
+        return historySessions;
+    }
+
     public static Gson getGson() {
         return gson;
     }
 
     public static void main(String[] args) throws IOException {
-        HttpTaskServer httpTaskServer = new HttpTaskServer(FileBackedTaskManager.loadFromFile(new File("saves\\serverSave.csv")));
+        FileBackedTaskManager taskManager = FileBackedTaskManager.loadFromFile(new File("saves\\serverSave.csv"),
+                PersistenceSettings.defaults().withHistoryLog(PersistenceSettings.DEFAULT_HISTORY_COMPACTION_MILLIS));
+        HttpTaskServer httpTaskServer = new HttpTaskServer(taskManager, HttpServerSettings.fromSystemProperties());
+        Runtime.getRuntime().addShutdownHook(new Thread(httpTaskServer::stop, "http-task-server-shutdown"));
         httpTaskServer.start();
     }
 }
@@ -0,0 +1,99 @@
+package server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Ограничивает размер тела запроса. Если Content-Length уже больше предела, запрос отклоняется с кодом 413
+ * до того, как тело начнут читать. Тело без длины (chunked) считается при чтении, и как только предел превышен,
+ * чтение прерывается RequestBodyTooLargeException
+ */
+public class RequestBodyLimitFilter extends Filter {
+    private final long maxBodyBytes;
+
+    public RequestBodyLimitFilter(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && parseLength(contentLength) > maxBodyBytes) {
+            sendTooLarge(exchange, maxBodyBytes);
+            return;
+        }
+        exchange.setStreams(new LimitedInputStream(exchange.getRequestBody(), maxBodyBytes), null);
+        chain.doFilter(exchange);
+    }
+
+    @Override
+    public String description() {
+        return "Ограничение размера тела запроса: " + maxBodyBytes + " байт";
+    }
+
+    static void sendTooLarge(HttpExchange exchange, long maxBodyBytes) throws IOException {
+        byte[] resp = ("Тело запроса больше " + maxBodyBytes + " байт").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(413, resp.length);
+        exchange.getResponseBody().write(resp);
+        exchange.close();
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, (int) Math.min(len, remaining + 1));
+            if (read > 0) count(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining + 1));
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws RequestBodyTooLargeException {
+            remaining -= bytes;
+            if (remaining < 0) {
+                throw new RequestBodyTooLargeException(limit);
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package server;
+
+import java.io.IOException;
+
+// Тело запроса оказалось больше допустимого уже во время чтения
+public class RequestBodyTooLargeException extends IOException {
+    private final long maxBodyBytes;
+
+    public RequestBodyTooLargeException(long maxBodyBytes) {
+        super("Тело запроса больше " + maxBodyBytes + " байт");
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+}
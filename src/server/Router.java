@@ -0,0 +1,162 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import exceptions.TaskNotFoundException;
+import exceptions.TaskTimeOverlapException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Маршрутизатор всех эндпоинтов, обслуживаемый одним контекстом HttpServer.
+ * Шаблоны путей ("/epics/{id}/subtasks") один раз раскладываются в дерево по сегментам,
+ * запрос проходит путь слева направо без split и подстрок: литералы сравниваются на месте,
+ * а {id} сразу разбирается в int. Путь есть, но метода нет - 405 с заголовком Allow
+ */
+public class Router implements HttpHandler {
+    private static final String ID_SEGMENT = "{id}";
+    public static final int NO_ID = -1;
+
+    @FunctionalInterface
+    public interface Route {
+        // id - значение сегмента {id}, либо NO_ID, если его в шаблоне нет
+        void handle(HttpExchange exchange, int id) throws IOException;
+    }
+
+    private static final class Node {
+        private String[] literals = new String[0];
+        private Node[] literalChildren = new Node[0];
+        private Node idChild;
+        private final Map<String, Route> routes = new HashMap<>();
+        private String allowedMethods;
+
+        private Node literalChild(String path, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+                    return literalChildren[i];
+                }
+            }
+            return null;
+        }
+
+        private Node addLiteralChild(String literal) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(literal)) return literalChildren[i];
+            }
+            Node child = new Node();
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = literal;
+            literalChildren[literalChildren.length - 1] = child;
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+
+    // Регистрирует обработчик. Шаблон состоит из литеральных сегментов и не более чем одного {id}
+    public Router add(String method, String pattern, Route route) {
+        Node node = root;
+        boolean hasId = false;
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (segment.equals(ID_SEGMENT)) {
+                if (hasId) {
+                    throw new IllegalArgumentException("В шаблоне может быть только один {id}: " + pattern);
+                }
+                hasId = true;
+                if (node.idChild == null) {
+                    node.idChild = new Node();
+                }
+                node = node.idChild;
+            } else {
+                node = node.addLiteralChild(segment);
+            }
+        }
+        if (node.routes.putIfAbsent(method, route) != null) {
+            throw new IllegalArgumentException("Маршрут уже зарегистрирован: " + method + " " + pattern);
+        }
+        node.allowedMethods = String.join(", ", node.routes.keySet());
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Node node = root;
+        int id = NO_ID;
+        int length = path.length();
+        int start = 0;
+        while (node != null && start < length) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) end = length;
+            Node next = node.literalChild(path, start, end);
+            if (next == null && node.idChild != null) {
+                id = parseId(path, start, end);
+                next = id == NO_ID ? null : node.idChild;
+            }
+            node = next;
+            start = end;
+        }
+        if (node == null || node.routes.isEmpty()) {
+            send(exchange, 404, "Такого эндпоинта " + getResourceName(path) + " не существует");
+            return;
+        }
+        Route route = node.routes.get(exchange.getRequestMethod());
+        if (route == null) {
+            exchange.getResponseHeaders().set("Allow", node.allowedMethods);
+            send(exchange, 405, "Метод " + exchange.getRequestMethod() + " не поддерживается для " + path);
+            return;
+        }
+        try {
+            route.handle(exchange, id);
+        } catch (TaskNotFoundException e) {
+            send(exchange, 404, e.getMessage());
+        } catch (TaskTimeOverlapException e) {
+            send(exchange, 406, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, e.getMessage());
+        } catch (RequestBodyTooLargeException e) {
+            RequestBodyLimitFilter.sendTooLarge(exchange, e.getMaxBodyBytes());
+        } catch (Exception e) {
+            send(exchange, 500, e.getMessage());
+        }
+    }
+
+    // Первый сегмент пути, для сообщений об ошибках
+    private static String getResourceName(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return path.substring(start, end < 0 ? path.length() : end);
+    }
+
+    // Неотрицательное число из цифр path[start, end) без создания строк. NO_ID, если это не число или оно не влезает в int
+    static int parseId(String path, int start, int end) {
+        if (start == end || end - start > 10) return NO_ID;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') return NO_ID;
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? NO_ID : (int) value;
+    }
+
+    private static void send(HttpExchange exchange, int rCode, String text) throws IOException {
+        byte[] resp = String.valueOf(text).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(rCode, resp.length);
+        exchange.getResponseBody().write(resp);
+        exchange.close();
+    }
+}
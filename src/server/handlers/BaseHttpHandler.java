@@ -1,43 +1,489 @@
 package server.handlers;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import model.Task;
+import model.TaskStatus;
+import model.TaskTypes;
+import server.HttpServerSettings;
+import server.RequestBodyTooLargeException;
+import server.json.IsoTimeCodec;
+import service.BatchResult;
+import service.HistorySessions;
 import service.TaskManager;
+import service.TaskQuery;
 
-import java.io.IOException;
+import java.io.*;
+import java.lang.reflect.Type;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class BaseHttpHandler {
     protected final TaskManager taskManager;
     protected final Gson gson;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+    //Потоковый ответ не больше этого размера уходит целиком с Content-Length, больший - частями
+    private static final int MAX_BUFFERED_BODY_BYTES = 8 * 1024;
+    //Порог сжатия, при котором ответы не сжимаются
+    public static final int COMPRESSION_DISABLED = Integer.MAX_VALUE;
+    public static final int MAX_PAGE_LIMIT = 10_000;
+    //Курсор следующей страницы; нет заголовка - страница последняя
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    //null - ответы не кэшируются
+    protected final ResponseCache responseCache;
+    //JSON-ответы не меньше этого размера сжимаются, если клиент принимает gzip или deflate.
+    //COMPRESSION_DISABLED отключает сжатие; потоковый ответ больше буфера сжимается при любом другом пороге
+    private final int compressionThreshold;
+    //Истории отдельных клиентов, null - есть только общая история
+    protected final HistorySessions historySessions;
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
 
     public BaseHttpHandler(TaskManager taskManager, Gson gson) {
+        this(taskManager, gson, null, HttpServerSettings.DEFAULT_COMPRESSION_THRESHOLD_BYTES);
+    }
+
+    public BaseHttpHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold) {
+        this(taskManager, gson, responseCache, compressionThreshold, null);
+    }
+
+    public BaseHttpHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold,
+                           HistorySessions historySessions) {
+        if (compressionThreshold < 0) {
+            throw new IllegalArgumentException("Порог сжатия не может быть отрицательным");
+        }
         this.taskManager = taskManager;
         this.gson = gson;
+        this.responseCache = responseCache;
+        this.compressionThreshold = compressionThreshold;
+        this.historySessions = historySessions;
+    }
+
+    // Клиент из заголовка X-Client-Id или токена Authorization: Bearer, null - клиент не представился
+    protected static String getClientId(HttpExchange h) {
+        String clientId = h.getRequestHeaders().getFirst(CLIENT_ID_HEADER);
+        if (clientId == null) {
+            String authorization = h.getRequestHeaders().getFirst("Authorization");
+            if (authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+                clientId = authorization.substring(7);
+            }
+        }
+        return clientId == null || clientId.isBlank() ? null : clientId.trim();
+    }
+
+    // Просмотр попадает и в общую историю (через менеджер), и в историю представившегося клиента
+    protected void recordClientView(HttpExchange h, Task task) {
+        String clientId = historySessions == null ? null : getClientId(h);
+        if (clientId != null) {
+            historySessions.recordView(clientId, task.getId());
+        }
     }
 
     protected void sendText(HttpExchange h, String text, int rCode) throws IOException {
-        byte[] resp = text.getBytes(StandardCharsets.UTF_8);
+        sendBytes(h, text.getBytes(StandardCharsets.UTF_8), rCode);
+    }
+
+    private void sendBytes(HttpExchange h, byte[] resp, int rCode) throws IOException {
         h.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
         h.sendResponseHeaders(rCode, resp.length);
         h.getResponseBody().write(resp);
         h.close();
     }
 
-    protected void sendNotFound(HttpExchange h, String text) throws IOException {
-        sendText(h, text, 404);
+    private void sendBody(HttpExchange h, ResponseCache.Body body) throws IOException {
+        if (body.getEncoding() != ContentEncoding.IDENTITY) {
+            h.getResponseHeaders().set("Content-Encoding", body.getEncoding().getToken());
+        }
+        sendBytes(h, body.getBytes(), 200);
     }
 
-    protected void sendHasInteractions(HttpExchange h, String text) throws IOException {
-        sendText(h, text, 406);
+    // Кодировка для ответа по Accept-Encoding запроса. Ответ зависит от этого заголовка, о чём сообщает Vary
+    private ContentEncoding negotiateEncoding(HttpExchange h) {
+        h.getResponseHeaders().set("Vary", "Accept-Encoding");
+        return ContentEncoding.negotiate(h.getRequestHeaders().getFirst("Accept-Encoding"));
     }
 
-    protected boolean checkTaskId(Task task) {
-        return task != null && task.getId() != -1;
+    // Исходное тело сжимается, только если клиент это принимает и тело не меньше порога
+    private ResponseCache.Body encode(ResponseCache.Body body, ContentEncoding accepted) {
+        if (accepted == ContentEncoding.IDENTITY || body.getEncoding() != ContentEncoding.IDENTITY
+                || body.getBytes().length < compressionThreshold) {
+            return body;
+        }
+        return new ResponseCache.Body(accepted.encode(body.getBytes()), accepted);
+    }
+
+    /*
+     * Отправляет тело из кэша, если оно там есть. Сжатый вариант, которого ещё нет, строится из исходного тела
+     * и сохраняется в ту же запись, так что сериализация не повторяется
+     */
+    private boolean sendCached(HttpExchange h, String key, long version, ContentEncoding accepted) throws IOException {
+        if (responseCache == null) return false;
+        ResponseCache.Body cached = responseCache.get(key, version, accepted);
+        if (cached == null) return false;
+        ResponseCache.Body body = encode(cached, accepted);
+        if (body != cached) {
+            responseCache.put(key, version, body);
+        }
+        sendBody(h, body);
+        return true;
+    }
+
+    // Ответ с одним объектом; готовое тело берётся из кэша, пока версия данных не изменилась
+    protected void sendJson(HttpExchange h, long version, Object value) throws IOException {
+        String key = getCacheKey(h);
+        ContentEncoding accepted = negotiateEncoding(h);
+        if (sendCached(h, key, version, accepted)) return;
+        ResponseCache.Body body = new ResponseCache.Body(gson.toJson(value).getBytes(StandardCharsets.UTF_8),
+                ContentEncoding.IDENTITY);
+        if (responseCache != null) {
+            responseCache.put(key, version, body);
+        }
+        body = encode(body, accepted);
+        if (responseCache != null && body.getEncoding() != ContentEncoding.IDENTITY) {
+            responseCache.put(key, version, body);
+        }
+        sendBody(h, body);
+    }
+
+    /*
+     * Потоковая выдача JSON-массива: элементы пишутся сразу в тело ответа, поэтому память на запрос
+     * не зависит от размера коллекции. Ответ до MAX_BUFFERED_BODY_BYTES уходит целиком, больший - частями (chunked)
+     * и сжимается прямо в потоке, если клиент это принимает и сжатие включено.
+     * Попутно ушедшее в сеть тело копируется для кэша, но только пока оно не больше размера записи кэша
+     */
+    protected <T> void sendJsonArray(HttpExchange h, long version, Consumer<Consumer<T>> source) throws IOException {
+        String key = getCacheKey(h);
+        ContentEncoding accepted = negotiateEncoding(h);
+        if (sendCached(h, key, version, accepted)) return;
+        ResponseCache.Body captured = streamJsonArray(h, accepted,
+                responseCache == null ? 0 : responseCache.getMaxEntryBytes(), source);
+        if (captured != null) {
+            responseCache.put(key, version, captured);
+        }
+    }
+
+    // Потоковый ответ без кэша и ETag: для данных, которые зависят не только от пути запроса
+    protected <T> void sendUncachedJsonArray(HttpExchange h, Consumer<Consumer<T>> source) throws IOException {
+        streamJsonArray(h, negotiateEncoding(h), 0, source);
+    }
+
+    private <T> ResponseCache.Body streamJsonArray(HttpExchange h, ContentEncoding accepted, int captureLimit,
+                                                   Consumer<Consumer<T>> source) throws IOException {
+        ContentEncoding encoding = compressionThreshold == COMPRESSION_DISABLED ? ContentEncoding.IDENTITY : accepted;
+        ResponseBodyStream body = new ResponseBodyStream(h, encoding, compressionThreshold, captureLimit);
+        try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(
+                new BufferedOutputStream(body, RESPONSE_BUFFER_SIZE), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            source.accept(element -> gson.toJson(element, element.getClass(), writer));
+            writer.endArray();
+            body.markComplete();
+        } finally {
+            //Если до ошибки ничего не отправлено, ответ с ошибкой ещё можно отправить выше
+            if (body.isCommitted()) {
+                h.close();
+            }
+        }
+        return body.getCaptured();
+    }
+
+    private static String getCacheKey(HttpExchange h) {
+        String query = h.getRequestURI().getRawQuery();
+        String path = h.getRequestURI().getRawPath();
+        return query == null ? path : path + "?" + query;
+    }
+
+    /*
+     * Тело потокового ответа. Первые MAX_BUFFERED_BODY_BYTES копятся в памяти: если ответ в них уложился,
+     * он уходит целиком с Content-Length и сжимается, только если не меньше compressionThreshold.
+     * Иначе отправляются заголовки chunked-ответа, и дальше тело идёт через encoding.
+     * Ушедшие в сеть байты копируются, пока копия не больше captureLimit
+     */
+    private static class ResponseBodyStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final ContentEncoding encoding;
+        private final int compressionThreshold;
+        private final int captureLimit;
+        private ByteArrayOutputStream head = new ByteArrayOutputStream();
+        private OutputStream target;
+        private boolean complete;
+        private ContentEncoding sentEncoding = ContentEncoding.IDENTITY;
+        private ByteArrayOutputStream capture;
+
+        ResponseBodyStream(HttpExchange exchange, ContentEncoding encoding, int compressionThreshold,
+                           int captureLimit) {
+            this.exchange = exchange;
+            this.encoding = encoding;
+            this.compressionThreshold = compressionThreshold;
+            this.captureLimit = captureLimit;
+            this.capture = captureLimit > 0 ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                if (head.size() + len <= MAX_BUFFERED_BODY_BYTES) {
+                    head.write(b, off, len);
+                    return;
+                }
+                commit(true);
+            }
+            target.write(b, off, len);
+        }
+
+        private void commit(boolean large) throws IOException {
+            exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+            if (encoding != ContentEncoding.IDENTITY && (large || head.size() >= compressionThreshold)) {
+                sentEncoding = encoding;
+                exchange.getResponseHeaders().set("Content-Encoding", encoding.getToken());
+            }
+            if (!large && sentEncoding != ContentEncoding.IDENTITY) {
+                byte[] encoded = sentEncoding.encode(head.toByteArray());
+                head = new ByteArrayOutputStream(encoded.length);
+                head.writeBytes(encoded);
+            }
+            exchange.sendResponseHeaders(200, large ? 0 : head.size());
+            OutputStream capturing = new FilterOutputStream(exchange.getResponseBody()) {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    capture(b, off, len);
+                }
+            };
+            target = large ? sentEncoding.wrap(capturing) : capturing;
+            head.writeTo(target);
+            head = null;
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (capture == null) return;
+            if (capture.size() + len > captureLimit) {
+                capture = null;
+            } else {
+                capture.write(b, off, len);
+            }
+        }
+
+        void markComplete() {
+            complete = true;
+        }
+
+        boolean isCommitted() {
+            return target != null;
+        }
+
+        // Недописанный ответ, целиком оставшийся в буфере, не отправляется
+        @Override
+        public void close() throws IOException {
+            if (target == null) {
+                if (!complete) return;
+                commit(false);
+            }
+            target.close();
+        }
+
+        ResponseCache.Body getCaptured() {
+            return capture == null || !complete ? null : new ResponseCache.Body(capture.toByteArray(), sentEncoding);
+        }
+    }
+
+    /*
+     * Ставит ETag по версии данных и, если клиент прислал совпадающий If-None-Match, отвечает 304 без тела.
+     * Версию нужно читать до данных: тогда ETag никогда не окажется новее отправленного содержимого.
+     * Сжатое и несжатое тело - разные представления, поэтому к ETag добавляется выбранная кодировка
+     */
+    protected boolean sendNotModifiedIfMatches(HttpExchange h, long version) throws IOException {
+        ContentEncoding accepted = negotiateEncoding(h);
+        String etag = accepted == ContentEncoding.IDENTITY || compressionThreshold == COMPRESSION_DISABLED
+                ? "\"" + version + "\"" : "\"" + version + "-" + accepted.getToken() + "\"";
+        h.getResponseHeaders().set("ETag", etag);
+        String ifNoneMatch = h.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null || !matchesEtag(ifNoneMatch, etag)) {
+            return false;
+        }
+        h.sendResponseHeaders(304, -1);
+        h.close();
+        return true;
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /*
+     * Фильтры и страница из строки запроса: limit, cursor, status, type, epic, from, to.
+     * null, если параметров нет - тогда коллекция отдаётся целиком. Неверные значения - IllegalArgumentException
+     */
+    protected TaskQuery getTaskQuery(HttpExchange h) {
+        String rawQuery = h.getRequestURI().getRawQuery();
+        if (rawQuery == null || rawQuery.isEmpty()) return null;
+        TaskQuery query = TaskQuery.all();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        int limit = Integer.MAX_VALUE;
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator < 0) continue;
+            String name = URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+            try {
+                switch (name) {
+                    case "limit":
+                        limit = Integer.parseInt(value);
+                        break;
+                    case "cursor":
+                        int idStart = value.lastIndexOf('_') + 1;
+                        query = query.withCursor(Integer.parseInt(value.substring(idStart)),
+                                idStart == 0 ? null : parseTime(value.substring(0, idStart - 1)));
+                        break;
+                    case "status":
+                        query = query.withStatus(TaskStatus.valueOf(value.toUpperCase()));
+                        break;
+                    case "type":
+                        query = query.withType(TaskTypes.valueOf(value.toUpperCase()));
+                        break;
+                    case "epic":
+                        query = query.withEpicId(Integer.parseInt(value));
+                        break;
+                    case "from":
+                        from = parseTime(value);
+                        break;
+                    case "to":
+                        to = parseTime(value);
+                        break;
+                    default:
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неверное значение параметра " + name + ": " + value);
+            }
+        }
+        if (limit != Integer.MAX_VALUE && (limit <= 0 || limit > MAX_PAGE_LIMIT)) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_PAGE_LIMIT);
+        }
+        return query.withTimeWindow(from, to).withLimit(limit);
+    }
+
+    // Значение параметра строки запроса или null, если его нет
+    protected static String getQueryParameter(HttpExchange h, String name) {
+        String rawQuery = h.getRequestURI().getRawQuery();
+        if (rawQuery == null) return null;
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator >= 0 && URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8).equals(name)) {
+                return URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
     }
 
-    protected int getIdFromPath(HttpExchange exchange) {
-        return Integer.parseInt(exchange.getRequestURI().getPath().split("/")[2]);
+    protected static int getLimit(HttpExchange h) {
+        String value = getQueryParameter(h, "limit");
+        if (value == null) return Integer.MAX_VALUE;
+        int limit;
+        try {
+            limit = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверное значение параметра limit: " + value);
+        }
+        if (limit <= 0 || limit > MAX_PAGE_LIMIT) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_PAGE_LIMIT);
+        }
+        return limit;
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        try {
+            return IsoTimeCodec.parseDateTime(value);
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Неверный формат времени: " + value);
+        }
+    }
+
+    /*
+     * Отдаёт страницу finder(query). Запрашивается на одну задачу больше limit, чтобы узнать, есть ли следующая
+     * страница. Курсор - id последней задачи, для списка по приоритету вместе с её startTime
+     */
+    protected <T extends Task> void sendPage(HttpExchange h, long version, TaskQuery query,
+                                             Function<TaskQuery, List<T>> finder, boolean byStartTime) throws IOException {
+        int limit = query.getLimit();
+        List<T> page = finder.apply(limit == Integer.MAX_VALUE ? query : query.withLimit(limit + 1));
+        if (page.size() > limit) {
+            page.removeLast();
+            Task last = page.getLast();
+            String cursor = byStartTime ? IsoTimeCodec.format(last.getStartTime()) + "_" + last.getId()
+                    : String.valueOf(last.getId());
+            h.getResponseHeaders().set(NEXT_CURSOR_HEADER, cursor);
+        }
+        if (!sendNotModifiedIfMatches(h, version)) {
+            sendJsonArray(h, version, page::forEach);
+        }
+    }
+
+    /*
+     * Объект из тела запроса. Тело разбирается потоком через JsonReader, без промежуточного массива байт и строки.
+     * Пустое тело или некорректный JSON - IllegalArgumentException
+     */
+    protected <T> T readJson(HttpExchange h, Type type) throws IOException {
+        T value;
+        try (JsonReader reader = gson.newJsonReader(new InputStreamReader(h.getRequestBody(), StandardCharsets.UTF_8))) {
+            value = gson.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            //Gson заворачивает ошибки чтения потока, в том числе превышение размера тела
+            if (e.getCause() instanceof RequestBodyTooLargeException tooLarge) throw tooLarge;
+            throw new IllegalArgumentException("Некорректный JSON в теле запроса: " + e.getMessage());
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Тело запроса пустое");
+        }
+        return value;
+    }
+
+    protected <T> List<T> readJsonArray(HttpExchange h, Class<T> elementType) throws IOException {
+        List<T> items = readJson(h, TypeToken.getParameterized(List.class, elementType).getType());
+        if (items.contains(null)) {
+            throw new IllegalArgumentException("Ожидается JSON-массив без null-элементов");
+        }
+        return items;
+    }
+
+    // Элементы пакета без id добавляются, с id - обновляются, в порядке запроса
+    protected <T extends Task> List<BatchResult> addOrUpdateBatch(HttpExchange h, Class<T> elementType)
+            throws IOException {
+        return taskManager.addOrUpdateTasks(readJsonArray(h, elementType));
+    }
+
+    protected void sendBatchResults(HttpExchange h, List<BatchResult> results) throws IOException {
+        taskManager.awaitDurability();
+        sendText(h, gson.toJson(results), 200);
+    }
+
+    protected boolean checkTaskId(Task task) {
+        return task != null && task.getId() != -1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package server.handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Кодировки тела ответа, которые сервер умеет выдавать
+public enum ContentEncoding {
+    IDENTITY("identity"),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /*
+     * Выбор кодировки по Accept-Encoding: из gzip и deflate берётся та, у которой больше q, при равенстве - gzip.
+     * "*" подходит к любой из них, q=0 запрещает кодировку. Если ни одна не подходит - IDENTITY
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) return IDENTITY;
+        double gzipQuality = -1;
+        double deflateQuality = -1;
+        double anyQuality = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            int parameters = coding.indexOf(';');
+            String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+            double quality = parameters < 0 ? 1 : parseQuality(coding.substring(parameters + 1));
+            if (name.equalsIgnoreCase(GZIP.token) || name.equalsIgnoreCase("x-gzip")) {
+                gzipQuality = quality;
+            } else if (name.equalsIgnoreCase(DEFLATE.token)) {
+                deflateQuality = quality;
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        if (gzipQuality < 0) gzipQuality = anyQuality;
+        if (deflateQuality < 0) deflateQuality = anyQuality;
+        if (gzipQuality <= 0 && deflateQuality <= 0) return IDENTITY;
+        return gzipQuality >= deflateQuality ? GZIP : DEFLATE;
+    }
+
+    private static double parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // Поток, сжимающий данные перед записью в out. Закрытие дописывает хвост формата и закрывает out
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case DEFLATE:
+                return new DeflaterOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    public byte[] encode(byte[] body) {
+        if (this == IDENTITY) return body;
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (OutputStream out = wrap(encoded)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return encoded.toByteArray();
+    }
+}
@@ -2,116 +2,77 @@ package server.handlers;
 
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import exceptions.TaskNotFoundException;
-import exceptions.TaskTimeOverlapException;
 import model.Epic;
-import server.handlers.endpoints.EndpointEpics;
+import server.Router;
+import service.HistorySessions;
+import service.TaskCollection;
 import service.TaskManager;
+import service.TaskQuery;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 
-public class EpicsHandler extends BaseHttpHandler implements HttpHandler {
+public class EpicsHandler extends BaseHttpHandler {
     public EpicsHandler(TaskManager taskManager, Gson gson) {
         super(taskManager, gson);
     }
 
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        try {
-            Epic epic = getEpicFromExchange(exchange);
-
-            boolean hasId = checkTaskId(epic);
-            EndpointEpics endpointEpics = getEndpointEpics(exchange.getRequestURI().getPath(), exchange.getRequestMethod(), hasId);
-            int id;
-            switch (endpointEpics) {
-                case GET_EPICS:
-                    sendText(exchange, gson.toJson(taskManager.getEpicList()), 200);
-                    break;
-                case GET_EPIC_BY_ID:
-                    id = getIdFromPath(exchange);
-                    sendText(exchange, gson.toJson(taskManager.getEpic(id)), 200);
-                    break;
-                case POST_EPIC_CREATE:
-                    taskManager.addEpic(epic);
-                    sendText(exchange, "Эпик " + epic.getName() + " успешно добавлен под идентификатором id=" + epic.getId(), 201);
-                    break;
-                case POST_EPIC_UPDATE:
-                    taskManager.updateEpic(epic);
-                    sendText(exchange, "Эпик " + epic.getName() + " успешно обновлен", 201);
-                    break;
-                case GET_EPIC_SUBTASKS:
-                    id = getIdFromPath(exchange);
-                    sendText(exchange, gson.toJson(taskManager.getEpic(id).getSubtaskIdList()), 200);
-                    break;
-                case DELETE_EPIC:
-                    id = getIdFromPath(exchange);
-                    taskManager.deleteEpic(id);
-                    sendText(exchange, "Эпик с id=" + id + " успешно удален из менеджера", 200);
-                    break;
-                default:
-                    sendNotFound(exchange, "Такого эндпоинта epics не существует");
-            }
-        } catch (TaskNotFoundException e) {
-            sendNotFound(exchange, e.getMessage());
-        } catch (TaskTimeOverlapException e) {
-            sendHasInteractions(exchange, e.getMessage());
-        } catch (Exception e) {
-            sendText(exchange, e.getMessage(), 500);
-        }
+    public EpicsHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold,
+                        HistorySessions historySessions) {
+        super(taskManager, gson, responseCache, compressionThreshold, historySessions);
     }
 
-    private EndpointEpics getEndpointEpics(String requestPath, String requestMethod, boolean hasId) {
-        String[] pathParts = requestPath.split("/");
+    public void register(Router router) {
+        router.add("GET", "/epics", this::getEpics)
+                .add("POST", "/epics", this::postEpic)
+                .add("GET", "/epics/{id}", this::getEpic)
+                .add("DELETE", "/epics/{id}", this::deleteEpic)
+                .add("GET", "/epics/{id}/subtasks", this::getEpicSubtasks);
+    }
 
-        if (pathParts.length == 2 && pathParts[1].equals("epics")) {
-            if (requestMethod.equals("GET")) {
-                return EndpointEpics.GET_EPICS;
-            }
-            if (requestMethod.equals("POST")) {
-                if (hasId) {
-                    return EndpointEpics.POST_EPIC_UPDATE;
-                } else {
-                    return EndpointEpics.POST_EPIC_CREATE;
-                }
-            }
+    private void getEpics(HttpExchange exchange, int id) throws IOException {
+        long epicsVersion = taskManager.getVersion(TaskCollection.EPICS);
+        TaskQuery query = getTaskQuery(exchange);
+        if (query != null) {
+            sendPage(exchange, epicsVersion, query, taskManager::findEpics, false);
+        } else if (!sendNotModifiedIfMatches(exchange, epicsVersion)) {
+            sendJsonArray(exchange, epicsVersion, taskManager::forEachEpic);
         }
+    }
 
-        if (pathParts.length == 3 && pathParts[1].equals("epics")) {
-            try {
-                Integer.parseInt(pathParts[2]);
-            } catch (NumberFormatException e) {
-                return EndpointEpics.UNKNOWN;
-            }
-            if (requestMethod.equals("GET")) {
-                return EndpointEpics.GET_EPIC_BY_ID;
-            }
-            if (requestMethod.equals("DELETE")) {
-                return EndpointEpics.DELETE_EPIC;
-            }
+    private void getEpic(HttpExchange exchange, int id) throws IOException {
+        long epicVersion = taskManager.getTaskVersion(id);
+        Epic foundEpic = taskManager.getEpic(id);
+        recordClientView(exchange, foundEpic);
+        if (!sendNotModifiedIfMatches(exchange, epicVersion)) {
+            sendJson(exchange, epicVersion, foundEpic);
         }
+    }
 
-        if (pathParts.length == 4 && pathParts[1].equals("epics") && pathParts[3].equals("subtasks")) {
-            try {
-                Integer.parseInt(pathParts[2]);
-            } catch (NumberFormatException e) {
-                return EndpointEpics.UNKNOWN;
-            }
-            if (requestMethod.equals("GET")) {
-                return EndpointEpics.GET_EPIC_SUBTASKS;
-            }
+    private void getEpicSubtasks(HttpExchange exchange, int id) throws IOException {
+        long subtasksVersion = taskManager.getTaskVersion(id);
+        ArrayList<Integer> subtaskIdList = taskManager.getEpic(id).getSubtaskIdList();
+        if (!sendNotModifiedIfMatches(exchange, subtasksVersion)) {
+            sendJson(exchange, subtasksVersion, subtaskIdList);
         }
-
-        return EndpointEpics.UNKNOWN;
     }
 
-    private Epic getEpicFromExchange(HttpExchange httpExchange) throws IOException {
-        Epic epic = null;
-        byte[] body = httpExchange.getRequestBody().readAllBytes();
-        if (body.length != 0) {
-            epic = gson.fromJson(new String(body, StandardCharsets.UTF_8), Epic.class);
+    private void postEpic(HttpExchange exchange, int id) throws IOException {
+        Epic epic = readJson(exchange, Epic.class);
+        if (checkTaskId(epic)) {
+            taskManager.updateEpic(epic);
+            taskManager.awaitDurability();
+            sendText(exchange, "Эпик " + epic.getName() + " успешно обновлен", 201);
+        } else {
+            taskManager.addEpic(epic);
+            taskManager.awaitDurability();
+            sendText(exchange, "Эпик " + epic.getName() + " успешно добавлен под идентификатором id=" + epic.getId(), 201);
         }
-        return epic;
+    }
+
+    private void deleteEpic(HttpExchange exchange, int id) throws IOException {
+        taskManager.deleteEpic(id);
+        taskManager.awaitDurability();
+        sendText(exchange, "Эпик с id=" + id + " успешно удален из менеджера", 200);
     }
 }
@@ -2,37 +2,51 @@ package server.handlers;
 
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import server.handlers.endpoints.EndpointHistory;
+import model.Task;
+import server.Router;
+import service.HistorySessions;
+import service.TaskCollection;
 import service.TaskManager;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
-public class HistoryHandler extends BaseHttpHandler implements HttpHandler {
+public class HistoryHandler extends BaseHttpHandler {
     public HistoryHandler(TaskManager taskManager, Gson gson) {
         super(taskManager, gson);
     }
 
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        EndpointHistory endpointHistory = getEndpointHistory(exchange.getRequestURI().getPath(), exchange.getRequestMethod());
+    public HistoryHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold,
+                          HistorySessions historySessions) {
+        super(taskManager, gson, responseCache, compressionThreshold, historySessions);
+    }
 
-        switch (endpointHistory) {
-            case GET_HISTORY:
-                sendText(exchange, gson.toJson(taskManager.getHistory()), 200);
-                break;
-            default:
-                sendNotFound(exchange, "Такого эндпоинта history не существует");
-        }
+    public void register(Router router) {
+        router.add("GET", "/history", this::getHistory);
     }
 
-    private EndpointHistory getEndpointHistory(String requestPath, String requestMethod) {
-        String[] pathParts = requestPath.split("/");
-        if (pathParts.length == 2 && pathParts[1].equals("history")) {
-            if (requestMethod.equals("GET")) {
-                return EndpointHistory.GET_HISTORY;
-            }
+    /*
+     * ?limit=N - только N последних просмотров, ?order=desc - начиная с самого свежего.
+     * Представившийся клиент (X-Client-Id или Bearer-токен) получает свою историю, она не кэшируется
+     */
+    private void getHistory(HttpExchange exchange, int id) throws IOException {
+        int limit = getLimit(exchange);
+        boolean mostRecentFirst = isDescending(getQueryParameter(exchange, "order"));
+        String clientId = historySessions == null ? null : getClientId(exchange);
+        if (clientId != null) {
+            sendUncachedJsonArray(exchange, historySessions.getHistory(clientId, limit, mostRecentFirst)::forEach);
+            return;
+        }
+        long version = taskManager.getVersion(TaskCollection.HISTORY);
+        if (!sendNotModifiedIfMatches(exchange, version)) {
+            sendJsonArray(exchange, version,
+                    (Consumer<Task> action) -> taskManager.forEachInHistory(mostRecentFirst, limit, action));
         }
-        return EndpointHistory.UNKNOWN;
+    }
+
+    private static boolean isDescending(String order) {
+        if (order == null || order.equalsIgnoreCase("asc")) return false;
+        if (order.equalsIgnoreCase("desc")) return true;
+        throw new IllegalArgumentException("Неверное значение параметра order: " + order);
     }
 }
@@ -2,37 +2,33 @@ package server.handlers;
 
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import server.handlers.endpoints.EndpointPrioritized;
+import server.Router;
+import service.TaskCollection;
 import service.TaskManager;
+import service.TaskQuery;
 
 import java.io.IOException;
 
-public class PrioritizedHandler extends BaseHttpHandler implements HttpHandler {
+public class PrioritizedHandler extends BaseHttpHandler {
     public PrioritizedHandler(TaskManager taskManager, Gson gson) {
         super(taskManager, gson);
     }
 
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        EndpointPrioritized endpointPrioritized = getEndpointPrioritized(exchange.getRequestURI().getPath(), exchange.getRequestMethod());
+    public PrioritizedHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold) {
+        super(taskManager, gson, responseCache, compressionThreshold);
+    }
 
-        switch (endpointPrioritized) {
-            case GET_PRIORITIZED:
-                sendText(exchange, gson.toJson(taskManager.getPrioritizedTasks()), 200);
-                break;
-            default:
-                sendNotFound(exchange, "Такого эндпоинта prioritized не существует");
-        }
+    public void register(Router router) {
+        router.add("GET", "/prioritized", this::getPrioritized);
     }
 
-    private EndpointPrioritized getEndpointPrioritized(String requestPath, String requestMethod) {
-        String[] pathParts = requestPath.split("/");
-        if (pathParts.length == 2 && pathParts[1].equals("prioritized")) {
-            if (requestMethod.equals("GET")) {
-                return EndpointPrioritized.GET_PRIORITIZED;
-            }
+    private void getPrioritized(HttpExchange exchange, int id) throws IOException {
+        long version = taskManager.getVersion(TaskCollection.PRIORITIZED);
+        TaskQuery query = getTaskQuery(exchange);
+        if (query != null) {
+            sendPage(exchange, version, query, taskManager::findPrioritized, true);
+        } else if (!sendNotModifiedIfMatches(exchange, version)) {
+            sendJsonArray(exchange, version, taskManager::forEachPrioritized);
         }
-        return EndpointPrioritized.UNKNOWN;
     }
 }
@@ -0,0 +1,191 @@
+package server.handlers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Кэш готовых тел ответов GET в UTF-8. Запись хранит версию данных из менеджера, по которой она построена,
+ * и отдаётся только пока версия не изменилась: любое изменение, затрагивающее коллекцию или задачу,
+ * повышает её версию и этим сразу делает запись недействительной. Остальные записи изменение не трогает.
+ * Запись хранит тело в нескольких кодировках: исходное и сжатые варианты, которые добавляются по мере запросов.
+ * Объём ограничен: при переполнении вытесняются давно не использованные записи
+ */
+public class ResponseCache {
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_MAX_ENTRY_BYTES = 1024 * 1024;
+
+    // Готовое тело ответа и кодировка, в которой оно записано
+    public static final class Body {
+        private final byte[] bytes;
+        private final ContentEncoding encoding;
+
+        public Body(byte[] bytes, ContentEncoding encoding) {
+            this.bytes = bytes;
+            this.encoding = encoding;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public ContentEncoding getEncoding() {
+            return encoding;
+        }
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final Body[] bodies = new Body[ContentEncoding.values().length];
+        private long bytes;
+
+        private Entry(long version) {
+            this.version = version;
+        }
+    }
+
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long bytes;
+
+        private Stats(long hits, long misses, long evictions, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+                    ", evictions=" + evictions +
+                    ", entries=" + entries +
+                    ", bytes=" + bytes +
+                    '}';
+        }
+    }
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    //Порядок доступа: первой идёт давно не использованная запись
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRY_BYTES);
+    }
+
+    public ResponseCache(long maxBytes, int maxEntryBytes) {
+        if (maxBytes < 0 || maxEntryBytes < 0) {
+            throw new IllegalArgumentException("Размеры кэша не могут быть отрицательными");
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = (int) Math.min(maxEntryBytes, maxBytes);
+    }
+
+    // Исходное (несжатое) тело ответа для key, построенное по версии version, либо null
+    public byte[] get(String key, long version) {
+        Body body = get(key, version, ContentEncoding.IDENTITY);
+        return body == null ? null : body.getBytes();
+    }
+
+    public void put(String key, long version, byte[] body) {
+        put(key, version, new Body(body, ContentEncoding.IDENTITY));
+    }
+
+    /*
+     * Тело для клиента, принимающего кодировку accepted: в ней самой, если такое уже есть, иначе исходное.
+     * null, если записи нет или она построена по другой версии
+     */
+    public synchronized Body get(String key, long version, ContentEncoding accepted) {
+        Entry entry = entries.get(key);
+        Body body = null;
+        if (entry != null && entry.version == version) {
+            body = entry.bodies[accepted.ordinal()];
+            if (body == null) {
+                body = entry.bodies[ContentEncoding.IDENTITY.ordinal()];
+            }
+        }
+        if (body == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return body;
+    }
+
+    // Добавляет тело в его кодировке к записи той же версии или заменяет запись более старой версии
+    public synchronized void put(String key, long version, Body body) {
+        if (body.getBytes().length > maxEntryBytes) return;
+        Entry entry = entries.get(key);
+        //Более новая версия уже в кэше: медленный запрос не должен её затереть
+        if (entry != null && entry.version > version) return;
+        if (entry == null || entry.version < version) {
+            if (entry != null) {
+                bytes -= entry.bytes;
+            }
+            entry = new Entry(version);
+            entries.put(key, entry);
+        }
+        Body oldBody = entry.bodies[body.getEncoding().ordinal()];
+        long delta = body.getBytes().length - (oldBody == null ? 0 : oldBody.getBytes().length);
+        entry.bodies[body.getEncoding().ordinal()] = body;
+        entry.bytes += delta;
+        bytes += delta;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().bytes;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), bytes);
+    }
+}
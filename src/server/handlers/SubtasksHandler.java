@@ -2,101 +2,73 @@ package server.handlers;
 
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import exceptions.TaskNotFoundException;
-import exceptions.TaskTimeOverlapException;
 import model.Subtask;
-import server.handlers.endpoints.EndpointSubtasks;
+import model.TaskTypes;
+import server.Router;
+import service.HistorySessions;
+import service.TaskCollection;
 import service.TaskManager;
+import service.TaskQuery;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 
-public class SubtasksHandler extends BaseHttpHandler implements HttpHandler {
+public class SubtasksHandler extends BaseHttpHandler {
     public SubtasksHandler(TaskManager taskManager, Gson gson) {
         super(taskManager, gson);
     }
 
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        try {
-            Subtask subtask = getSubtaskFromExchange(exchange);
-            boolean hasId = checkTaskId(subtask);
-            EndpointSubtasks endpointSubtasks = getEndpointSubtasks(exchange.getRequestURI().getPath(), exchange.getRequestMethod(), hasId);
-            int id;
-
-            switch (endpointSubtasks) {
-                case GET_SUBTASKS:
-                    sendText(exchange, gson.toJson(taskManager.getSubtaskList()), 200);
-                    break;
-                case GET_SUBTASK_BY_ID:
-                    id = getIdFromPath(exchange);
-                    sendText(exchange, gson.toJson(taskManager.getSubtask(id)), 200);
-                    break;
-                case POST_SUBTASK_CREATE:
-                    taskManager.addSubtask(subtask);
-                    sendText(exchange, "Подзадача " + subtask.getName() + " успешно добавлена под идентификатором id=" + subtask.getId(), 201);
-                    break;
-                case POST_SUBTASK_UPDATE:
-                    taskManager.updateSubtask(subtask);
-                    sendText(exchange, "Подзадача " + subtask.getName() + " успешно обновлена", 201);
-                    break;
-                case DELETE_SUBTASK:
-                    id = getIdFromPath(exchange);
-                    taskManager.deleteSubtask(id);
-                    sendText(exchange, "Подзадача с id=" + id + " успешно удалена из менеджера", 200);
-                    break;
-                default:
-                    sendNotFound(exchange, "Такого эндпоинта subtasks не существует");
-            }
-        } catch (TaskNotFoundException e) {
-            sendNotFound(exchange, e.getMessage());
-        } catch (TaskTimeOverlapException e) {
-            sendHasInteractions(exchange, e.getMessage());
-        } catch (Exception e) {
-            sendText(exchange, e.getMessage(), 500);
-        }
+    public SubtasksHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold,
+                           HistorySessions historySessions) {
+        super(taskManager, gson, responseCache, compressionThreshold, historySessions);
     }
 
-    private EndpointSubtasks getEndpointSubtasks(String requestPath, String requestMethod, boolean hasId) {
-        String[] pathParts = requestPath.split("/");
+    public void register(Router router) {
+        router.add("GET", "/subtasks", this::getSubtasks)
+                .add("POST", "/subtasks", this::postSubtask)
+                .add("GET", "/subtasks/{id}", this::getSubtask)
+                .add("DELETE", "/subtasks/{id}", this::deleteSubtask)
+                .add("POST", "/subtasks/batch", (exchange, id) ->
+                        sendBatchResults(exchange, addOrUpdateBatch(exchange, Subtask.class)))
+                .add("DELETE", "/subtasks/batch", (exchange, id) ->
+                        sendBatchResults(exchange, taskManager.deleteTasks(TaskTypes.SUBTASK,
+                                readJsonArray(exchange, Integer.class))));
+    }
 
-        if (pathParts.length == 2 && pathParts[1].equals("subtasks")) {
-            if (requestMethod.equals("GET")) {
-                return EndpointSubtasks.GET_SUBTASKS;
-            }
-            if (requestMethod.equals("POST")) {
-                if (hasId) {
-                    return EndpointSubtasks.POST_SUBTASK_UPDATE;
-                } else {
-                    return EndpointSubtasks.POST_SUBTASK_CREATE;
-                }
-            }
+    private void getSubtasks(HttpExchange exchange, int id) throws IOException {
+        long subtasksVersion = taskManager.getVersion(TaskCollection.SUBTASKS);
+        TaskQuery query = getTaskQuery(exchange);
+        if (query != null) {
+            sendPage(exchange, subtasksVersion, query, taskManager::findSubtasks, false);
+        } else if (!sendNotModifiedIfMatches(exchange, subtasksVersion)) {
+            sendJsonArray(exchange, subtasksVersion, taskManager::forEachSubtask);
         }
+    }
 
-        if (pathParts.length == 3 && pathParts[1].equals("subtasks")) {
-            try {
-                Integer.parseInt(pathParts[2]);
-            } catch (NumberFormatException e) {
-                return EndpointSubtasks.UNKNOWN;
-            }
-            if (requestMethod.equals("GET")) {
-                return EndpointSubtasks.GET_SUBTASK_BY_ID;
-            }
-            if (requestMethod.equals("DELETE")) {
-                return EndpointSubtasks.DELETE_SUBTASK;
-            }
+    private void getSubtask(HttpExchange exchange, int id) throws IOException {
+        long subtaskVersion = taskManager.getTaskVersion(id);
+        Subtask foundSubtask = taskManager.getSubtask(id);
+        recordClientView(exchange, foundSubtask);
+        if (!sendNotModifiedIfMatches(exchange, subtaskVersion)) {
+            sendJson(exchange, subtaskVersion, foundSubtask);
         }
-
-        return EndpointSubtasks.UNKNOWN;
     }
 
-    private Subtask getSubtaskFromExchange(HttpExchange httpExchange) throws IOException {
-        Subtask subtask = null;
-        byte[] body = httpExchange.getRequestBody().readAllBytes();
-        if (body.length != 0) {
-            subtask = gson.fromJson(new String(body, StandardCharsets.UTF_8), Subtask.class);
+    private void postSubtask(HttpExchange exchange, int id) throws IOException {
+        Subtask subtask = readJson(exchange, Subtask.class);
+        if (checkTaskId(subtask)) {
+            taskManager.updateSubtask(subtask);
+            taskManager.awaitDurability();
+            sendText(exchange, "Подзадача " + subtask.getName() + " успешно обновлена", 201);
+        } else {
+            taskManager.addSubtask(subtask);
+            taskManager.awaitDurability();
+            sendText(exchange, "Подзадача " + subtask.getName() + " успешно добавлена под идентификатором id=" + subtask.getId(), 201);
         }
-        return subtask;
     }
-}
\ No newline at end of file
+
+    private void deleteSubtask(HttpExchange exchange, int id) throws IOException {
+        taskManager.deleteSubtask(id);
+        taskManager.awaitDurability();
+        sendText(exchange, "Подзадача с id=" + id + " успешно удалена из менеджера", 200);
+    }
+}
@@ -2,100 +2,73 @@ package server.handlers;
 
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import exceptions.TaskNotFoundException;
-import exceptions.TaskTimeOverlapException;
 import model.Task;
-import server.handlers.endpoints.EndpointTasks;
+import model.TaskTypes;
+import server.Router;
+import service.HistorySessions;
+import service.TaskCollection;
 import service.TaskManager;
+import service.TaskQuery;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 
-public class TasksHandler extends BaseHttpHandler implements HttpHandler {
+public class TasksHandler extends BaseHttpHandler {
     public TasksHandler(TaskManager taskManager, Gson gson) {
         super(taskManager, gson);
     }
 
-    @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        try {
-            Task task = getTaskFromExchange(exchange);
-            boolean hasId = checkTaskId(task);
-            EndpointTasks endpointTasks = getEndpointTasks(exchange.getRequestURI().getPath(), exchange.getRequestMethod(), hasId);
-            int id;
-            switch (endpointTasks) {
-                case GET_TASKS:
-                    sendText(exchange, gson.toJson(taskManager.getTaskList()), 200);
-                    break;
-                case GET_TASK_BY_ID:
-                    id = getIdFromPath(exchange);
-                    sendText(exchange, gson.toJson(taskManager.getTask(id)), 200);
-                    break;
-                case POST_TASK_CREATE:
-                    taskManager.addTask(task);
-                    sendText(exchange, "Задача " + task.getName() + " успешно добавлена под идентификатором id=" + task.getId(), 201);
-                    break;
-                case POST_TASK_UPDATE:
-                    taskManager.updateTask(task);
-                    sendText(exchange, "Задача " + task.getName() + " успешно обновлена", 201);
-                    break;
-                case DELETE_TASK:
-                    id = getIdFromPath(exchange);
-                    taskManager.deleteTask(id);
-                    sendText(exchange, "Задача с id=" + id + " успешно удалена из менеджера", 200);
-                    break;
-                default:
-                    sendNotFound(exchange, "Такого эндпоинта tasks не существует");
-            }
-        } catch (TaskNotFoundException e) {
-            sendNotFound(exchange, e.getMessage());
-        } catch (TaskTimeOverlapException e) {
-            sendHasInteractions(exchange, e.getMessage());
-        } catch (Exception e) {
-            sendText(exchange, e.getMessage(), 500);
-        }
+    public TasksHandler(TaskManager taskManager, Gson gson, ResponseCache responseCache, int compressionThreshold,
+                        HistorySessions historySessions) {
+        super(taskManager, gson, responseCache, compressionThreshold, historySessions);
     }
 
-    private EndpointTasks getEndpointTasks(String requestPath, String requestMethod, boolean hasId) {
-        String[] pathParts = requestPath.split("/");
+    public void register(Router router) {
+        router.add("GET", "/tasks", this::getTasks)
+                .add("POST", "/tasks", this::postTask)
+                .add("GET", "/tasks/{id}", this::getTask)
+                .add("DELETE", "/tasks/{id}", this::deleteTask)
+                .add("POST", "/tasks/batch", (exchange, id) ->
+                        sendBatchResults(exchange, addOrUpdateBatch(exchange, Task.class)))
+                .add("DELETE", "/tasks/batch", (exchange, id) ->
+                        sendBatchResults(exchange, taskManager.deleteTasks(TaskTypes.TASK,
+                                readJsonArray(exchange, Integer.class))));
+    }
 
-        if (pathParts.length == 2 && pathParts[1].equals("tasks")) {
-            if (requestMethod.equals("GET")) {
-                return EndpointTasks.GET_TASKS;
-            }
-            if (requestMethod.equals("POST")) {
-                if (hasId) {
-                    return EndpointTasks.POST_TASK_UPDATE;
-                } else {
-                    return EndpointTasks.POST_TASK_CREATE;
-                }
-            }
+    private void getTasks(HttpExchange exchange, int id) throws IOException {
+        long tasksVersion = taskManager.getVersion(TaskCollection.TASKS);
+        TaskQuery query = getTaskQuery(exchange);
+        if (query != null) {
+            sendPage(exchange, tasksVersion, query, taskManager::findTasks, false);
+        } else if (!sendNotModifiedIfMatches(exchange, tasksVersion)) {
+            sendJsonArray(exchange, tasksVersion, taskManager::forEachTask);
         }
+    }
 
-        if (pathParts.length == 3 && pathParts[1].equals("tasks")) {
-            try {
-                Integer.parseInt(pathParts[2]);
-            } catch (NumberFormatException e) {
-                return EndpointTasks.UNKNOWN;
-            }
-            if (requestMethod.equals("GET")) {
-                return EndpointTasks.GET_TASK_BY_ID;
-            }
-            if (requestMethod.equals("DELETE")) {
-                return EndpointTasks.DELETE_TASK;
-            }
+    private void getTask(HttpExchange exchange, int id) throws IOException {
+        long taskVersion = taskManager.getTaskVersion(id);
+        Task foundTask = taskManager.getTask(id);
+        recordClientView(exchange, foundTask);
+        if (!sendNotModifiedIfMatches(exchange, taskVersion)) {
+            sendJson(exchange, taskVersion, foundTask);
         }
-
-        return EndpointTasks.UNKNOWN;
     }
 
-    private Task getTaskFromExchange(HttpExchange httpExchange) throws IOException {
-        Task task = null;
-        byte[] body = httpExchange.getRequestBody().readAllBytes();
-        if (body.length != 0) {
-            task = gson.fromJson(new String(body, StandardCharsets.UTF_8), Task.class);
+    private void postTask(HttpExchange exchange, int id) throws IOException {
+        Task task = readJson(exchange, Task.class);
+        if (checkTaskId(task)) {
+            taskManager.updateTask(task);
+            taskManager.awaitDurability();
+            sendText(exchange, "Задача " + task.getName() + " успешно обновлена", 201);
+        } else {
+            taskManager.addTask(task);
+            taskManager.awaitDurability();
+            sendText(exchange, "Задача " + task.getName() + " успешно добавлена под идентификатором id=" + task.getId(), 201);
         }
-        return task;
     }
-}
\ No newline at end of file
+
+    private void deleteTask(HttpExchange exchange, int id) throws IOException {
+        taskManager.deleteTask(id);
+        taskManager.awaitDurability();
+        sendText(exchange, "Задача с id=" + id + " успешно удалена из менеджера", 200);
+    }
+}
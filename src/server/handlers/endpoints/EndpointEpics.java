@@ -1,11 +0,0 @@
-package server.handlers.endpoints;
-
-public enum EndpointEpics {
-    GET_EPICS,
-    GET_EPIC_BY_ID,
-    POST_EPIC_CREATE,
-    POST_EPIC_UPDATE,
-    DELETE_EPIC,
-    GET_EPIC_SUBTASKS,
-    UNKNOWN
-}
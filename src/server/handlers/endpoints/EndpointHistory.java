@@ -1,6 +0,0 @@
-package server.handlers.endpoints;
-
-public enum EndpointHistory {
-    GET_HISTORY,
-    UNKNOWN
-}
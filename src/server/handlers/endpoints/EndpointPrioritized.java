@@ -1,6 +0,0 @@
-package server.handlers.endpoints;
-
-public enum EndpointPrioritized {
-    GET_PRIORITIZED,
-    UNKNOWN
-}
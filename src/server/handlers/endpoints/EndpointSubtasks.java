@@ -1,10 +0,0 @@
-package server.handlers.endpoints;
-
-public enum EndpointSubtasks {
-    GET_SUBTASKS,
-    GET_SUBTASK_BY_ID,
-    POST_SUBTASK_CREATE,
-    POST_SUBTASK_UPDATE,
-    DELETE_SUBTASK,
-    UNKNOWN
-}
@@ -1,10 +0,0 @@
-package server.handlers.endpoints;
-
-public enum EndpointTasks {
-    GET_TASKS,
-    GET_TASK_BY_ID,
-    POST_TASK_CREATE,
-    POST_TASK_UPDATE,
-    DELETE_TASK,
-    UNKNOWN
-}
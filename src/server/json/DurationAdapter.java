@@ -2,6 +2,7 @@ package server.json;
 
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
@@ -10,17 +11,22 @@ import java.time.Duration;
 public class DurationAdapter extends TypeAdapter<Duration> {
     @Override
     public void write(JsonWriter jsonWriter, Duration duration) throws IOException {
-        String toWrite = "null";
-        if (duration != null) {
-            toWrite = ("PT" + duration.toMinutes() + "M");
+        if (duration == null) {
+            jsonWriter.nullValue();
+            return;
         }
-        jsonWriter.value(toWrite);
+        jsonWriter.value(IsoTimeCodec.format(duration));
     }
 
+    //Кроме null принимается строка "null", которую писали прежние версии
     @Override
     public Duration read(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
         String nextString = jsonReader.nextString();
         if (nextString.equals("null")) return null;
-        return Duration.parse(nextString);
+        return IsoTimeCodec.parseDuration(nextString);
     }
 }
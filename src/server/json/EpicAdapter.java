@@ -0,0 +1,37 @@
+package server.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Epic;
+
+import java.io.IOException;
+
+public class EpicAdapter extends TypeAdapter<Epic> {
+    @Override
+    public void write(JsonWriter jsonWriter, Epic epic) throws IOException {
+        if (epic == null) {
+            jsonWriter.nullValue();
+            return;
+        }
+        jsonWriter.beginObject();
+        jsonWriter.name("subtaskIdList").beginArray();
+        for (Integer subtaskId : epic.getSubtaskIdList()) {
+            jsonWriter.value(subtaskId);
+        }
+        jsonWriter.endArray();
+        TaskJsonFields.writeDateTime(jsonWriter.name("endTime"), epic.getEndTime());
+        TaskJsonFields.writeTaskFields(jsonWriter, epic);
+        jsonWriter.endObject();
+    }
+
+    @Override
+    public Epic read(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return TaskJsonFields.read(jsonReader).toEpic();
+    }
+}
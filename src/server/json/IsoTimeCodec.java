@@ -0,0 +1,112 @@
+package server.json;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/*
+ * Запись и разбор времени в JSON без DateTimeFormatter для обычного случая.
+ * LocalDateTime пишется так же, как ISO_LOCAL_DATE_TIME: yyyy-MM-ddTHH:mm:ss[.дробная часть без хвостовых нулей].
+ * Duration пишется как PT<минуты>M. Всё, что не подходит под быстрый путь, разбирается стандартными методами
+ */
+public final class IsoTimeCodec {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private IsoTimeCodec() {
+    }
+
+    public static String format(LocalDateTime dateTime) {
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) return dateTime.format(FORMATTER);
+        char[] chars = new char[29];
+        putDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, dateTime.getMonthValue(), 2);
+        chars[7] = '-';
+        putDigits(chars, 8, dateTime.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        putDigits(chars, 11, dateTime.getHour(), 2);
+        chars[13] = ':';
+        putDigits(chars, 14, dateTime.getMinute(), 2);
+        chars[16] = ':';
+        putDigits(chars, 17, dateTime.getSecond(), 2);
+        int length = 19;
+        int nano = dateTime.getNano();
+        if (nano != 0) {
+            chars[19] = '.';
+            putDigits(chars, 20, nano, 9);
+            length = 29;
+            while (chars[length - 1] == '0') {
+                length--;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    public static LocalDateTime parseDateTime(String value) {
+        int length = value.length();
+        if (length < 16 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+                || value.charAt(13) != ':') {
+            return LocalDateTime.parse(value);
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = 0;
+        int nano = 0;
+        if (length > 16) {
+            if (length < 19 || value.charAt(16) != ':') return LocalDateTime.parse(value);
+            second = digits(value, 17, 2);
+            if (length > 19) {
+                int fractionLength = length - 20;
+                if (value.charAt(19) != '.' || fractionLength < 1 || fractionLength > 9) {
+                    return LocalDateTime.parse(value);
+                }
+                nano = digits(value, 20, fractionLength);
+                for (int i = fractionLength; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if ((year | month | day | hour | minute | second | nano) < 0) return LocalDateTime.parse(value);
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    public static String format(Duration duration) {
+        return "PT" + duration.toMinutes() + "M";
+    }
+
+    public static Duration parseDuration(String value) {
+        int length = value.length();
+        if (length > 3 && length < 22 && value.startsWith("PT") && value.charAt(length - 1) == 'M') {
+            long minutes = 0;
+            for (int i = 2; i < length - 1; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') return Duration.parse(value);
+                minutes = minutes * 10 + (c - '0');
+            }
+            return Duration.ofMinutes(minutes);
+        }
+        return Duration.parse(value);
+    }
+
+    private static void putDigits(char[] chars, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    //-1, если в диапазоне есть не цифра
+    private static int digits(String value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
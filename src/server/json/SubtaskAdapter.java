@@ -0,0 +1,32 @@
+package server.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Subtask;
+
+import java.io.IOException;
+
+public class SubtaskAdapter extends TypeAdapter<Subtask> {
+    @Override
+    public void write(JsonWriter jsonWriter, Subtask subtask) throws IOException {
+        if (subtask == null) {
+            jsonWriter.nullValue();
+            return;
+        }
+        jsonWriter.beginObject();
+        jsonWriter.name("epicId").value(subtask.getEpicId());
+        TaskJsonFields.writeTaskFields(jsonWriter, subtask);
+        jsonWriter.endObject();
+    }
+
+    @Override
+    public Subtask read(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return TaskJsonFields.read(jsonReader).toSubtask();
+    }
+}
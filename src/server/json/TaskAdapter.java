@@ -0,0 +1,41 @@
+package server.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.IOException;
+
+// Запись выбирает формат по настоящему типу задачи, поэтому списки List<Task> пишутся без рефлексии
+public class TaskAdapter extends TypeAdapter<Task> {
+    private static final SubtaskAdapter SUBTASK_ADAPTER = new SubtaskAdapter();
+    private static final EpicAdapter EPIC_ADAPTER = new EpicAdapter();
+
+    @Override
+    public void write(JsonWriter jsonWriter, Task task) throws IOException {
+        if (task == null) {
+            jsonWriter.nullValue();
+        } else if (task instanceof Subtask) {
+            SUBTASK_ADAPTER.write(jsonWriter, (Subtask) task);
+        } else if (task instanceof Epic) {
+            EPIC_ADAPTER.write(jsonWriter, (Epic) task);
+        } else {
+            jsonWriter.beginObject();
+            TaskJsonFields.writeTaskFields(jsonWriter, task);
+            jsonWriter.endObject();
+        }
+    }
+
+    @Override
+    public Task read(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return TaskJsonFields.read(jsonReader).toTask();
+    }
+}
@@ -0,0 +1,141 @@
+package server.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/*
+ * Поля задачи любого типа, прочитанные из JSON. Отсутствующие поля получают те же значения,
+ * что давал разбор через рефлексию: 0 для чисел и null для остального.
+ * Для времени, длительности и статуса, кроме настоящего null, принимается и строка "null"
+ */
+final class TaskJsonFields {
+    int id;
+    String name;
+    String description;
+    TaskStatus status;
+    Duration duration;
+    LocalDateTime startTime;
+    int epicId;
+    ArrayList<Integer> subtaskIdList;
+    LocalDateTime endTime;
+
+    static TaskJsonFields read(JsonReader reader) throws IOException {
+        TaskJsonFields fields = new TaskJsonFields();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    fields.id = reader.nextInt();
+                    break;
+                case "name":
+                    fields.name = nextString(reader);
+                    break;
+                case "description":
+                    fields.description = nextString(reader);
+                    break;
+                case "status":
+                    fields.status = readStatus(nextString(reader));
+                    break;
+                case "duration":
+                    String duration = nextString(reader);
+                    fields.duration = isNull(duration) ? null : IsoTimeCodec.parseDuration(duration);
+                    break;
+                case "startTime":
+                    fields.startTime = readDateTime(nextString(reader));
+                    break;
+                case "endTime":
+                    fields.endTime = readDateTime(nextString(reader));
+                    break;
+                case "epicId":
+                    fields.epicId = reader.nextInt();
+                    break;
+                case "subtaskIdList":
+                    fields.subtaskIdList = readIds(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return fields;
+    }
+
+    Task toTask() {
+        return new Task(id, name, description, status, duration, startTime);
+    }
+
+    Subtask toSubtask() {
+        return new Subtask(id, name, description, status, epicId, duration, startTime);
+    }
+
+    Epic toEpic() {
+        Epic epic = new Epic(id, name, description, status,
+                subtaskIdList == null ? new ArrayList<>() : subtaskIdList, duration, startTime);
+        epic.setEndTime(endTime);
+        return epic;
+    }
+
+    // Поля, общие для всех типов, в порядке, в котором их писал разбор через рефлексию
+    static void writeTaskFields(JsonWriter writer, Task task) throws IOException {
+        writer.name("id").value(task.getId());
+        writer.name("name").value(task.getName());
+        writer.name("description").value(task.getDescription());
+        writer.name("status").value(task.getStatus() == null ? null : task.getStatus().name());
+        writer.name("duration").value(task.getDuration() == null ? null : IsoTimeCodec.format(task.getDuration()));
+        writeDateTime(writer.name("startTime"), task.getStartTime());
+    }
+
+    static void writeDateTime(JsonWriter writer, LocalDateTime dateTime) throws IOException {
+        writer.value(dateTime == null ? null : IsoTimeCodec.format(dateTime));
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static boolean isNull(String value) {
+        return value == null || value.equals("null");
+    }
+
+    private static LocalDateTime readDateTime(String value) {
+        return isNull(value) ? null : IsoTimeCodec.parseDateTime(value);
+    }
+
+    //Неизвестный статус, как и у стандартного адаптера перечислений, читается как null
+    private static TaskStatus readStatus(String value) {
+        if (isNull(value)) return null;
+        try {
+            return TaskStatus.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ArrayList<Integer> readIds(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        ArrayList<Integer> ids = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ids.add(reader.nextInt());
+        }
+        reader.endArray();
+        return ids;
+    }
+}
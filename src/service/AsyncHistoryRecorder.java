@@ -0,0 +1,136 @@
+package service;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Буфер просмотров между читающими потоками и историей. Производители без блокировок занимают ячейку
+ * кольцевого буфера через CAS индекса и публикуют в неё задачу. Единственный поток-потребитель раз в maxLag
+ * забирает всё опубликованное и передаёт пачкой в Sink. Переполненный буфер отбрасывает просмотры,
+ * а заполненный больше чем наполовину сохраняет только часть из них, если задана выборка
+ */
+class AsyncHistoryRecorder {
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    interface Sink {
+        void apply(List<Task> batch);
+    }
+
+    private final Sink sink;
+    private final AtomicReferenceArray<Task> buffer;
+    private final int mask;
+    private final int overloadThreshold;
+    private final int sampleRate;
+    private final long maxLagNanos;
+    private final Thread consumer;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    //Пишет только потребитель: сколько ячеек освобождено и сколько просмотров уже применено к истории
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private volatile long appliedIndex = 0;
+    private volatile boolean closed = false;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+
+    AsyncHistoryRecorder(Sink sink, HistoryRecorderSettings settings, String name) {
+        this.sink = sink;
+        int capacity = Integer.highestOneBit(settings.getBufferCapacity() - 1) << 1;
+        if (capacity == 0) capacity = 1;
+        buffer = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        overloadThreshold = capacity / 2;
+        sampleRate = settings.getSampleRate();
+        maxLagNanos = TimeUnit.MILLISECONDS.toNanos(settings.getMaxLagMillis());
+        consumer = new Thread(this::run, name);
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    // Вызывается из любого потока и не блокируется. false - просмотр отброшен
+    boolean record(Task task) {
+        while (true) {
+            long tail = producerIndex.get();
+            long fill = tail - consumerIndex.get();
+            if (fill > mask) {
+                dropped.increment();
+                return false;
+            }
+            if (sampleRate > 1 && fill >= overloadThreshold
+                    && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+                sampledOut.increment();
+                return false;
+            }
+            if (producerIndex.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) tail & mask, task);
+                return true;
+            }
+        }
+    }
+
+    // Ждёт, пока все просмотры, записанные до вызова, попадут в историю
+    void flush() {
+        long target = producerIndex.get();
+        while (appliedIndex < target && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    // Переносит оставшиеся просмотры и останавливает поток-потребитель
+    void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>();
+        while (true) {
+            long head = consumerIndex.get();
+            while (batch.size() < MAX_BATCH_SIZE) {
+                int index = (int) head & mask;
+                Task task = buffer.get(index);
+                //Ячейка занята производителем, но ещё не опубликована - заберём на следующем проходе
+                if (task == null) break;
+                buffer.lazySet(index, null);
+                batch.add(task);
+                head++;
+            }
+            consumerIndex.set(head);
+            if (!batch.isEmpty()) {
+                try {
+                    sink.apply(batch);
+                } catch (RuntimeException e) {
+                    //История не критична: пачка теряется, но поток продолжает работу
+                }
+                batch.clear();
+                appliedIndex = head;
+                continue;
+            }
+            appliedIndex = head;
+            if (closed && head == producerIndex.get()) return;
+            LockSupport.parkNanos(this, maxLagNanos);
+        }
+    }
+}
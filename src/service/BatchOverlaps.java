@@ -0,0 +1,111 @@
+package service;
+
+import model.Epic;
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/*
+ * Пересечения по времени элементов пакета между собой и с задачами индекса.
+ * Находятся одним проходом по элементам, отсортированным по началу, и по индексу начиная с самого раннего из них.
+ * Активные отрезки лежат в куче по концу, и закончившиеся снимаются с её вершины:
+ * O((b + m) log (b + m)) плюс число найденных пересечений, где m - задачи индекса внутри временного окна пакета.
+ * Какие из пересечений мешают элементу, решается уже при применении пакета по порядку:
+ * учитываются только применённые раньше элементы и задачи, которые ещё не заменены обновлением
+ */
+class BatchOverlaps {
+    //id элемента на момент прохода: id обновляемой задачи или -1 для добавления
+    private final int[] itemIds;
+    private final List<List<Integer>> itemConflicts;
+    private final List<List<Integer>> storedConflicts;
+    private final boolean[] applied;
+    //id задачи -> последний применённый элемент пакета с этим id
+    private final Map<Integer, Integer> latestApplied;
+
+    private BatchOverlaps(int size) {
+        itemIds = new int[size];
+        itemConflicts = new ArrayList<>(Collections.nCopies(size, null));
+        storedConflicts = new ArrayList<>(Collections.nCopies(size, null));
+        applied = new boolean[size];
+        latestApplied = new HashMap<>();
+    }
+
+    static BatchOverlaps find(List<? extends Task> batch, boolean[] isUpdate, PrioritizedTaskIndex index) {
+        BatchOverlaps overlaps = new BatchOverlaps(batch.size());
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = batch.get(i);
+            overlaps.itemIds[i] = isUpdate[i] ? task.getId() : -1;
+            if (!(task instanceof Epic) && task.getStartTime() != null && task.getDuration() != null) {
+                order.add(i);
+            }
+        }
+        if (order.isEmpty()) return overlaps;
+        order.sort(Comparator.comparing(i -> batch.get(i).getStartTime()));
+
+        Iterator<Task> stored = index.iterator(null, null, 0, batch.get(order.getFirst()).getStartTime());
+        Task nextStored = stored.hasNext() ? stored.next() : null;
+        Queue<Task> activeStored = new PriorityQueue<>(Comparator.comparing(Task::getEndTime));
+        Queue<Integer> activeItems = new PriorityQueue<>(Comparator.comparing(k -> batch.get(k).getEndTime()));
+        for (int i : order) {
+            LocalDateTime start = batch.get(i).getStartTime();
+            LocalDateTime end = batch.get(i).getEndTime();
+            while (nextStored != null && !nextStored.getStartTime().isAfter(end)) {
+                activeStored.add(nextStored);
+                nextStored = stored.hasNext() ? stored.next() : null;
+            }
+            while (!activeStored.isEmpty() && activeStored.peek().getEndTime().isBefore(start)) {
+                activeStored.poll();
+            }
+            for (Task task : activeStored) {
+                if (!task.getStartTime().isAfter(end)) {
+                    add(overlaps.storedConflicts, i, task.getId());
+                }
+            }
+            //Активные элементы начались не позже start и ещё не закончились, значит пересекаются с i
+            while (!activeItems.isEmpty() && batch.get(activeItems.peek()).getEndTime().isBefore(start)) {
+                activeItems.poll();
+            }
+            for (int k : activeItems) {
+                add(overlaps.itemConflicts, i, k);
+                add(overlaps.itemConflicts, k, i);
+            }
+            activeItems.add(i);
+        }
+        return overlaps;
+    }
+
+    private static void add(List<List<Integer>> conflicts, int index, int value) {
+        if (conflicts.get(index) == null) {
+            conflicts.set(index, new ArrayList<>());
+        }
+        conflicts.get(index).add(value);
+    }
+
+    // Пересекается ли элемент с тем, что лежит в менеджере к моменту его применения. Свой прежний отрезок не считается
+    boolean overlapsApplied(int index) {
+        int ownId = itemIds[index];
+        List<Integer> stored = storedConflicts.get(index);
+        if (stored != null) {
+            for (int id : stored) {
+                if (id != ownId && !latestApplied.containsKey(id)) return true;
+            }
+        }
+        List<Integer> items = itemConflicts.get(index);
+        if (items != null) {
+            for (int k : items) {
+                int id = itemIds[k];
+                if (applied[k] && (id == -1 || id != ownId && latestApplied.get(id) == k)) return true;
+            }
+        }
+        return false;
+    }
+
+    void markApplied(int index) {
+        applied[index] = true;
+        if (itemIds[index] != -1) {
+            latestApplied.put(itemIds[index], index);
+        }
+    }
+}
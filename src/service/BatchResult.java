@@ -0,0 +1,53 @@
+package service;
+
+// Итог одной операции пакета: id задачи (-1, если задача не была добавлена), статус и причина отказа
+public class BatchResult {
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        TIME_OVERLAP
+    }
+
+    private final int id;
+    private final Status status;
+    private final String message;
+
+    private BatchResult(int id, Status status, String message) {
+        this.id = id;
+        this.status = status;
+        this.message = message;
+    }
+
+    public static BatchResult ok(int id) {
+        return new BatchResult(id, Status.OK, null);
+    }
+
+    public static BatchResult failed(int id, Status status, String message) {
+        return new BatchResult(id, status, message);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "id=" + id +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,417 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskTypes;
+import utils.Managers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Потокобезопасный менеджер для многопоточного HTTP-сервера.
+ * Хранилища - ConcurrentHashMap, а индексы id - ConcurrentSkipListSet, поэтому получение задач, подзадач,
+ * их списков и страниц не берёт блокировок.
+ * Все изменения выполняются под write-блокировкой StampedLock, что делает согласованным обновление хранилищ,
+ * приоритетного индекса, эпиков, истории и генерацию id.
+ * Составные чтения (копии эпиков, подзадачи эпика, страницы) сначала выполняются оптимистично, без блокировки,
+ * и повторяются под read-блокировкой, только если за это время началось изменение.
+ * Порядок по приоритету читается из неизменяемого снимка индекса, который строится один раз после изменения
+ * и до следующего изменения отдаётся всем читателям без блокировок.
+ * Статус и время эпика пересчитываются на месте под write-блокировкой, поэтому наружу эпики отдаются копиями:
+ * читатель не увидит смесь старых и новых значений.
+ * С HistoryRecorderSettings просмотры пишутся в историю асинхронно: get* только кладут задачу в буфер,
+ * а история догоняет их с задержкой не больше maxLagMillis. Такой менеджер нужно закрыть: close() переносит
+ * оставшиеся просмотры в историю и останавливает поток записи.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    private final StampedLock lock;
+    //StampedLock не повторно входимый, а пакет вызывает изменения внутри изменения. Меняется только владельцем
+    private volatile Thread writer;
+    private volatile PublishedSnapshot prioritizedSnapshot;
+    private final SynchronizedHistoryManager historyManager;
+    //null - просмотры записываются в историю сразу в вызывающем потоке
+    private final HistoryRecorderSettings historyRecorderSettings;
+    //Создаётся при первом просмотре: потоку записи нужна ссылка на готовый менеджер
+    private volatile AsyncHistoryRecorder historyRecorder;
+    private volatile boolean historyRecorderClosed;
+
+    public ConcurrentTaskManager() {
+        this(new SynchronizedHistoryManager(Managers.getDefaultHistory()), null);
+    }
+
+    // historyRecorderSettings == null - просмотры записываются в историю сразу
+    public ConcurrentTaskManager(HistoryRecorderSettings historyRecorderSettings) {
+        this(new SynchronizedHistoryManager(Managers.getDefaultHistory()), historyRecorderSettings);
+    }
+
+    private ConcurrentTaskManager(SynchronizedHistoryManager historyManager,
+                                  HistoryRecorderSettings historyRecorderSettings) {
+        super(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), historyManager);
+        this.historyManager = historyManager;
+        lock = new StampedLock();
+        this.historyRecorderSettings = historyRecorderSettings;
+    }
+
+    //null - просмотр пишется сразу: асинхронная запись не настроена или менеджер уже закрыт
+    private AsyncHistoryRecorder getHistoryRecorder() {
+        if (historyRecorderSettings == null || historyRecorderClosed) return null;
+        AsyncHistoryRecorder recorder = historyRecorder;
+        return recorder != null ? recorder : startHistoryRecorder();
+    }
+
+    private synchronized AsyncHistoryRecorder startHistoryRecorder() {
+        if (historyRecorder == null && !historyRecorderClosed) {
+            historyRecorder = new AsyncHistoryRecorder(this::recordBufferedViews, historyRecorderSettings,
+                    "history-recorder");
+        }
+        return historyRecorderClosed ? null : historyRecorder;
+    }
+
+    protected void write(Runnable action) {
+        writeAndGet(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    protected <T> T writeAndGet(Supplier<T> action) {
+        if (isWriteLockedByCurrentThread()) {
+            return action.get();
+        }
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        try {
+            return action.get();
+        } finally {
+            writer = null;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    protected boolean isWriteLockedByCurrentThread() {
+        return writer == Thread.currentThread();
+    }
+
+    /*
+     * action не должен иметь побочных эффектов: он может выполниться дважды. Сначала он выполняется без блокировки,
+     * и результат возвращается, если за это время не началось ни одного изменения. Исключение при таком чтении
+     * значит, что оно пересеклось с изменением, и тоже ведёт к повтору под read-блокировкой
+     */
+    protected <T> T read(Supplier<T> action) {
+        if (isWriteLockedByCurrentThread()) {
+            return action.get();
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = action.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException e) {
+                //Повторяем под блокировкой: там же будет брошено исключение, если оно не случайное
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /*
+     * Снимок публикуется вместе с stamp блокировки, при котором построен. Пока изменений не было, stamp не меняется,
+     * и снимок отдаётся без блокировки. Первый читатель после изменения строит новый под read-блокировкой
+     */
+    private PrioritizedSnapshot getPrioritizedSnapshot() {
+        long stamp = lock.tryOptimisticRead();
+        PublishedSnapshot published = prioritizedSnapshot;
+        if (stamp != 0 && published != null && published.stamp == stamp) {
+            return published.snapshot;
+        }
+        if (isWriteLockedByCurrentThread()) {
+            return snapshotPrioritized();
+        }
+        stamp = lock.readLock();
+        try {
+            PrioritizedSnapshot snapshot = snapshotPrioritized();
+            prioritizedSnapshot = new PublishedSnapshot(lock.tryOptimisticRead(), snapshot);
+            return snapshot;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static final class PublishedSnapshot {
+        private final long stamp;
+        private final PrioritizedSnapshot snapshot;
+
+        private PublishedSnapshot(long stamp, PrioritizedSnapshot snapshot) {
+            this.stamp = stamp;
+            this.snapshot = snapshot;
+        }
+    }
+
+    @Override
+    public List<Epic> getEpicList() {
+        return read(() -> copyEpics(super.getEpicList()));
+    }
+
+    // Обход по ConcurrentHashMap без общего списка: в памяти одновременно только одна копия эпика
+    @Override
+    public void forEachEpic(Consumer<? super Epic> action) {
+        super.forEachEpic(epic -> action.accept(read(() -> new Epic(epic))));
+    }
+
+    // В историю записывается сам эпик, а возвращается его копия. Просмотр пишется один раз, вне чтения копии
+    @Override
+    public Epic getEpic(int id) {
+        Epic epic = super.getEpic(id);
+        return read(() -> new Epic(epic));
+    }
+
+    @Override
+    public Task findById(int id) {
+        return read(() -> copyIfEpic(super.findById(id)));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return read(() -> copyEpics(super.getHistory()));
+    }
+
+    @Override
+    public List<Task> getHistory(int limit) {
+        return read(() -> copyEpics(super.getHistory(limit)));
+    }
+
+    @Override
+    public void forEachInHistory(boolean mostRecentFirst, int limit, Consumer<? super Task> action) {
+        read(() -> {
+            List<Task> history = new ArrayList<>();
+            super.forEachInHistory(mostRecentFirst, limit, task -> history.add(copyIfEpic(task)));
+            return history;
+        }).forEach(action);
+    }
+
+    private static <T extends Task> List<T> copyEpics(List<T> tasks) {
+        tasks.replaceAll(ConcurrentTaskManager::copyIfEpic);
+        return tasks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> T copyIfEpic(T task) {
+        return task instanceof Epic epic ? (T) new Epic(epic) : task;
+    }
+
+    @Override
+    public List<Subtask> getSubtaskListOfEpic(int epicId) {
+        return read(() -> super.getSubtaskListOfEpic(epicId));
+    }
+
+    // Список только для чтения, общий для всех читателей до следующего изменения
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return getPrioritizedSnapshot().toList();
+    }
+
+    @Override
+    protected Iterator<Task> prioritizedIterator(TaskTypes type, LocalDateTime afterStart, int afterId,
+                                                 LocalDateTime from) {
+        return getPrioritizedSnapshot().iterator(type, afterStart, afterId, from);
+    }
+
+    // Обход по опубликованному снимку, который не копируется для каждого вызова
+    @Override
+    public void forEachPrioritized(Consumer<? super Task> action) {
+        getPrioritizedSnapshot().toList().forEach(action);
+    }
+
+    @Override
+    public List<Task> findTasks(TaskQuery query) {
+        return read(() -> super.findTasks(query));
+    }
+
+    @Override
+    public List<Subtask> findSubtasks(TaskQuery query) {
+        return read(() -> super.findSubtasks(query));
+    }
+
+    @Override
+    public List<Epic> findEpics(TaskQuery query) {
+        return read(() -> copyEpics(super.findEpics(query)));
+    }
+
+    // Удаление пишет сначала в хранилище, потом в историю, поэтому проверка под блокировкой истории
+    // не даст параллельному просмотру вернуть в историю уже удалённую задачу
+    @Override
+    protected void recordView(Task task) {
+        AsyncHistoryRecorder recorder = getHistoryRecorder();
+        if (recorder != null) {
+            recorder.record(task);
+            return;
+        }
+        historyManager.runLocked(() -> {
+            if (isStored(task)) {
+                super.recordView(task);
+                onViewRecorded(task);
+            }
+        });
+    }
+
+    @Override
+    protected void recordViews(List<? extends Task> tasks) {
+        historyManager.runLocked(() -> {
+            List<Task> stored = storedOnly(tasks);
+            if (!stored.isEmpty()) {
+                super.recordViews(stored);
+            }
+        });
+    }
+
+    // Пачка от потока записи истории. Задачи, удалённые или заменённые, пока просмотр лежал в буфере, пропускаются
+    private void recordBufferedViews(List<Task> tasks) {
+        historyManager.runLocked(() -> {
+            List<Task> stored = storedOnly(tasks);
+            if (!stored.isEmpty()) {
+                super.recordViews(stored);
+                stored.forEach(this::onViewRecorded);
+            }
+        });
+    }
+
+    private List<Task> storedOnly(List<? extends Task> tasks) {
+        List<Task> stored = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (isStored(task)) {
+                stored.add(task);
+            }
+        }
+        return stored;
+    }
+
+    // Вызывается под блокировкой истории после того, как просмотр get* попал в историю, в порядке истории
+    protected void onViewRecorded(Task task) {
+    }
+
+    // Ждёт, пока в историю попадут все просмотры, сделанные до вызова. Без асинхронной записи ничего не делает
+    public void flushHistory() {
+        AsyncHistoryRecorder recorder = historyRecorder;
+        if (recorder != null) {
+            recorder.flush();
+        }
+    }
+
+    // Просмотры, отброшенные из-за переполнения буфера
+    public long getDroppedViewCount() {
+        AsyncHistoryRecorder recorder = historyRecorder;
+        return recorder == null ? 0 : recorder.getDroppedCount();
+    }
+
+    // Просмотры, пропущенные выборкой при перегрузке
+    public long getSampledOutViewCount() {
+        AsyncHistoryRecorder recorder = historyRecorder;
+        return recorder == null ? 0 : recorder.getSampledOutCount();
+    }
+
+    // Переносит оставшиеся просмотры в историю и останавливает поток записи. Дальше просмотры пишутся сразу
+    @Override
+    public void close() {
+        AsyncHistoryRecorder recorder;
+        synchronized (this) {
+            historyRecorderClosed = true;
+            recorder = historyRecorder;
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    @Override
+    public void clearTaskMap() {
+        write(super::clearTaskMap);
+    }
+
+    @Override
+    public void clearSubtaskMap() {
+        write(super::clearSubtaskMap);
+    }
+
+    @Override
+    public void clearEpicMap() {
+        write(super::clearEpicMap);
+    }
+
+    @Override
+    public void addTask(Task task) {
+        write(() -> super.addTask(task));
+    }
+
+    @Override
+    public void addSubtask(Subtask subtask) {
+        write(() -> super.addSubtask(subtask));
+    }
+
+    @Override
+    public void addEpic(Epic epic) {
+        write(() -> super.addEpic(epic));
+    }
+
+    @Override
+    public void updateTask(Task newTask) {
+        write(() -> super.updateTask(newTask));
+    }
+
+    @Override
+    public void updateSubtask(Subtask newSubtask) {
+        write(() -> super.updateSubtask(newSubtask));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> super.updateEpic(epic));
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        write(() -> super.deleteTask(id));
+    }
+
+    @Override
+    public void deleteSubtask(int id) {
+        write(() -> super.deleteSubtask(id));
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        write(() -> super.deleteEpic(id));
+    }
+
+    // Пакет применяется под одной write-блокировкой: читатели видят его целиком или не видят совсем
+    @Override
+    public List<BatchResult> addTasks(List<? extends Task> tasks) {
+        return writeAndGet(() -> super.addTasks(tasks));
+    }
+
+    @Override
+    public List<BatchResult> updateTasks(List<? extends Task> tasks) {
+        return writeAndGet(() -> super.updateTasks(tasks));
+    }
+
+    @Override
+    public List<BatchResult> addOrUpdateTasks(List<? extends Task> tasks) {
+        return writeAndGet(() -> super.addOrUpdateTasks(tasks));
+    }
+
+    @Override
+    public List<BatchResult> deleteTasks(TaskTypes type, List<Integer> ids) {
+        return writeAndGet(() -> super.deleteTasks(type, ids));
+    }
+}
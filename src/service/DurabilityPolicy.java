@@ -0,0 +1,10 @@
+package service;
+
+public enum DurabilityPolicy {
+    //Каждое изменение записывается и сбрасывается на диск (fsync) до возврата из метода менеджера
+    SYNC,
+    //Изменения, пришедшие в пределах окна, пишутся одной записью с одним fsync. awaitDurability() ждёт записи
+    GROUP_COMMIT,
+    //Накопленные изменения пишутся раз в интервал. awaitDurability() не ждёт, при сбое теряется не больше интервала
+    INTERVAL
+}
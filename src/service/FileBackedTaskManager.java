@@ -6,177 +6,680 @@ import utils.Managers;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-
-public class FileBackedTaskManager extends InMemoryTaskManager {
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Менеджер, сохраняющий задачи в файл. Изменения уходят на диск через очередь отложенной записи,
+ * поэтому перед завершением работы менеджер нужно закрыть: close() дописывает всё принятое
+ */
+public class FileBackedTaskManager extends ConcurrentTaskManager {
     private final File saveFile;
+    //null - каждое изменение перезаписывает файл целиком, иначе изменения дописываются в журнал
+    private final TaskJournal journal;
+    //Сегмент журнала, который сейчас сжимается в снимок
+    private final File compactingJournalFile;
+    private final PersistenceSettings settings;
+    private final ExecutorService compactor;
+    private volatile Future<?> compaction;
+    //Изменения пишутся на диск пачками в отдельном потоке. При SYNC метод менеджера ждёт записи своего изменения
+    //уже после снятия write-блокировки, поэтому чтения не стоят за fsync. Создаётся при первом изменении
+    private volatile WriteBehindQueue writeBehind;
+    //Номер последнего изменения, сделанного потоком, для ожидания его записи в awaitDurability()
+    private final ThreadLocal<Long> lastSequence = new ThreadLocal<>();
+    //Закодированные записи применяемого пакета, пишутся одной операцией после него. Доступ под write-блокировкой
+    private List<byte[]> batchLines;
+    //null - история просмотров не сохраняется, иначе просмотры пачками дописываются в журнал просмотров
+    private final HistoryLog historyLog;
+    //Создаются при первом просмотре
+    private volatile WriteBehindQueue historyWriter;
+    private ScheduledExecutorService historyCompactor;
+    private volatile boolean closed;
 
     public FileBackedTaskManager(File saveFile) throws FileNotFoundException {
-        super();
+        this(saveFile, null, PersistenceSettings.defaults());
+    }
+
+    // Режим журнала: изменения дописываются в journalFile, полный снимок пишется при сжатии журнала
+    public FileBackedTaskManager(File saveFile, File journalFile, PersistenceSettings settings)
+            throws FileNotFoundException {
+        super(settings.getHistoryRecorderSettings());
         if (saveFile == null || !saveFile.exists()) {
             throw new FileNotFoundException("Файл не найден: " + saveFile);
         }
         this.saveFile = saveFile;
+        this.settings = settings;
+        if (journalFile == null) {
+            journal = null;
+            compactingJournalFile = null;
+            compactor = null;
+        } else {
+            journal = new TaskJournal(journalFile);
+            compactingJournalFile = new File(journalFile.getPath() + ".compacting");
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        historyLog = settings.isHistoryLogEnabled() ? new HistoryLog(new File(saveFile.getPath() + ".history")) : null;
     }
 
-    private static String toString(Task task) {
-        String epicId = "";
-        TaskTypes taskType = TaskTypes.TASK;
-        if (task instanceof Subtask) {
-            epicId = String.valueOf(((Subtask) task).getEpicId());
-            taskType = TaskTypes.SUBTASK;
-        } else if (task instanceof Epic) {
-            taskType = TaskTypes.EPIC;
+    // Потоки записи запускаются не в конструкторе, а при первом обращении: им нужна ссылка на готовый менеджер
+    private WriteBehindQueue getWriteBehind() {
+        WriteBehindQueue queue = writeBehind;
+        return queue != null ? queue : startWriteBehind();
+    }
+
+    private synchronized WriteBehindQueue startWriteBehind() {
+        if (closed) {
+            throw new ManagerSaveException("Менеджер закрыт");
+        }
+        if (writeBehind == null) {
+            //При SYNC пачку не задерживаем: её ждёт сам вызвавший поток
+            long commitWindowMillis = settings.getDurabilityPolicy() == DurabilityPolicy.SYNC
+                    ? 0 : settings.getCommitWindowMillis();
+            if (journal == null) {
+                //Для снимка содержимое изменений не важно: вся пачка заменяется одной перезаписью файла
+                writeBehind = new WriteBehindQueue(batch -> replaceSnapshot(copyAllTasks()),
+                        commitWindowMillis, "snapshot-writer");
+            } else {
+                writeBehind = new WriteBehindQueue(journal::append, commitWindowMillis, "journal-writer");
+            }
         }
-        return String.format("%d,%s,%s,%s,%s,%s,%s,%s",
-                task.getId(), taskType, task.getName(), task.getStatus(), task.getDescription(), epicId,
-                task.getDuration(), task.getStartTime());
+        return writeBehind;
     }
 
-    private static Task fromString(String value) {
-        //value = "id,type,name,status,description,epicId,duration,startTime" - CSV
-        String[] taskInfo = value.split(",");
-        int taskId = Integer.parseInt(taskInfo[0]);
-        String taskName = taskInfo[2];
-        TaskStatus taskStatus = TaskStatus.valueOf(taskInfo[3]);
-        String taskDescription = taskInfo[4];
-        Duration taskDuration = taskInfo[6].equals("null") ? null : Duration.parse(taskInfo[6]);
-        LocalDateTime taskStartTime = taskInfo[7].equals("null") ? null : LocalDateTime.parse(taskInfo[7]);
+    private WriteBehindQueue getHistoryWriter() {
+        WriteBehindQueue queue = historyWriter;
+        return queue != null ? queue : startHistoryWriter();
+    }
 
-        if (taskInfo[1].equals(TaskTypes.SUBTASK.toString())) {
-            return new Subtask(taskId, taskName, taskDescription, taskStatus, Integer.parseInt(taskInfo[5]), taskDuration, taskStartTime);
-        } else if (taskInfo[1].equals(TaskTypes.EPIC.toString())) {
-            return new Epic(taskId, taskName, taskDescription, taskStatus, new ArrayList<>());
+    private synchronized WriteBehindQueue startHistoryWriter() {
+        if (closed) {
+            throw new ManagerSaveException("Менеджер закрыт");
         }
-
-        return new Task(taskId, taskName, taskDescription, taskStatus, taskDuration, taskStartTime);
+        if (historyWriter == null) {
+            historyCompactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "history-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            historyCompactor.scheduleWithFixedDelay(this::compactHistoryQuietly, settings.getHistoryCompactionMillis(),
+                    settings.getHistoryCompactionMillis(), TimeUnit.MILLISECONDS);
+            historyWriter = new WriteBehindQueue(historyLog::append, settings.getCommitWindowMillis(), "history-writer");
+        }
+        return historyWriter;
     }
 
     private void save() {
-        try (FileWriter fileWriter = new FileWriter(saveFile, StandardCharsets.UTF_8);
-             BufferedWriter bufferedWriter = new BufferedWriter(fileWriter)) {
-            Set<Task> allTasks = new TreeSet<>(Comparator.comparingInt(Task::getId));
-
-            allTasks.addAll(getTaskList());
-            allTasks.addAll(getEpicList());
-            allTasks.addAll(getSubtaskList());
-
-            String header = "id,type,name,status,description,epicId,duration,startTime";
-            bufferedWriter.write(header);
-            bufferedWriter.newLine();
-
-            allTasks.stream().forEach(task -> {
-                String taskInCSV = toString(task);
-                try {
-                    bufferedWriter.write(taskInCSV);
-                    bufferedWriter.newLine();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+        writeSnapshot(saveFile, copyAllTasks());
+    }
 
+    // Пишет снимок во временный файл и атомарно заменяет им старый
+    private void replaceSnapshot(List<Task> tasks) {
+        File tempFile = new File(saveFile.getPath() + ".tmp");
+        writeSnapshot(tempFile, tasks);
+        try {
+            Files.move(tempFile.toPath(), saveFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка замены снимка");
+        }
+    }
+
+    // Копии, снятые под read-блокировкой: снимок не изменится, даже если хранимые задачи поменяют после неё
+    private List<Task> copyAllTasks() {
+        return read(() -> {
+            List<Task> allTasks = new ArrayList<>(getEpicList());
+            forEachTask(task -> allTasks.add(new Task(task)));
+            forEachSubtask(subtask -> allTasks.add(new Subtask(subtask)));
+            return allTasks;
+        });
+    }
+
+    /*
+     * Снимок для сжатия журнала снимается в потоке сжатия без общей блокировки, пока писатели продолжают работу.
+     * Он не старше поворота журнала, а записи нового журнала при восстановлении идемпотентно доводят его
+     * до текущего состояния. Подзадача, чей эпик не попал в снимок, отбрасывается: эпик либо удалён,
+     * либо создан после обхода эпиков, и в обоих случаях нужные записи есть в новом журнале
+     */
+    private List<Task> copyTasksAfterRotation() {
+        List<Task> allTasks = new ArrayList<>();
+        Set<Integer> copiedEpicIds = new HashSet<>();
+        forEachEpic(epic -> {
+            allTasks.add(epic);
+            copiedEpicIds.add(epic.getId());
+        });
+        forEachTask(task -> allTasks.add(new Task(task)));
+        forEachSubtask(subtask -> {
+            if (copiedEpicIds.contains(subtask.getEpicId())) {
+                allTasks.add(new Subtask(subtask));
+            }
+        });
+        return allTasks;
+    }
+
+    private void writeSnapshot(File file, List<Task> tasks) {
+        Set<Task> allTasks = new TreeSet<>(Comparator.comparingInt(Task::getId));
+        allTasks.addAll(tasks);
+        try (FileOutputStream fileOutput = new FileOutputStream(file);
+             BufferedOutputStream bufferedOutput = new BufferedOutputStream(fileOutput)) {
+            if (settings.getSnapshotFormat() == SnapshotFormat.BINARY) {
+                TaskBinaryFormat.write(bufferedOutput, allTasks);
+            } else {
+                writeCsv(bufferedOutput, allTasks);
+            }
+            bufferedOutput.flush();
+            fileOutput.getChannel().force(false);
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка сохранения");
         }
     }
 
+    private static void writeCsv(OutputStream output, Set<Task> allTasks) throws IOException {
+        BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        bufferedWriter.write(TaskCsvFormat.HEADER);
+        bufferedWriter.newLine();
+
+        allTasks.stream().forEach(task -> {
+            String taskInCSV = TaskCsvFormat.toString(task);
+            try {
+                bufferedWriter.write(taskInCSV);
+                bufferedWriter.newLine();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        bufferedWriter.flush();
+    }
+
+    // Формат снимка (CSV или двоичный) определяется по заголовку файла и сохраняется для последующих записей
     public static FileBackedTaskManager loadFromFile(File file) throws FileNotFoundException {
-        List<Task> allTasksFromSave = new ArrayList<>();
-        try (FileReader fileReader = new FileReader(file, StandardCharsets.UTF_8);
-             BufferedReader bufferedReader = new BufferedReader(fileReader)) {
-            boolean isFirst = true;
-            while (bufferedReader.ready()) {
+        return loadFromFile(file, PersistenceSettings.defaults().withSnapshotFormat(detectFormat(file)));
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceSettings settings)
+            throws FileNotFoundException {
+        FileBackedTaskManager newManager = load(Managers.getFileBacked(file, settings));
+        newManager.replayHistory();
+        return newManager;
+    }
+
+    private static SnapshotFormat detectFormat(File file) throws FileNotFoundException {
+        if (file == null || !file.exists()) {
+            throw new FileNotFoundException("Файл не найден: " + file);
+        }
+        try {
+            return TaskBinaryFormat.isBinary(file) ? SnapshotFormat.BINARY : SnapshotFormat.CSV;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка загрузки из файла");
+        }
+    }
+
+    /*
+     * Загружает последний снимок и применяет к нему журнал. Новые изменения дописываются в тот же журнал.
+     * Если прошлое сжатие не завершилось, сначала применяется сжимавшийся сегмент, а затем сразу пишется новый снимок
+     */
+    public static FileBackedTaskManager loadFromFile(File file, File journalFile) throws FileNotFoundException {
+        return loadFromFile(file, journalFile, PersistenceSettings.defaults().withSnapshotFormat(detectFormat(file)));
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, File journalFile, PersistenceSettings settings)
+            throws FileNotFoundException {
+        FileBackedTaskManager newManager = load(Managers.getJournaled(file, journalFile, settings));
+        boolean hasUnfinishedCompaction = newManager.compactingJournalFile.exists();
+        if (hasUnfinishedCompaction) {
+            new TaskJournal(newManager.compactingJournalFile).replay(newManager::applyRecord);
+        }
+        newManager.journal.replay(newManager::applyRecord);
+        if (hasUnfinishedCompaction) {
+            newManager.checkpoint();
+        }
+        newManager.replayHistory();
+        return newManager;
+    }
+
+    /*
+     * Снимок читается построчно, эпики и список по приоритету строятся один раз после чтения.
+     * Большой CSV-снимок на многоядерной машине разбирается параллельно через ParallelSnapshotLoader
+     */
+    private static FileBackedTaskManager load(FileBackedTaskManager newManager) {
+        readSnapshot(newManager.saveFile, newManager::loadTask);
+        newManager.finishLoad();
+        return newManager;
+    }
+
+    private static void readSnapshot(File saveFile, Consumer<Task> consumer) {
+        try {
+            if (TaskBinaryFormat.isBinary(saveFile)) {
+                try (InputStream input = new BufferedInputStream(new FileInputStream(saveFile))) {
+                    TaskBinaryFormat.read(input, consumer);
+                }
+                return;
+            }
+            if (ParallelSnapshotLoader.isWorthParallel(saveFile, ForkJoinPool.commonPool())) {
+                ParallelSnapshotLoader.read(saveFile, ForkJoinPool.commonPool(), consumer);
+                return;
+            }
+            try (FileReader fileReader = new FileReader(saveFile, StandardCharsets.UTF_8);
+                 BufferedReader bufferedReader = new BufferedReader(fileReader)) {
+                //Первая строка - заголовок
                 String line = bufferedReader.readLine();
-                if (isFirst) {
-                    isFirst = false;
-                    continue;
+                while ((line = bufferedReader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        consumer.accept(TaskCsvFormat.fromString(line));
+                    }
                 }
-                allTasksFromSave.add(fromString(line));
             }
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка загрузки из файла");
         }
+    }
 
-        FileBackedTaskManager newManager = Managers.getFileBacked(file);
-        allTasksFromSave.stream().forEach(newManager::addTaskFromFile);
-        if (!allTasksFromSave.isEmpty()) {
-            newManager.setTaskCount(allTasksFromSave.getLast().getId());
+    // Записи журнала повторяют уже проверенные операции, поэтому применяются без проверок и повторного журналирования
+    private void applyRecord(TaskJournal.Record record) {
+        switch (record.operation) {
+            case PUT:
+                //Эпик подзадачи мог быть удалён позже в журнале, тогда подзадача уже не нужна
+                if (record.task instanceof Subtask
+                        && !(findStoredTask(((Subtask) record.task).getEpicId()) instanceof Epic)) break;
+                restoreTask(record.task);
+                break;
+            case DELETE:
+                if (findStoredTask(record.id) == null) break;
+                if (record.type == TaskTypes.TASK) {
+                    super.deleteTask(record.id);
+                } else if (record.type == TaskTypes.SUBTASK) {
+                    super.deleteSubtask(record.id);
+                } else {
+                    super.deleteEpic(record.id);
+                }
+                break;
+            case CLEAR:
+                if (record.type == TaskTypes.TASK) {
+                    super.clearTaskMap();
+                } else if (record.type == TaskTypes.SUBTASK) {
+                    super.clearSubtaskMap();
+                } else {
+                    super.clearEpicMap();
+                }
+                break;
         }
-        return newManager;
+    }
+
+    // История восстанавливается после задач: просмотры удалённых с тех пор задач отбрасываются
+    private void replayHistory() {
+        if (historyLog == null) return;
+        List<Task> views = new ArrayList<>();
+        for (HistoryLog.Entry entry : historyLog.readLatest(id -> findStoredTask(id) != null, getHistoryCapacity())) {
+            views.add(findStoredTask(entry.id));
+        }
+        if (!views.isEmpty()) {
+            super.recordViews(views);
+        }
+    }
+
+    /*
+     * В журнал просмотров попадают только просмотры, записанные в историю, и только ставятся в очередь,
+     * поэтому GET не ждёт диска. Неудачная запись повторяется очередью, а ошибку сообщают flushHistory() и close().
+     * После закрытия просмотры остаются только в памяти
+     */
+    @Override
+    protected void onViewRecorded(Task task) {
+        if (historyLog == null || closed) return;
+        getHistoryWriter().enqueue(HistoryLog.encode(task.getId(), System.currentTimeMillis()));
+    }
+
+    // Сжимает журнал просмотров до последних просмотров задач, которые ещё есть в менеджере
+    public void compactHistory() {
+        if (historyLog == null) return;
+        flushHistory();
+        historyLog.compact(id -> findStoredTask(id) != null, getHistoryCapacity());
+    }
+
+    private void compactHistoryQuietly() {
+        try {
+            compactHistory();
+        } catch (RuntimeException e) {
+            //Исключение отменило бы все следующие запуски, а сжатие можно повторить в следующий раз
+        }
+    }
+
+    // Дополнительно ждёт, пока очередь просмотров будет записана в журнал просмотров
+    @Override
+    public void flushHistory() {
+        super.flushHistory();
+        WriteBehindQueue queue = historyWriter;
+        if (queue != null) {
+            queue.awaitDurable(queue.getEnqueuedSequence());
+        }
+    }
+
+    /*
+     * Синхронно пишет полный снимок и очищает журнал. Очередь дописывается до конца под write-блокировкой,
+     * иначе записи, ещё не попавшие в журнал, были бы стёрты вместе с ним
+     */
+    public void checkpoint() {
+        if (journal == null) {
+            //В режиме снимка каждая пачка очереди и есть полная перезапись снимка
+            WriteBehindQueue queue = getWriteBehind();
+            queue.awaitDurable(queue.enqueue(new byte[0]));
+            return;
+        }
+        write(() -> {
+            flush();
+            awaitCompaction();
+            save();
+            journal.truncate();
+            compactingJournalFile.delete();
+        });
+    }
+
+    // Ожидает завершения фонового сжатия журнала, если оно идёт
+    public void awaitCompaction() {
+        Future<?> currCompaction = compaction;
+        if (currCompaction == null) return;
+        try {
+            currCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new ManagerSaveException("Ошибка сжатия журнала: " + e.getCause().getMessage());
+        }
+    }
+
+    /*
+     * Ожидает записи на диск изменений, сделанных текущим потоком, если этого требует политика:
+     * при SYNC и GROUP_COMMIT - до fsync пачки, в которую попало изменение
+     */
+    @Override
+    public void awaitDurability() {
+        if (settings.getDurabilityPolicy() == DurabilityPolicy.INTERVAL) return;
+        Long sequence = lastSequence.get();
+        if (sequence != null) {
+            getWriteBehind().awaitDurable(sequence);
+        }
+    }
+
+    // Ожидает записи на диск всех изменений, сделанных к этому моменту, при любой политике
+    public void flush() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.awaitDurable(queue.getEnqueuedSequence());
+        }
+    }
+
+    /*
+     * Дописывает на диск все принятые изменения и просмотры и останавливает потоки записи и сжатия.
+     * После закрытия изменения не принимаются. Если изменения записать не удалось, бросает ManagerSaveException
+     */
+    @Override
+    public void close() {
+        //Просмотры из буфера асинхронной записи попадают в историю и журнал просмотров, пока он открыт
+        super.close();
+        //Под write-блокировкой: изменение, начатое до закрытия, успеет встать в очередь и будет записано
+        boolean wasClosed = writeAndGet(() -> {
+            synchronized (this) {
+                boolean alreadyClosed = closed;
+                closed = true;
+                return alreadyClosed;
+            }
+        });
+        if (wasClosed) return;
+        try {
+            if (writeBehind != null) {
+                writeBehind.close();
+            }
+            awaitCompaction();
+        } finally {
+            if (compactor != null) {
+                compactor.shutdown();
+            }
+            if (historyWriter != null) {
+                historyCompactor.shutdown();
+                historyWriter.close();
+            }
+            if (historyLog != null) {
+                historyLog.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    /*
+     * Изменение применяется под write-блокировкой, а записи на диск при SYNC ждём уже после неё.
+     * Пока запись на диск не удаётся, изменение отклоняется до применения, и память не расходится с диском
+     */
+    private void mutate(Runnable action) {
+        write(() -> {
+            ensureWritable();
+            action.run();
+        });
+        awaitSync();
+    }
+
+    private List<BatchResult> mutateAndGet(Supplier<List<BatchResult>> action) {
+        List<BatchResult> results = writeAndGet(() -> {
+            ensureWritable();
+            return action.get();
+        });
+        awaitSync();
+        return results;
+    }
+
+    private void ensureWritable() {
+        if (closed) {
+            throw new ManagerSaveException("Менеджер закрыт");
+        }
+        getWriteBehind().ensureWritable();
+    }
+
+    //Вложенное изменение (элемент пакета) ждёт вместе с внешним, после снятия блокировки
+    private void awaitSync() {
+        if (settings.getDurabilityPolicy() == DurabilityPolicy.SYNC && !isWriteLockedByCurrentThread()) {
+            awaitDurability();
+        }
+    }
+
+    // Под write-блокировкой запись только кодируется и ставится в очередь, пока задача не изменилась
+    private void persist(TaskJournal.Record record) {
+        byte[] line = journal == null ? new byte[0] : record.toBytes();
+        if (batchLines != null) {
+            batchLines.add(line);
+            return;
+        }
+        lastSequence.set(getWriteBehind().enqueue(line));
+        if (journal != null && isCompactionNeeded()) {
+            startCompaction();
+        }
+    }
+
+    // Пакет сохраняется один раз: одна перезапись снимка или одна дозапись в журнал с одним fsync
+    private List<BatchResult> persistOnce(Supplier<List<BatchResult>> batch) {
+        return mutateAndGet(() -> {
+            batchLines = new ArrayList<>();
+            try {
+                return batch.get();
+            } finally {
+                List<byte[]> lines = batchLines;
+                batchLines = null;
+                persistBatch(lines);
+            }
+        });
+    }
+
+    private void persistBatch(List<byte[]> lines) {
+        if (lines.isEmpty()) return;
+        long sequence = 0;
+        for (byte[] line : lines) {
+            sequence = getWriteBehind().enqueue(line);
+        }
+        lastSequence.set(sequence);
+        if (journal != null && isCompactionNeeded()) {
+            startCompaction();
+        }
+    }
+
+    private boolean isCompactionNeeded() {
+        return (compaction == null || compaction.isDone())
+                && (journal.getRecordCount() >= settings.getMaxJournalRecords()
+                || journal.getSizeBytes() >= settings.getMaxJournalBytes());
+    }
+
+    /*
+     * Вызывается под write-блокировкой, которая держится только на время переноса журнала в сжимаемый сегмент.
+     * Задачи копируются и снимок пишется в фоне во временный файл, который атомарно заменяет старый
+     */
+    private void startCompaction() {
+        journal.rotate(compactingJournalFile);
+        compaction = compactor.submit(() -> {
+            replaceSnapshot(copyTasksAfterRotation());
+            compactingJournalFile.delete();
+        });
     }
 
     @Override
     public void addTask(Task task) {
-        super.addTask(task);
-        save();
+        mutate(() -> super.addTask(task));
     }
 
     @Override
     public void addSubtask(Subtask subtask) {
-        super.addSubtask(subtask);
-        save();
+        mutate(() -> super.addSubtask(subtask));
+    }
+
+    // Запись в журнал делается здесь, чтобы её получали и одиночные операции, и элементы пакета
+    @Override
+    protected void insertTask(Task task) {
+        super.insertTask(task);
+        persist(TaskJournal.Record.put(task));
+    }
+
+    @Override
+    protected void insertSubtask(Subtask subtask) {
+        super.insertSubtask(subtask);
+        persist(TaskJournal.Record.put(subtask));
     }
 
     @Override
     public void addEpic(Epic epic) {
-        super.addEpic(epic);
-        save();
+        mutate(() -> {
+            super.addEpic(epic);
+            persist(TaskJournal.Record.put(epic));
+        });
     }
 
     @Override
     public void updateTask(Task newTask) {
-        super.updateTask(newTask);
-        save();
+        mutate(() -> super.updateTask(newTask));
     }
 
     @Override
     public void updateSubtask(Subtask newSubtask) {
-        super.updateSubtask(newSubtask);
-        save();
+        mutate(() -> super.updateSubtask(newSubtask));
+    }
+
+    @Override
+    protected void replaceTask(Task newTask) {
+        super.replaceTask(newTask);
+        persist(TaskJournal.Record.put(newTask));
+    }
+
+    @Override
+    protected void replaceSubtask(Subtask newSubtask) {
+        super.replaceSubtask(newSubtask);
+        persist(TaskJournal.Record.put(newSubtask));
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+        mutate(() -> {
+            super.updateEpic(epic);
+            persist(TaskJournal.Record.put(findStoredTask(epic.getId())));
+        });
     }
 
     @Override
     public void deleteTask(int id) {
-        super.deleteTask(id);
-        save();
+        mutate(() -> {
+            super.deleteTask(id);
+            persist(TaskJournal.Record.delete(TaskTypes.TASK, id));
+        });
     }
 
     @Override
     public void deleteSubtask(int id) {
-        super.deleteSubtask(id);
-        save();
+        mutate(() -> {
+            super.deleteSubtask(id);
+            persist(TaskJournal.Record.delete(TaskTypes.SUBTASK, id));
+        });
     }
 
     @Override
     public void deleteEpic(int id) {
-        super.deleteEpic(id);
-        save();
+        mutate(() -> {
+            super.deleteEpic(id);
+            persist(TaskJournal.Record.delete(TaskTypes.EPIC, id));
+        });
+    }
+
+    @Override
+    public List<BatchResult> addTasks(List<? extends Task> tasks) {
+        return persistOnce(() -> super.addTasks(tasks));
+    }
+
+    @Override
+    public List<BatchResult> updateTasks(List<? extends Task> tasks) {
+        return persistOnce(() -> super.updateTasks(tasks));
+    }
+
+    @Override
+    public List<BatchResult> addOrUpdateTasks(List<? extends Task> tasks) {
+        return persistOnce(() -> super.addOrUpdateTasks(tasks));
+    }
+
+    @Override
+    public List<BatchResult> deleteTasks(TaskTypes type, List<Integer> ids) {
+        return persistOnce(() -> super.deleteTasks(type, ids));
     }
 
     @Override
     public void clearTaskMap() {
-        super.clearTaskMap();
-        save();
+        mutate(() -> {
+            super.clearTaskMap();
+            persist(TaskJournal.Record.clear(TaskTypes.TASK));
+        });
     }
 
     @Override
     public void clearSubtaskMap() {
-        super.clearSubtaskMap();
-        save();
+        mutate(() -> {
+            super.clearSubtaskMap();
+            persist(TaskJournal.Record.clear(TaskTypes.SUBTASK));
+        });
     }
 
     @Override
     public void clearEpicMap() {
-        super.clearEpicMap();
-        save();
+        mutate(() -> {
+            super.clearEpicMap();
+            persist(TaskJournal.Record.clear(TaskTypes.EPIC));
+        });
     }
 
     public static void main(String[] args) throws FileNotFoundException {
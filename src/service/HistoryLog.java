@@ -0,0 +1,134 @@
+package service;
+
+import exceptions.ManagerSaveException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/*
+ * Журнал просмотров: записи по 12 байт (id задачи, время просмотра в мс), только дозапись в конец файла.
+ * Порядок записей - порядок просмотров, повторный просмотр просто дописывается ещё раз.
+ * Сжатие оставляет от каждого id последний просмотр, сохраняя порядок, и не больше maxEntries самых свежих
+ */
+class HistoryLog implements Closeable {
+    static final int RECORD_BYTES = Integer.BYTES + Long.BYTES;
+    static final int READ_CHUNK_RECORDS = 4096;
+
+    private final File file;
+    private OutputStream output;
+
+    HistoryLog(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    static byte[] encode(int id, long timestamp) {
+        return ByteBuffer.allocate(RECORD_BYTES).putInt(id).putLong(timestamp).array();
+    }
+
+    // Пачка записей уходит в файл одной операцией записи. fsync не делается: потеря последних просмотров допустима
+    synchronized void append(List<byte[]> records) throws IOException {
+        if (output == null) {
+            //Недописанная при сбое последняя запись отрезается, иначе новые записи сместятся
+            if (file.length() % RECORD_BYTES != 0) {
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                    randomAccessFile.setLength(file.length() / RECORD_BYTES * RECORD_BYTES);
+                }
+            }
+            output = new BufferedOutputStream(new FileOutputStream(file, true));
+        }
+        for (byte[] record : records) {
+            output.write(record);
+        }
+        output.flush();
+    }
+
+    static final class Entry {
+        final int id;
+        final long timestamp;
+
+        Entry(int id, long timestamp) {
+            this.id = id;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /*
+     * Последние просмотры различных id, для которых isKept истинно, в порядке просмотров, не больше maxEntries.
+     * Файл читается с конца кусками по READ_CHUNK_RECORDS записей, поэтому первый встреченный просмотр id -
+     * последний, а чтение заканчивается, как только набрано maxEntries
+     */
+    synchronized List<Entry> readLatest(IntPredicate isKept, int maxEntries) {
+        List<Entry> latest = new ArrayList<>();
+        if (!file.exists()) return latest;
+        Set<Integer> seen = new HashSet<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_RECORDS * RECORD_BYTES);
+            long end = channel.size() / RECORD_BYTES * RECORD_BYTES;
+            while (end > 0 && latest.size() < maxEntries) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) throw new EOFException();
+                }
+                for (int offset = buffer.limit() - RECORD_BYTES; offset >= 0 && latest.size() < maxEntries;
+                     offset -= RECORD_BYTES) {
+                    int id = buffer.getInt(offset);
+                    if (seen.add(id) && isKept.test(id)) {
+                        latest.add(new Entry(id, buffer.getLong(offset + Integer.BYTES)));
+                    }
+                }
+                end = start;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения журнала просмотров");
+        }
+        return latest.reversed();
+    }
+
+    // Переписывает журнал в сжатом виде во временный файл и атомарно подменяет им текущий
+    synchronized void compact(IntPredicate isKept, int maxEntries) {
+        List<Entry> latest = readLatest(isKept, maxEntries);
+        close();
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream tempOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            for (Entry entry : latest) {
+                tempOutput.writeInt(entry.id);
+                tempOutput.writeLong(entry.timestamp);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сжатия журнала просмотров");
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сжатия журнала просмотров");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка закрытия журнала просмотров");
+            } finally {
+                output = null;
+            }
+        }
+    }
+}
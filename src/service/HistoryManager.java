@@ -2,7 +2,11 @@ package service;
 
 import model.Task;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HistoryManager {
     void addToHistory(Task task);
@@ -10,4 +14,35 @@ public interface HistoryManager {
     void remove(int id);
 
     List<Task> getHistory();
+
+    // Не больше limit последних просмотров, начиная с самого свежего
+    default List<Task> getHistory(int limit) {
+        List<Task> history = new ArrayList<>(getHistory());
+        Collections.reverse(history);
+        return history.subList(0, Math.min(Math.max(limit, 0), history.size()));
+    }
+
+    // Обход истории только для чтения, в порядке просмотров или начиная с самого свежего
+    default Iterator<Task> historyIterator(boolean mostRecentFirst) {
+        return (mostRecentFirst ? getHistory(Integer.MAX_VALUE) : getHistory()).iterator();
+    }
+
+    // Обход не больше limit последних просмотров без копирования в список, для потоковой выдачи
+    default void forEachInHistory(boolean mostRecentFirst, int limit, Consumer<? super Task> action) {
+        List<Task> history = getHistory(limit);
+        if (!mostRecentFirst) {
+            history = history.reversed();
+        }
+        history.forEach(action);
+    }
+
+    // Максимальное число записей, после которого вытесняются самые давние просмотры
+    default int getCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    // Сколько записей вытеснено из-за переполнения (удаления задач не считаются)
+    default long getEvictionCount() {
+        return 0;
+    }
 }
@@ -0,0 +1,57 @@
+package service;
+
+// Настройки асинхронной записи истории просмотров в ConcurrentTaskManager
+public class HistoryRecorderSettings {
+    public static final int DEFAULT_BUFFER_CAPACITY = 64 * 1024;
+    public static final long DEFAULT_MAX_LAG_MILLIS = 10;
+
+    //Размер кольцевого буфера просмотров, округляется вверх до степени двойки
+    private final int bufferCapacity;
+    //Как часто поток-потребитель переносит накопленные просмотры в историю
+    private final long maxLagMillis;
+    //Когда буфер заполнен больше чем наполовину, сохраняется один просмотр из sampleRate. 1 - без выборки
+    private final int sampleRate;
+
+    public HistoryRecorderSettings(int bufferCapacity, long maxLagMillis, int sampleRate) {
+        if (bufferCapacity <= 0 || bufferCapacity > 1 << 30) {
+            throw new IllegalArgumentException("Размер буфера истории должен быть от 1 до 2^30");
+        }
+        if (maxLagMillis <= 0) {
+            throw new IllegalArgumentException("Задержка записи истории должна быть положительной");
+        }
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Частота выборки должна быть положительной");
+        }
+        this.bufferCapacity = bufferCapacity;
+        this.maxLagMillis = maxLagMillis;
+        this.sampleRate = sampleRate;
+    }
+
+    public static HistoryRecorderSettings defaults() {
+        return new HistoryRecorderSettings(DEFAULT_BUFFER_CAPACITY, DEFAULT_MAX_LAG_MILLIS, 1);
+    }
+
+    public HistoryRecorderSettings withBufferCapacity(int bufferCapacity) {
+        return new HistoryRecorderSettings(bufferCapacity, maxLagMillis, sampleRate);
+    }
+
+    public HistoryRecorderSettings withMaxLagMillis(long maxLagMillis) {
+        return new HistoryRecorderSettings(bufferCapacity, maxLagMillis, sampleRate);
+    }
+
+    public HistoryRecorderSettings withSampleRate(int sampleRate) {
+        return new HistoryRecorderSettings(bufferCapacity, maxLagMillis, sampleRate);
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+}
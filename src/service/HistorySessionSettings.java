@@ -0,0 +1,55 @@
+package service;
+
+// Ограничения историй просмотров отдельных клиентов в HistorySessions
+public class HistorySessionSettings {
+    public static final int DEFAULT_MAX_ENTRIES_PER_SESSION = 100;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+
+    private final int maxEntriesPerSession;
+    //Сессия без обращений дольше этого времени удаляется
+    private final long idleTimeoutMillis;
+    //Оценка памяти всех сессий вместе, при превышении удаляются самые давно использованные
+    private final long maxMemoryBytes;
+
+    public HistorySessionSettings(int maxEntriesPerSession, long idleTimeoutMillis, long maxMemoryBytes) {
+        if (maxEntriesPerSession <= 0) {
+            throw new IllegalArgumentException("Размер истории сессии должен быть положительным");
+        }
+        if (idleTimeoutMillis <= 0 || maxMemoryBytes <= 0) {
+            throw new IllegalArgumentException("Время жизни и бюджет памяти сессий должны быть положительными");
+        }
+        this.maxEntriesPerSession = maxEntriesPerSession;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public static HistorySessionSettings defaults() {
+        return new HistorySessionSettings(DEFAULT_MAX_ENTRIES_PER_SESSION, DEFAULT_IDLE_TIMEOUT_MILLIS,
+                DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+    public HistorySessionSettings withMaxEntriesPerSession(int maxEntriesPerSession) {
+        return new HistorySessionSettings(maxEntriesPerSession, idleTimeoutMillis, maxMemoryBytes);
+    }
+
+    public HistorySessionSettings withIdleTimeoutMillis(long idleTimeoutMillis) {
+        return new HistorySessionSettings(maxEntriesPerSession, idleTimeoutMillis, maxMemoryBytes);
+    }
+
+    public HistorySessionSettings withMaxMemoryBytes(long maxMemoryBytes) {
+        return new HistorySessionSettings(maxEntriesPerSession, idleTimeoutMillis, maxMemoryBytes);
+    }
+
+    public int getMaxEntriesPerSession() {
+        return maxEntriesPerSession;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public long getMaxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+}
@@ -0,0 +1,274 @@
+package service;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+/*
+ * Истории просмотров отдельных клиентов. Сессия хранит только id задач в массиве int от давних к свежим,
+ * задачи берутся из менеджера при чтении, поэтому удалённые пропадают из всех сессий без их обхода.
+ * Сессии лежат в ConcurrentHashMap, и каждая меняется под своим монитором, поэтому клиенты не ждут друг друга,
+ * а задачи из менеджера берутся вообще без блокировок. Отдельный индекс упорядочивает сессии по последнему
+ * обращению: с его начала удаляются простаивающие дольше idleTimeout и лишние при превышении общего бюджета памяти
+ */
+public class HistorySessions {
+    //Грубая оценка накладных расходов на сессию: запись карты, строка ключа, объект сессии и заголовок массива
+    static final int SESSION_OVERHEAD_BYTES = 160;
+    private static final int INITIAL_SESSION_CAPACITY = 4;
+
+    //Поля меняются под монитором сессии. order меняется, только пока сессии нет в индексе byAccess
+    private static final class Session {
+        private final String clientId;
+        private int[] ids = new int[INITIAL_SESSION_CAPACITY];
+        private int size;
+        private long order;
+        private volatile long lastAccess;
+        private long bytes;
+        //Сессия удалена из карты за простой или вытеснена, пишущий в неё поток создаст новую
+        private boolean removed;
+
+        private Session(String clientId) {
+            this.clientId = clientId;
+        }
+    }
+
+    private final IntFunction<? extends Task> taskLookup;
+    private final HistorySessionSettings settings;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Session> byAccess =
+            new ConcurrentSkipListSet<>(Comparator.comparingLong(session -> session.order));
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    public HistorySessions(IntFunction<? extends Task> taskLookup, HistorySessionSettings settings) {
+        this(taskLookup, settings, System::currentTimeMillis);
+    }
+
+    HistorySessions(IntFunction<? extends Task> taskLookup, HistorySessionSettings settings, LongSupplier clock) {
+        this.taskLookup = taskLookup;
+        this.settings = settings;
+        this.clock = clock;
+    }
+
+    // Переносит id в конец истории клиента, создавая сессию при первом просмотре
+    public void recordView(String clientId, int id) {
+        long now = clock.getAsLong();
+        expireIdle(now);
+        Session session;
+        while (true) {
+            session = sessions.computeIfAbsent(clientId, this::newSession);
+            synchronized (session) {
+                if (session.removed) continue;
+                touch(session, now);
+                addId(session, id);
+                break;
+            }
+        }
+        evictOverBudget(session);
+    }
+
+    private Session newSession(String clientId) {
+        Session session = new Session(clientId);
+        session.bytes = estimateBytes(session);
+        memoryBytes.addAndGet(session.bytes);
+        return session;
+    }
+
+    private void addId(Session session, int id) {
+        int index = indexOf(session, id);
+        if (index >= 0) {
+            System.arraycopy(session.ids, index + 1, session.ids, index, session.size - index - 1);
+            session.size--;
+        } else if (session.size == settings.getMaxEntriesPerSession()) {
+            System.arraycopy(session.ids, 1, session.ids, 0, session.size - 1);
+            session.size--;
+        } else if (session.size == session.ids.length) {
+            int newLength = Math.min(session.ids.length * 2, settings.getMaxEntriesPerSession());
+            session.ids = Arrays.copyOf(session.ids, newLength);
+            updateBytes(session);
+        }
+        session.ids[session.size++] = id;
+    }
+
+    public void remove(String clientId, int id) {
+        Session session = sessions.get(clientId);
+        if (session == null) return;
+        synchronized (session) {
+            int index = indexOf(session, id);
+            if (index >= 0) {
+                System.arraycopy(session.ids, index + 1, session.ids, index, session.size - index - 1);
+                session.size--;
+            }
+        }
+    }
+
+    /*
+     * Не больше limit последних просмотров клиента: от самого свежего или в порядке просмотров.
+     * Под монитором сессии только копируются id, задачи ищутся после. Удалённые из менеджера задачи
+     * попутно вычищаются из сессии. Нет сессии - пустой список
+     */
+    public List<Task> getHistory(String clientId, int limit, boolean mostRecentFirst) {
+        long now = clock.getAsLong();
+        expireIdle(now);
+        Session session = sessions.get(clientId);
+        if (session == null) return new ArrayList<>();
+        int[] ids;
+        synchronized (session) {
+            if (session.removed) return new ArrayList<>();
+            touch(session, now);
+            ids = Arrays.copyOf(session.ids, session.size);
+        }
+        List<Task> live = new ArrayList<>(ids.length);
+        Set<Integer> deletedIds = new HashSet<>();
+        for (int id : ids) {
+            Task task = taskLookup.apply(id);
+            if (task != null) {
+                live.add(task);
+            } else {
+                deletedIds.add(id);
+            }
+        }
+        if (!deletedIds.isEmpty()) {
+            removeIds(session, deletedIds);
+        }
+        int count = Math.min(Math.max(limit, 0), live.size());
+        List<Task> history = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            history.add(live.get(mostRecentFirst ? live.size() - 1 - i : live.size() - count + i));
+        }
+        return history;
+    }
+
+    private void removeIds(Session session, Set<Integer> ids) {
+        synchronized (session) {
+            int kept = 0;
+            for (int i = 0; i < session.size; i++) {
+                if (!ids.contains(session.ids[i])) {
+                    session.ids[kept++] = session.ids[i];
+                }
+            }
+            session.size = kept;
+        }
+    }
+
+    // История одного клиента в виде HistoryManager
+    public HistoryManager getSession(String clientId) {
+        return new HistoryManager() {
+            @Override
+            public void addToHistory(Task task) {
+                recordView(clientId, task.getId());
+            }
+
+            @Override
+            public void remove(int id) {
+                HistorySessions.this.remove(clientId, id);
+            }
+
+            @Override
+            public List<Task> getHistory() {
+                return HistorySessions.this.getHistory(clientId, Integer.MAX_VALUE, false);
+            }
+
+            @Override
+            public List<Task> getHistory(int limit) {
+                return HistorySessions.this.getHistory(clientId, limit, true);
+            }
+
+            @Override
+            public int getCapacity() {
+                return settings.getMaxEntriesPerSession();
+            }
+        };
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes.get();
+    }
+
+    // Сессии, удалённые за простой
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    // Сессии, вытесненные из-за общего бюджета памяти
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    // Вызывается под монитором сессии: переставляет её в конец индекса по обращениям
+    private void touch(Session session, long now) {
+        byAccess.remove(session);
+        session.order = accessCounter.incrementAndGet();
+        session.lastAccess = now;
+        byAccess.add(session);
+    }
+
+    private void expireIdle(long now) {
+        long idleBefore = now - settings.getIdleTimeoutMillis();
+        for (Session session : byAccess) {
+            if (session.lastAccess >= idleBefore) return;
+            if (removeSession(session)) {
+                expiredCount.increment();
+            }
+        }
+    }
+
+    // Сессия, в которую только что писали, не вытесняется, даже если одна превышает бюджет
+    private void evictOverBudget(Session current) {
+        Iterator<Session> coldest = byAccess.iterator();
+        while (memoryBytes.get() > settings.getMaxMemoryBytes() && coldest.hasNext()) {
+            Session session = coldest.next();
+            if (session != current && removeSession(session)) {
+                evictedCount.increment();
+            }
+        }
+    }
+
+    //Монитор берётся вне монитора другой сессии, поэтому взаимной блокировки нет
+    private boolean removeSession(Session session) {
+        synchronized (session) {
+            if (session.removed) return false;
+            session.removed = true;
+            byAccess.remove(session);
+            sessions.remove(session.clientId, session);
+            memoryBytes.addAndGet(-session.bytes);
+            return true;
+        }
+    }
+
+    private void updateBytes(Session session) {
+        long bytes = estimateBytes(session);
+        memoryBytes.addAndGet(bytes - session.bytes);
+        session.bytes = bytes;
+    }
+
+    private static long estimateBytes(Session session) {
+        return SESSION_OVERHEAD_BYTES + 2L * session.clientId.length() + 4L * session.ids.length;
+    }
+
+    private static int indexOf(Session session, int id) {
+        for (int i = session.size - 1; i >= 0; i--) {
+            if (session.ids[i] == id) return i;
+        }
+        return -1;
+    }
+}
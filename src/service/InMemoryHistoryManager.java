@@ -1,17 +1,33 @@
 package service;
 
 import model.Task;
-import model.Node;
 
 import java.util.*;
+import java.util.function.Consumer;
 
+/*
+ * История просмотров, ограниченная capacity записями. При переполнении вытесняется самая давняя запись за O(1).
+ * Список и индекс id -> ячейка построены на массивах примитивов, поэтому просмотр не создаёт объектов
+ * кроме редкого роста массивов
+ */
 public class InMemoryHistoryManager implements HistoryManager {
+    public static final int DEFAULT_CAPACITY = 10_000;
 
-    private final Map<Integer, Node<Task>> getterCallHistory;
+    private final int capacity;
+    private final IdSlotIndex getterCallHistory;
     private final HandMadeLinkedList<Task> getterCallHistoryList;
+    private long evictionCount;
 
     public InMemoryHistoryManager() {
-        getterCallHistory = new HashMap<>();
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        this.capacity = capacity;
+        getterCallHistory = new IdSlotIndex();
         getterCallHistoryList = new HandMadeLinkedList<>();
     }
 
@@ -20,76 +36,126 @@ public class InMemoryHistoryManager implements HistoryManager {
         return getterCallHistoryList.getTasks();
     }
 
+    @Override
+    public List<Task> getHistory(int limit) {
+        return getterCallHistoryList.getTasks(limit, true);
+    }
+
+    // Живое представление без копирования. Итератор только для чтения и падает при изменении истории во время обхода
+    @Override
+    public Iterator<Task> historyIterator(boolean mostRecentFirst) {
+        return mostRecentFirst ? getterCallHistoryList.descendingIterator() : getterCallHistoryList.iterator();
+    }
+
+    @Override
+    public void forEachInHistory(boolean mostRecentFirst, int limit, Consumer<? super Task> action) {
+        getterCallHistoryList.iterator(limit, mostRecentFirst).forEachRemaining(action);
+    }
+
     @Override
     public void addToHistory(Task task) {
         int taskId = task.getId();
-        if (getterCallHistory.containsKey(taskId)) {
-            if (getterCallHistoryList.getLast().equals(task)) return;
-            Node<Task> targetNode = getterCallHistory.get(taskId);
-            removeNode(targetNode);
+        int slot = getterCallHistory.get(taskId);
+        if (slot != IdSlotIndex.NO_SLOT) {
+            if (slot == getterCallHistoryList.tail) {
+                getterCallHistoryList.set(slot, task);
+                return;
+            }
+            getterCallHistoryList.removeListNode(slot);
+        } else if (getterCallHistoryList.size() == capacity) {
+            evictOldest();
         }
         getterCallHistory.put(taskId, getterCallHistoryList.linkLast(task));
     }
 
     @Override
     public void remove(int id) {
-        if (getterCallHistory.containsKey(id)) {
-            removeNode(getterCallHistory.get(id));
-            getterCallHistory.remove(id);
+        int slot = getterCallHistory.remove(id);
+        if (slot != IdSlotIndex.NO_SLOT) {
+            getterCallHistoryList.removeListNode(slot);
         }
     }
 
-    private void removeNode(Node<Task> node) {
-        getterCallHistoryList.removeListNode(node);
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private void evictOldest() {
+        int slot = getterCallHistoryList.head;
+        getterCallHistory.remove(getterCallHistoryList.getFirst().getId());
+        getterCallHistoryList.removeListNode(slot);
+        evictionCount++;
     }
 
+    /*
+     * Двусвязный список на параллельных массивах: узел - это номер ячейки, prev/next - номера соседей.
+     * Освободившиеся ячейки собираются в список свободных через next и переиспользуются
+     */
     static class HandMadeLinkedList<T> {
+        private static final int NIL = -1;
+
+        private Object[] data = new Object[8];
+        private int[] prev = new int[8];
+        private int[] next = new int[8];
 
         //Указатель на первый элемент списка. Он же first
-        private Node<T> head;
+        private int head = NIL;
 
         //Указатель на последний элемент списка. Он же last
-        private Node<T> tail;
+        private int tail = NIL;
 
+        private int free = NIL;
+        private int used = 0;
         private int size = 0;
+        private int modCount = 0;
 
-        public Node<T> linkFirst(T element) {
-            final Node<T> oldHead = head;
-            final Node<T> newNode = new Node<>(null, element, oldHead);
+        public int linkFirst(T element) {
+            final int oldHead = head;
+            final int newNode = allocate(element);
+            prev[newNode] = NIL;
+            next[newNode] = oldHead;
             head = newNode;
-            if (oldHead == null)
+            if (oldHead == NIL)
                 tail = newNode;
             else
-                oldHead.prev = newNode;
+                prev[oldHead] = newNode;
             size++;
+            modCount++;
             return newNode;
         }
 
         public T getFirst() {
-            final Node<T> curHead = head;
-            if (curHead == null)
+            if (head == NIL)
                 throw new NoSuchElementException();
-            return head.data;
+            return get(head);
         }
 
-        public Node<T> linkLast(T element) {
-            final Node<T> oldTail = tail;
-            final Node<T> newNode = new Node<>(oldTail, element, null);
+        public int linkLast(T element) {
+            final int oldTail = tail;
+            final int newNode = allocate(element);
+            prev[newNode] = oldTail;
+            next[newNode] = NIL;
             tail = newNode;
-            if (oldTail == null) {
+            if (oldTail == NIL) {
                 head = newNode;
             } else {
-                oldTail.next = newNode;
+                next[oldTail] = newNode;
             }
             size++;
+            modCount++;
             return newNode;
         }
 
         public T getLast() {
-            final Node<T> curTail = tail;
-            if (curTail == null)
+            if (tail == NIL)
                 throw new NoSuchElementException();
-            return tail.data;
+            return get(tail);
         }
 
         public int size() {
@@ -97,30 +163,194 @@ public class InMemoryHistoryManager implements HistoryManager {
         }
 
         public List<T> getTasks() {
-            List<T> taskList = new ArrayList<>();
-            Node<T> currNode = head;
-            while (currNode != null) {
-                taskList.add(currNode.data);
-                currNode = currNode.next;
+            List<T> taskList = new ArrayList<>(size);
+            for (int node = head; node != NIL; node = next[node]) {
+                taskList.add(get(node));
             }
             return taskList;
         }
 
-        public void removeListNode(Node<T> node) {
-            if (size == 1 && head.data.equals(node.data) && tail.data.equals(node.data)) {
-                head = null;
-                tail = null;
-            } else if (head.data.equals(node.data)) {
-                head = head.next;
-                head.prev = null;
-            } else if (tail.data.equals(node.data)) {
-                tail = tail.prev;
-                tail.next = null;
+        // Не больше limit последних элементов: от последнего к первому, либо в прямом порядке
+        public List<T> getTasks(int limit, boolean fromLast) {
+            List<T> taskList = new ArrayList<>(Math.min(Math.max(limit, 0), size));
+            iterator(limit, fromLast).forEachRemaining(taskList::add);
+            return taskList;
+        }
+
+        public Iterator<T> iterator() {
+            return iterator(Integer.MAX_VALUE, false);
+        }
+
+        public Iterator<T> descendingIterator() {
+            return iterator(Integer.MAX_VALUE, true);
+        }
+
+        // Обход limit последних элементов. Без fromLast начало ищется шагами назад от хвоста
+        public Iterator<T> iterator(int limit, boolean fromLast) {
+            int count = Math.min(Math.max(limit, 0), size);
+            int start = tail;
+            if (!fromLast) {
+                start = head;
+                if (count < size) {
+                    start = tail;
+                    for (int i = 1; i < count; i++) {
+                        start = prev[start];
+                    }
+                }
+            }
+            return new NodeIterator(count == 0 ? NIL : start, count, fromLast);
+        }
+
+        public void removeListNode(int node) {
+            int prevNode = prev[node];
+            int nextNode = next[node];
+            if (prevNode == NIL) {
+                head = nextNode;
             } else {
-                node.prev.next = node.next;
-                node.next.prev = node.prev;
+                next[prevNode] = nextNode;
             }
+            if (nextNode == NIL) {
+                tail = prevNode;
+            } else {
+                prev[nextNode] = prevNode;
+            }
+            data[node] = null;
+            next[node] = free;
+            free = node;
             --size;
+            modCount++;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int node) {
+            return (T) data[node];
+        }
+
+        void set(int node, T element) {
+            data[node] = element;
+        }
+
+        private class NodeIterator implements Iterator<T> {
+            private int node;
+            private int remaining;
+            private final boolean backward;
+            private final int expectedModCount = modCount;
+
+            NodeIterator(int node, int remaining, boolean backward) {
+                this.node = node;
+                this.remaining = remaining;
+                this.backward = backward;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                if (remaining == 0) throw new NoSuchElementException();
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                T element = get(node);
+                node = backward ? prev[node] : next[node];
+                remaining--;
+                return element;
+            }
+        }
+
+        private int allocate(T element) {
+            int node;
+            if (free != NIL) {
+                node = free;
+                free = next[node];
+            } else {
+                if (used == data.length) {
+                    int newLength = data.length * 2;
+                    data = Arrays.copyOf(data, newLength);
+                    prev = Arrays.copyOf(prev, newLength);
+                    next = Arrays.copyOf(next, newLength);
+                }
+                node = used++;
+            }
+            data[node] = element;
+            return node;
+        }
+    }
+
+    // Открытая адресация с линейным пробированием: id -> номер ячейки списка без упаковки в Integer
+    static class IdSlotIndex {
+        static final int NO_SLOT = -1;
+
+        private int[] keys = new int[16];
+        // Номер ячейки + 1, 0 - пустая позиция
+        private int[] values = new int[16];
+        private int size;
+
+        int get(int id) {
+            int mask = keys.length - 1;
+            for (int i = hash(id) & mask; values[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == id) return values[i] - 1;
+            }
+            return NO_SLOT;
+        }
+
+        void put(int id, int slot) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (values[i] != 0) {
+                if (keys[i] == id) {
+                    values[i] = slot + 1;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = id;
+            values[i] = slot + 1;
+            size++;
+        }
+
+        int remove(int id) {
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (values[i] != 0 && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == 0) return NO_SLOT;
+            int slot = values[i] - 1;
+            // Сдвигаем следующие элементы цепочки назад, чтобы не оставлять "надгробий"
+            int hole = i;
+            for (int j = (hole + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            values[hole] = 0;
+            size--;
+            return slot;
+        }
+
+        private void resize(int newLength) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[newLength];
+            values = new int[newLength];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    put(oldKeys[i], oldValues[i] - 1);
+                }
+            }
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
         }
     }
 }
@@ -5,31 +5,63 @@ import exceptions.TaskTimeOverlapException;
 import model.Task;
 import model.Subtask;
 import model.Epic;
-import model.TaskStatus;
+import model.TaskTypes;
 import utils.Managers;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 
 public class InMemoryTaskManager implements TaskManager {
 
     private final Map<Integer, Task> taskMap;
     private final Map<Integer, Subtask> subtaskMap;
     private final Map<Integer, Epic> epicMap;
+    //id каждого типа по возрастанию для постраничной выдачи. Меняются вместе с хранилищами
+    private final NavigableSet<Integer> taskIds;
+    private final NavigableSet<Integer> subtaskIds;
+    private final NavigableSet<Integer> epicIds;
     private int taskCount;
     private final HistoryManager historyManager;
-    private final TreeSet<Task> prioritizedTasks;
-
+    private final PrioritizedTaskIndex prioritizedTasks;
+    //Общие часы версий. Начинаются с текущего времени, поэтому версии не повторяются после перезапуска
+    private final AtomicLong versionClock;
+    private final long initialVersion;
+    private final AtomicLongArray collectionVersions;
+    private final Map<Integer, Long> taskVersions;
 
     public InMemoryTaskManager() {
-        taskMap = new HashMap<>();
-        subtaskMap = new HashMap<>();
-        epicMap = new HashMap<>();
+        this(new HashMap<>(), new HashMap<>(), new HashMap<>(), Managers.getDefaultHistory());
+    }
+
+    protected InMemoryTaskManager(Map<Integer, Task> taskMap, Map<Integer, Subtask> subtaskMap,
+                                  Map<Integer, Epic> epicMap, HistoryManager historyManager) {
+        this.taskMap = taskMap;
+        this.subtaskMap = subtaskMap;
+        this.epicMap = epicMap;
+        taskIds = newIdIndex(taskMap);
+        subtaskIds = newIdIndex(subtaskMap);
+        epicIds = newIdIndex(epicMap);
         taskCount = 0;
-        historyManager = Managers.getDefaultHistory();
-        prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime));
+        this.historyManager = historyManager;
+        prioritizedTasks = new PrioritizedTaskIndex();
+        initialVersion = System.currentTimeMillis() << 20;
+        versionClock = new AtomicLong(initialVersion);
+        collectionVersions = new AtomicLongArray(TaskCollection.values().length);
+        for (int i = 0; i < collectionVersions.length(); i++) {
+            collectionVersions.set(i, initialVersion);
+        }
+        taskVersions = new ConcurrentHashMap<>();
+    }
+
+    //Для потокобезопасного хранилища и индекс id потокобезопасный: страницы по id обходят его без блокировки
+    private static NavigableSet<Integer> newIdIndex(Map<Integer, ?> map) {
+        return map instanceof ConcurrentMap ? new ConcurrentSkipListSet<>() : new TreeSet<>();
     }
 
     @Override
@@ -61,44 +93,126 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return prioritizedTasks.stream().toList();
+        return prioritizedTasks.toList();
+    }
+
+    @Override
+    public void forEachTask(Consumer<? super Task> action) {
+        taskMap.values().forEach(action);
+    }
+
+    @Override
+    public void forEachSubtask(Consumer<? super Subtask> action) {
+        subtaskMap.values().forEach(action);
+    }
+
+    @Override
+    public void forEachEpic(Consumer<? super Epic> action) {
+        epicMap.values().forEach(action);
+    }
+
+    @Override
+    public void forEachPrioritized(Consumer<? super Task> action) {
+        prioritizedTasks.forEach(action);
+    }
+
+    @Override
+    public List<Task> findTasks(TaskQuery query) {
+        return findById(taskMap, taskIds, query);
+    }
+
+    // С фильтром по эпику обходятся только подзадачи этого эпика
+    @Override
+    public List<Subtask> findSubtasks(TaskQuery query) {
+        if (query.getEpicId() == null) {
+            return findById(subtaskMap, subtaskIds, query);
+        }
+        Epic epic = epicMap.get(query.getEpicId());
+        if (epic == null) return new ArrayList<>();
+        return findById(subtaskMap, epic.getSubtaskIdsAfter(query.getAfterId()), query);
+    }
+
+    @Override
+    public List<Epic> findEpics(TaskQuery query) {
+        return findById(epicMap, epicIds, query);
+    }
+
+    // Обход по дереву приоритета начинается сразу с курсора и заканчивается на первой задаче, начавшейся после окна
+    @Override
+    public List<Task> findPrioritized(TaskQuery query) {
+        List<Task> page = new ArrayList<>();
+        TaskTypes type = query.getEpicId() != null ? TaskTypes.SUBTASK : query.getType();
+        Iterator<Task> iterator = prioritizedIterator(type, query.getAfterStartTime(), query.getAfterId(),
+                query.getFrom());
+        while (iterator.hasNext() && page.size() < query.getLimit()) {
+            Task task = iterator.next();
+            if (query.getTo() != null && task.getStartTime().isAfter(query.getTo())) break;
+            if (query.matches(task)) {
+                page.add(task);
+            }
+        }
+        return page;
+    }
+
+    protected Iterator<Task> prioritizedIterator(TaskTypes type, LocalDateTime afterStart, int afterId,
+                                                 LocalDateTime from) {
+        return prioritizedTasks.iterator(type, afterStart, afterId, from);
+    }
+
+    protected PrioritizedSnapshot snapshotPrioritized() {
+        return prioritizedTasks.snapshot();
+    }
+
+    // Страница по возрастанию id - проход по упорядоченным id одного типа сразу от курсора
+    private <T extends Task> List<T> findById(Map<Integer, T> map, NavigableSet<Integer> ids, TaskQuery query) {
+        List<T> page = new ArrayList<>();
+        for (int id : ids.tailSet(query.getAfterId(), false)) {
+            if (page.size() == query.getLimit()) break;
+            T task = map.get(id);
+            if (task != null && query.matches(task)) {
+                page.add(task);
+            }
+        }
+        return page;
     }
 
     @Override
     public void clearTaskMap() {
-        taskMap.keySet().stream().forEach(historyManager::remove);
-        taskMap.clear();
+        removeAllWithHistory(taskMap);
+        taskIds.clear();
 
-        prioritizedTasks.removeIf(task -> !(task instanceof Subtask));
+        prioritizedTasks.clear(TaskTypes.TASK);
+        touch(TaskCollection.TASKS, TaskCollection.PRIORITIZED, TaskCollection.HISTORY);
     }
 
     @Override
     public void clearSubtaskMap() {
-        subtaskMap.keySet().stream().forEach(historyManager::remove);
-        subtaskMap.clear();
-        epicMap.values().stream().forEach(epic -> {
-            epic.clearSubtaskIdList();
-            updateEpicData(epic.getId());
-        });
+        removeAllWithHistory(subtaskMap);
+        subtaskIds.clear();
+        epicMap.values().stream().forEach(Epic::clearSubtaskIdList);
 
-        prioritizedTasks.removeIf(task -> task instanceof Subtask);
+        prioritizedTasks.clear(TaskTypes.SUBTASK);
+        long version = touch(TaskCollection.SUBTASKS, TaskCollection.EPICS, TaskCollection.PRIORITIZED,
+                TaskCollection.HISTORY);
+        epicMap.keySet().forEach(epicId -> touch(version, epicId));
     }
 
     @Override
     public void clearEpicMap() {
-        epicMap.keySet().stream().forEach(historyManager::remove);
-        epicMap.clear();
-        subtaskMap.keySet().stream().forEach(historyManager::remove);
-        subtaskMap.clear();
+        removeAllWithHistory(epicMap);
+        removeAllWithHistory(subtaskMap);
+        epicIds.clear();
+        subtaskIds.clear();
 
-        prioritizedTasks.removeIf(task -> task instanceof Subtask);
+        prioritizedTasks.clear(TaskTypes.SUBTASK);
+        touch(TaskCollection.EPICS, TaskCollection.SUBTASKS, TaskCollection.PRIORITIZED, TaskCollection.HISTORY);
     }
 
     @Override
     public Task getTask(int id) {
-        if (checkTask(id)) {
-            Task targetTask = taskMap.get(id);
-            historyManager.addToHistory(targetTask);
+        Task targetTask = taskMap.get(id);
+        if (targetTask != null) {
+            recordView(targetTask);
             return targetTask;
         } else {
             throw new TaskNotFoundException("Указанная задача не найдена");
@@ -107,9 +221,9 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public Subtask getSubtask(int id) {
-        if (checkSubtask(id)) {
-            Subtask targetSubtask = subtaskMap.get(id);
-            historyManager.addToHistory(targetSubtask);
+        Subtask targetSubtask = subtaskMap.get(id);
+        if (targetSubtask != null) {
+            recordView(targetSubtask);
             return targetSubtask;
         } else {
             throw new TaskNotFoundException("Указанная подзадача не найдена");
@@ -118,66 +232,123 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public Epic getEpic(int id) {
-        if (checkEpic(id)) {
-            Epic targetEpic = epicMap.get(id);
-            historyManager.addToHistory(targetEpic);
+        Epic targetEpic = epicMap.get(id);
+        if (targetEpic != null) {
+            recordView(targetEpic);
             return targetEpic;
         } else {
             throw new TaskNotFoundException("Указанный эпик не найден");
         }
     }
 
+    @Override
+    public Task findById(int id) {
+        return findStoredTask(id);
+    }
+
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
     }
 
+    @Override
+    public List<Task> getHistory(int limit) {
+        return historyManager.getHistory(limit);
+    }
+
+    @Override
+    public void forEachInHistory(boolean mostRecentFirst, int limit, Consumer<? super Task> action) {
+        historyManager.forEachInHistory(mostRecentFirst, limit, action);
+    }
+
+    @Override
+    public long getVersion(TaskCollection collection) {
+        return collectionVersions.get(collection.ordinal());
+    }
+
+    @Override
+    public long getTaskVersion(int id) {
+        return taskVersions.getOrDefault(id, initialVersion);
+    }
+
+    // Вызывается после изменения хранилищ: версия, прочитанная до содержимого, не может оказаться новее его
+    private long touch(TaskCollection... collections) {
+        long version = versionClock.incrementAndGet();
+        for (TaskCollection collection : collections) {
+            collectionVersions.set(collection.ordinal(), version);
+        }
+        return version;
+    }
+
+    private void touch(long version, int... ids) {
+        for (int id : ids) {
+            taskVersions.put(id, version);
+        }
+    }
+
     @Override
     public void addTask(Task task) {
-        if (isValidInTime(task)) {
-            task.setId(++taskCount);
-            taskMap.put(task.getId(), task);
-            addToPrioritizedTasks(task);
+        if (isValidInTime(task, -1)) {
+            insertTask(task);
         } else {
-            throw new TaskTimeOverlapException("Временной отрезок задачи "
-                    + task.getName() + " пересекается с задачами внутри менеджера");
+            throw overlapException(task);
         }
     }
 
     @Override
     public void addSubtask(Subtask subtask) {
         if (checkEpic(subtask.getEpicId())) {
-            if (isValidInTime(subtask)) {
-                subtask.setId(++taskCount);
-                subtaskMap.put(subtask.getId(), subtask);
-                epicMap.get(subtask.getEpicId()).addSubtaskId(subtask.getId());
-                updateEpicData(subtask.getEpicId());
-                addToPrioritizedTasks(subtask);
+            if (isValidInTime(subtask, -1)) {
+                insertSubtask(subtask);
             } else {
-                throw new TaskTimeOverlapException("Временной отрезок задачи "
-                        + subtask.getName() + " пересекается с задачами внутри менеджера");
+                throw overlapException(subtask);
             }
         } else {
             throw new TaskNotFoundException("Указанный эпик не найден");
         }
     }
 
+    // insert*/replace* вызываются после всех проверок, одиночной операцией или пакетом
+    protected void insertTask(Task task) {
+        task.setId(++taskCount);
+        taskMap.put(task.getId(), task);
+        taskIds.add(task.getId());
+        prioritizedTasks.add(TaskTypes.TASK, task);
+        long version = prioritizedTasks.contains(TaskTypes.TASK, task.getId())
+                ? touch(TaskCollection.TASKS, TaskCollection.PRIORITIZED) : touch(TaskCollection.TASKS);
+        touch(version, task.getId());
+    }
+
+    protected void insertSubtask(Subtask subtask) {
+        subtask.setId(++taskCount);
+        subtaskMap.put(subtask.getId(), subtask);
+        subtaskIds.add(subtask.getId());
+        Epic epic = epicMap.get(subtask.getEpicId());
+        epic.addSubtaskId(subtask.getId());
+        epic.addSubtaskData(subtask);
+        prioritizedTasks.add(TaskTypes.SUBTASK, subtask);
+        //Эпик меняется на месте, а он может быть в истории
+        long version = touch(TaskCollection.SUBTASKS, TaskCollection.EPICS, TaskCollection.PRIORITIZED,
+                TaskCollection.HISTORY);
+        touch(version, subtask.getId(), epic.getId());
+    }
+
     @Override
     public void addEpic(Epic epic) {
         epic.setId(++taskCount);
         epicMap.put(epic.getId(), epic);
+        epicIds.add(epic.getId());
+        long version = touch(TaskCollection.EPICS);
+        touch(version, epic.getId());
     }
 
     @Override
     public void updateTask(Task newTask) {
         if (checkTask(newTask.getId())) {
-            if (isValidInTime(newTask)) {
-                prioritizedTasks.removeIf(task -> task.getId() == newTask.getId());
-                taskMap.put(newTask.getId(), newTask);
-                addToPrioritizedTasks(newTask);
+            if (isValidInTime(newTask, newTask.getId())) {
+                replaceTask(newTask);
             } else {
-                throw new TaskTimeOverlapException("Временной отрезок задачи "
-                        + newTask.getName() + " пересекается с задачами внутри менеджера");
+                throw overlapException(newTask);
             }
         } else {
             throw new TaskNotFoundException("Задача, помеченная для обновления, не найдена");
@@ -186,28 +357,57 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void updateSubtask(Subtask newSubtask) {
-        int newSubtaskId = newSubtask.getId();
-        if (checkSubtask(newSubtaskId) && newSubtask.getEpicId() == subtaskMap.get(newSubtaskId).getEpicId()) {
-            if (isValidInTime(newSubtask)) {
-                prioritizedTasks.removeIf(subtask -> subtask.getId() == newSubtaskId);
-                subtaskMap.put(newSubtaskId, newSubtask);
-                addToPrioritizedTasks(newSubtask);
-                updateEpicData(newSubtask.getEpicId());
+        if (isStoredSubtaskOfSameEpic(newSubtask)) {
+            if (isValidInTime(newSubtask, newSubtask.getId())) {
+                replaceSubtask(newSubtask);
             } else {
-                throw new TaskTimeOverlapException("Временной отрезок задачи "
-                        + newSubtask.getName() + " пересекается с задачами внутри менеджера");
+                throw overlapException(newSubtask);
             }
         } else {
             throw new TaskNotFoundException("Подзадача, помеченная для обновления, не найдена");
         }
     }
 
+    private boolean isStoredSubtaskOfSameEpic(Subtask newSubtask) {
+        return checkSubtask(newSubtask.getId())
+                && newSubtask.getEpicId() == subtaskMap.get(newSubtask.getId()).getEpicId();
+    }
+
+    protected void replaceTask(Task newTask) {
+        taskMap.put(newTask.getId(), newTask);
+        prioritizedTasks.remove(TaskTypes.TASK, newTask.getId());
+        prioritizedTasks.add(TaskTypes.TASK, newTask);
+        //История хранит прежний объект задачи, поэтому не меняется
+        long version = touch(TaskCollection.TASKS, TaskCollection.PRIORITIZED);
+        touch(version, newTask.getId());
+    }
+
+    protected void replaceSubtask(Subtask newSubtask) {
+        int newSubtaskId = newSubtask.getId();
+        Subtask oldSubtask = subtaskMap.put(newSubtaskId, newSubtask);
+        prioritizedTasks.remove(TaskTypes.SUBTASK, newSubtaskId);
+        prioritizedTasks.add(TaskTypes.SUBTASK, newSubtask);
+        Epic epic = epicMap.get(newSubtask.getEpicId());
+        epic.removeSubtaskData(oldSubtask);
+        epic.addSubtaskData(newSubtask);
+        long version = touch(TaskCollection.SUBTASKS, TaskCollection.EPICS, TaskCollection.PRIORITIZED,
+                TaskCollection.HISTORY);
+        touch(version, newSubtaskId, epic.getId());
+    }
+
+    private static TaskTimeOverlapException overlapException(Task task) {
+        return new TaskTimeOverlapException("Временной отрезок задачи "
+                + task.getName() + " пересекается с задачами внутри менеджера");
+    }
+
     @Override
     public void updateEpic(Epic epic) {
         if (checkEpic(epic.getId())) {
             Epic epicToUpdate = epicMap.get(epic.getId());
             epicToUpdate.setName(epic.getName());
             epicToUpdate.setDescription(epic.getDescription());
+            long version = touch(TaskCollection.EPICS, TaskCollection.HISTORY);
+            touch(version, epic.getId());
         } else {
             throw new TaskNotFoundException("Эпик, помеченный для обновления, не найден");
         }
@@ -216,9 +416,12 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteTask(int id) {
         if (checkTask(id)) {
-            prioritizedTasks.removeIf(task -> task.getId() == id);
+            prioritizedTasks.remove(TaskTypes.TASK, id);
             taskMap.remove(id);
+            taskIds.remove(id);
             historyManager.remove(id);
+            taskVersions.remove(id);
+            touch(TaskCollection.TASKS, TaskCollection.PRIORITIZED, TaskCollection.HISTORY);
         } else {
             throw new TaskNotFoundException("Задача, помеченная для удаления, не найдена");
         }
@@ -227,12 +430,17 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteSubtask(int id) {
         if (checkSubtask(id)) {
-            prioritizedTasks.removeIf(subtask -> subtask.getId() == id);
-            Epic subtaskEpic = epicMap.get(subtaskMap.get(id).getEpicId());
+            prioritizedTasks.remove(TaskTypes.SUBTASK, id);
+            Subtask subtask = subtaskMap.remove(id);
+            subtaskIds.remove(id);
+            Epic subtaskEpic = epicMap.get(subtask.getEpicId());
             subtaskEpic.removeSubtaskId(id);
-            updateEpicData(subtaskEpic.getId());
-            subtaskMap.remove(id);
+            subtaskEpic.removeSubtaskData(subtask);
             historyManager.remove(id);
+            taskVersions.remove(id);
+            long version = touch(TaskCollection.SUBTASKS, TaskCollection.EPICS, TaskCollection.PRIORITIZED,
+                    TaskCollection.HISTORY);
+            touch(version, subtaskEpic.getId());
         } else {
             throw new TaskNotFoundException("Подзадача, помеченная для удаления, не найдена");
         }
@@ -242,87 +450,163 @@ public class InMemoryTaskManager implements TaskManager {
     public void deleteEpic(int id) {
         if (checkEpic(id)) {
             epicMap.get(id).getSubtaskIdList().stream().forEach(subtaskId -> {
-                prioritizedTasks.removeIf(subtask -> subtask.getId() == subtaskId);
+                prioritizedTasks.remove(TaskTypes.SUBTASK, subtaskId);
                 subtaskMap.remove(subtaskId);
+                subtaskIds.remove(subtaskId);
                 historyManager.remove(subtaskId);
+                taskVersions.remove(subtaskId);
             });
             epicMap.remove(id);
+            epicIds.remove(id);
             historyManager.remove(id);
+            taskVersions.remove(id);
+            touch(TaskCollection.EPICS, TaskCollection.SUBTASKS, TaskCollection.PRIORITIZED, TaskCollection.HISTORY);
         } else {
             throw new TaskNotFoundException("Эпик, помеченный для удаления, не найден");
         }
     }
 
-    private void updateEpicData(int epicId) {
-        updateEpicStatus(epicId);
-        updateEpicTime(epicId);
+    @Override
+    public List<BatchResult> addTasks(List<? extends Task> tasks) {
+        return applyBatch(tasks, new boolean[tasks.size()]);
     }
 
-    private void updateEpicStatus(int epicId) {
-        if (checkEpic(epicId)) {
-            Epic epicToUpdate = epicMap.get(epicId);
-            TaskStatus newStatus = TaskStatus.NEW;
-            List<Subtask> epicSubtaskList = getSubtaskListOfEpic(epicId);
-            if (!epicSubtaskList.isEmpty()) {
-                newStatus = epicSubtaskList.getFirst().getStatus();
-                for (int i = 1; i < epicSubtaskList.size(); i++) {
-                    if (epicSubtaskList.get(i).getStatus() != newStatus) {
-                        newStatus = TaskStatus.IN_PROGRESS;
-                        break;
-                    }
-                }
+    @Override
+    public List<BatchResult> updateTasks(List<? extends Task> tasks) {
+        boolean[] isUpdate = new boolean[tasks.size()];
+        Arrays.fill(isUpdate, true);
+        return applyBatch(tasks, isUpdate);
+    }
+
+    @Override
+    public List<BatchResult> addOrUpdateTasks(List<? extends Task> tasks) {
+        boolean[] isUpdate = new boolean[tasks.size()];
+        for (int i = 0; i < isUpdate.length; i++) {
+            isUpdate[i] = tasks.get(i).getId() != -1;
+        }
+        return applyBatch(tasks, isUpdate);
+    }
+
+    /*
+     * Пересечения по времени всего пакета находятся заранее одним проходом (BatchOverlaps),
+     * затем элементы применяются по порядку без повторной проверки каждого по дереву приоритета
+     */
+    private List<BatchResult> applyBatch(List<? extends Task> tasks, boolean[] isUpdate) {
+        BatchOverlaps overlaps = BatchOverlaps.find(tasks, isUpdate, prioritizedTasks);
+        List<BatchResult> results = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            int resultId = isUpdate[i] ? task.getId() : -1;
+            String missing = isUpdate[i] ? findMissingForUpdate(task) : findMissingForAdd(task);
+            if (missing != null) {
+                results.add(BatchResult.failed(resultId, BatchResult.Status.NOT_FOUND, missing));
+            } else if (overlaps.overlapsApplied(i)) {
+                results.add(BatchResult.failed(resultId, BatchResult.Status.TIME_OVERLAP,
+                        overlapException(task).getMessage()));
+            } else {
+                applyBatchItem(task, isUpdate[i]);
+                overlaps.markApplied(i);
+                results.add(BatchResult.ok(task.getId()));
             }
-            epicToUpdate.setStatus(newStatus);
         }
+        return results;
     }
 
-    private void updateEpicTime(int epicId) {
-        if (checkEpic(epicId)) {
-            Epic epicToUpdate = epicMap.get(epicId);
-            List<Subtask> epicSubtaskList = getSubtaskListOfEpic(epicId);
-            LocalDateTime newStartTime = null;
-            LocalDateTime newEndTime = null;
-            Duration newDuration = null;
-            if (epicSubtaskList != null && !epicSubtaskList.isEmpty()) {
-                epicSubtaskList.removeIf(currSubtask -> (currSubtask.getStartTime() == null || currSubtask.getDuration() == null));
-                if (!epicSubtaskList.isEmpty()) {
-                    newStartTime = epicSubtaskList.getFirst().getStartTime();
-                    newEndTime = epicSubtaskList.getFirst().getEndTime();
-                    newDuration = epicSubtaskList.getFirst().getDuration();
-                    for (int i = 1; i < epicSubtaskList.size(); ++i) {
-                        Subtask currSubtask = epicSubtaskList.get(i);
-                        if (currSubtask.getStartTime().isBefore(newStartTime)) {
-                            newStartTime = currSubtask.getStartTime();
-                        }
-                        if (currSubtask.getEndTime().isAfter(newEndTime)) {
-                            newEndTime = currSubtask.getEndTime();
-                        }
-                        newDuration = newDuration.plus(currSubtask.getDuration());
-                    }
-                }
+    private String findMissingForAdd(Task task) {
+        if (task instanceof Subtask subtask && !checkEpic(subtask.getEpicId())) {
+            return "Указанный эпик не найден";
+        }
+        return null;
+    }
+
+    private String findMissingForUpdate(Task task) {
+        if (task instanceof Epic) {
+            return checkEpic(task.getId()) ? null : "Эпик, помеченный для обновления, не найден";
+        } else if (task instanceof Subtask subtask) {
+            return isStoredSubtaskOfSameEpic(subtask) ? null : "Подзадача, помеченная для обновления, не найдена";
+        }
+        return checkTask(task.getId()) ? null : "Задача, помеченная для обновления, не найдена";
+    }
+
+    private void applyBatchItem(Task task, boolean isUpdate) {
+        if (task instanceof Epic epic) {
+            if (isUpdate) {
+                updateEpic(epic);
+            } else {
+                addEpic(epic);
+            }
+        } else if (task instanceof Subtask subtask) {
+            if (isUpdate) {
+                replaceSubtask(subtask);
+            } else {
+                insertSubtask(subtask);
+            }
+        } else if (isUpdate) {
+            replaceTask(task);
+        } else {
+            insertTask(task);
+        }
+    }
+
+    @Override
+    public List<BatchResult> deleteTasks(TaskTypes type, List<Integer> ids) {
+        List<BatchResult> results = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Task task = findStoredTask(id);
+            if (task == null || type != null && TaskCsvFormat.typeOf(task) != type) {
+                results.add(BatchResult.failed(id, BatchResult.Status.NOT_FOUND, "Задача с id=" + id + " не найдена"));
+                continue;
             }
-            epicToUpdate.setStartTime(newStartTime);
-            epicToUpdate.setEndTime(newEndTime);
-            epicToUpdate.setDuration(newDuration);
+            if (task instanceof Epic) {
+                deleteEpic(id);
+            } else if (task instanceof Subtask) {
+                deleteSubtask(id);
+            } else {
+                deleteTask(id);
+            }
+            results.add(BatchResult.ok(id));
         }
+        return results;
     }
 
-    private void addToPrioritizedTasks(Task task) {
-        if (task.getDuration() != null && task.getStartTime() != null) {
-            prioritizedTasks.add(task);
+    // excludedId - id задачи, которую не нужно учитывать при проверке (при обновлении это сама задача)
+    private boolean isValidInTime(Task task, int excludedId) {
+        return task.getStartTime() == null || task.getDuration() == null
+                || prioritizedTasks.findOverlap(task.getStartTime(), task.getEndTime(), excludedId) == null;
+    }
+
+    protected void recordView(Task task) {
+        historyManager.addToHistory(task);
+        touch(TaskCollection.HISTORY);
+    }
+
+    // Пачка просмотров в порядке их совершения, версия истории меняется один раз
+    protected void recordViews(List<? extends Task> tasks) {
+        for (Task task : tasks) {
+            historyManager.addToHistory(task);
         }
+        touch(TaskCollection.HISTORY);
     }
 
-    private boolean isOverlapInTime(Task t1, Task t2) {
-        return (!t1.getEndTime().isBefore(t2.getStartTime()) && !t1.getStartTime().isAfter(t2.getEndTime()))
-                || (t1.getEndTime().equals(t2.getEndTime()) && t1.getStartTime().equals(t2.getStartTime()));
+    // Задача всё ещё хранится в менеджере (не удалена и не заменена при обновлении)
+    protected boolean isStored(Task task) {
+        if (task instanceof Epic) {
+            return epicMap.get(task.getId()) == task;
+        } else if (task instanceof Subtask) {
+            return subtaskMap.get(task.getId()) == task;
+        }
+        return taskMap.get(task.getId()) == task;
     }
 
-    private boolean isValidInTime(Task task) {
-        return task.getStartTime() == null || task.getDuration() == null || prioritizedTasks.stream()
-                .filter(taskInSet -> task.getId() != taskInSet.getId())
-                .filter(taskInSet -> isOverlapInTime(task, taskInSet))
-                .collect(Collectors.toList()).isEmpty();
+    // Сначала удаляем из хранилища, затем из истории, чтобы параллельный просмотр не вернул задачу в историю
+    private void removeAllWithHistory(Map<Integer, ? extends Task> map) {
+        Iterator<Integer> iterator = map.keySet().iterator();
+        while (iterator.hasNext()) {
+            int id = iterator.next();
+            iterator.remove();
+            historyManager.remove(id);
+            taskVersions.remove(id);
+        }
     }
 
     private boolean checkTask(int id) {
@@ -337,25 +621,94 @@ public class InMemoryTaskManager implements TaskManager {
         return epicMap.containsKey(id);
     }
 
-    protected void addTaskFromFile(Task task) {
+    // Потоковая загрузка: задача кладётся в хранилище как есть, без пересчёта эпика и индекса по времени.
+    // После последней задачи нужно вызвать finishLoad()
+    protected void loadTask(Task task) {
         if (task instanceof Epic) {
             epicMap.put(task.getId(), (Epic) task);
+            epicIds.add(task.getId());
         } else if (task instanceof Subtask) {
-            Subtask subtask = (Subtask) task;
-            if (checkEpic(subtask.getEpicId())) {
-                subtaskMap.put(subtask.getId(), subtask);
-                epicMap.get(subtask.getEpicId()).addSubtaskId(subtask.getId());
-                updateEpicData(subtask.getEpicId());
+            subtaskMap.put(task.getId(), (Subtask) task);
+            subtaskIds.add(task.getId());
+        } else {
+            taskMap.put(task.getId(), task);
+            taskIds.add(task.getId());
+        }
+        taskCount = Math.max(taskCount, task.getId());
+    }
+
+    // Связывает подзадачи с эпиками, считает каждый эпик один раз и строит список по приоритету целиком
+    protected void finishLoad() {
+        Map<Integer, List<Subtask>> subtasksByEpic = new HashMap<>();
+        for (Subtask subtask : subtaskMap.values()) {
+            if (!checkEpic(subtask.getEpicId())) {
+                throw new TaskNotFoundException("Указанный эпик не найден");
+            }
+            subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+        }
+        for (Epic epic : epicMap.values()) {
+            epic.setSubtaskData(subtasksByEpic.getOrDefault(epic.getId(), List.of()));
+        }
+        prioritizedTasks.rebuild(TaskTypes.TASK, taskMap.values());
+        prioritizedTasks.rebuild(TaskTypes.SUBTASK, subtaskMap.values());
+    }
+
+    // Добавляет или заменяет задачу с сохранением её id, без проверки пересечений. Используется при восстановлении
+    protected void restoreTask(Task task) {
+        int id = task.getId();
+        if (task instanceof Epic) {
+            Epic storedEpic = epicMap.get(id);
+            if (storedEpic != null) {
+                storedEpic.setName(task.getName());
+                storedEpic.setDescription(task.getDescription());
             } else {
+                epicMap.put(id, (Epic) task);
+                epicIds.add(id);
+            }
+        } else if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            Epic epic = epicMap.get(subtask.getEpicId());
+            if (epic == null) {
                 throw new TaskNotFoundException("Указанный эпик не найден");
             }
+            Subtask oldSubtask = subtaskMap.put(id, subtask);
+            subtaskIds.add(id);
+            if (oldSubtask != null) {
+                epic.removeSubtaskData(oldSubtask);
+            } else {
+                epic.addSubtaskId(id);
+            }
+            epic.addSubtaskData(subtask);
+            prioritizedTasks.remove(TaskTypes.SUBTASK, id);
+            prioritizedTasks.add(TaskTypes.SUBTASK, subtask);
         } else {
-            taskMap.put(task.getId(), task);
+            taskMap.put(id, task);
+            taskIds.add(id);
+            prioritizedTasks.remove(TaskTypes.TASK, id);
+            prioritizedTasks.add(TaskTypes.TASK, task);
+        }
+        taskCount = Math.max(taskCount, id);
+        long version = touch(TaskCollection.values());
+        touch(version, id);
+        if (task instanceof Subtask) {
+            touch(version, ((Subtask) task).getEpicId());
         }
     }
 
-    protected void setTaskCount(int taskCount) {
-        this.taskCount = taskCount;
+    protected int getHistoryCapacity() {
+        return historyManager.getCapacity();
+    }
+
+    // Поиск задачи любого типа без записи в историю
+    protected Task findStoredTask(int id) {
+        Task task = taskMap.get(id);
+        if (task == null) {
+            task = subtaskMap.get(id);
+        }
+        if (task == null) {
+            task = epicMap.get(id);
+        }
+        return task;
     }
 }
 
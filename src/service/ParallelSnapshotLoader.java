@@ -0,0 +1,135 @@
+package service;
+
+import exceptions.ManagerSaveException;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/*
+ * Параллельная загрузка CSV-снимка. Файл делится на куски по границам строк, каждый кусок читается
+ * позиционным чтением общего канала и разбирается в ForkJoinPool, а задачи передаются в consumer в одном потоке
+ * по порядку кусков. Связи эпиков с подзадачами строятся потом, в finishLoad() менеджера.
+ * Файл не отображается в память: отображение живёт до сборки мусора, и на Windows атомарная замена снимка
+ * при следующей записи не удалась бы. Канал закрывается до возврата из read()
+ */
+final class ParallelSnapshotLoader {
+    //Файлы меньше этого размера быстрее читать последовательно
+    static final long MIN_PARALLEL_SIZE = 1 << 20;
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SCAN_BLOCK_SIZE = 4096;
+
+    private ParallelSnapshotLoader() {
+    }
+
+    static boolean isWorthParallel(File file, ForkJoinPool pool) {
+        return pool.getParallelism() > 1 && file.length() >= MIN_PARALLEL_SIZE && file.length() <= Integer.MAX_VALUE;
+    }
+
+    static void read(File file, ForkJoinPool pool, Consumer<Task> consumer) {
+        long size = file.length();
+        int chunkCount = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                size / MIN_CHUNK_SIZE));
+        read(file, pool, chunkCount, consumer);
+    }
+
+    static void read(File file, ForkJoinPool pool, int chunkCount, Consumer<Task> consumer) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ManagerSaveException("Файл слишком большой для параллельной загрузки: " + file);
+            }
+            int limit = (int) size;
+            List<ChunkParser> parsers = new ArrayList<>(chunkCount);
+            //Первая строка - заголовок
+            int from = nextLineStart(channel, 0, limit);
+            for (int i = 1; i <= chunkCount && from < limit; i++) {
+                int to = i == chunkCount ? limit
+                        : nextLineStart(channel, Math.max(from, (int) ((long) limit * i / chunkCount)), limit);
+                if (to > from) {
+                    ChunkParser parser = new ChunkParser(channel, from, to);
+                    parsers.add(parser);
+                    pool.execute(parser);
+                }
+                from = to;
+            }
+            //Куски читают канал, поэтому их дожидаемся до его закрытия
+            for (ChunkParser parser : parsers) {
+                parser.join().forEach(consumer);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка загрузки из файла");
+        }
+    }
+
+    // Позиция сразу после ближайшего '\n', начиная с position, либо limit
+    private static int nextLineStart(FileChannel channel, int position, int limit) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+        int blockStart = position;
+        while (blockStart < limit) {
+            block.clear().limit(Math.min(SCAN_BLOCK_SIZE, limit - blockStart));
+            readFully(channel, block, blockStart);
+            for (int i = 0; i < block.limit(); i++) {
+                if (block.get(i) == '\n') return blockStart + i + 1;
+            }
+            blockStart += block.limit();
+        }
+        return limit;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Файл снимка изменился во время загрузки");
+            }
+        }
+    }
+
+    private static class ChunkParser extends RecursiveTask<List<Task>> {
+        private static final long serialVersionUID = 1L;
+
+        //Канал не сериализуется: задача живёт только внутри одного вызова read()
+        private final transient FileChannel channel;
+        private final int from;
+        private final int to;
+
+        ChunkParser(FileChannel channel, int from, int to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Task> compute() {
+            byte[] bytes = new byte[to - from];
+            try {
+                readFully(channel, ByteBuffer.wrap(bytes), from);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка загрузки из файла");
+            }
+            List<Task> tasks = new ArrayList<>();
+            int lineStart = 0;
+            for (int i = 0; i <= bytes.length; i++) {
+                if (i == bytes.length || bytes[i] == '\n') {
+                    int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                    if (lineEnd > lineStart) {
+                        String line = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                        tasks.add(TaskCsvFormat.fromString(line));
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            return tasks;
+        }
+    }
+}
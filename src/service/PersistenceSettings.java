@@ -0,0 +1,121 @@
+package service;
+
+// Настройки сохранения FileBackedTaskManager
+public class PersistenceSettings {
+    public static final long DEFAULT_MAX_JOURNAL_RECORDS = 100_000;
+    public static final long DEFAULT_MAX_JOURNAL_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_COMMIT_WINDOW_MILLIS = 5;
+    public static final long DEFAULT_HISTORY_COMPACTION_MILLIS = 60_000;
+
+    //При превышении любого из порогов журнал сжимается в новый снимок в фоне
+    private final long maxJournalRecords;
+    private final long maxJournalBytes;
+    private final DurabilityPolicy durabilityPolicy;
+    //Окно группировки для GROUP_COMMIT или интервал записи для INTERVAL
+    private final long commitWindowMillis;
+    private final SnapshotFormat snapshotFormat;
+    //Период сжатия журнала просмотров. 0 - история просмотров не сохраняется
+    private final long historyCompactionMillis;
+    //null - просмотры записываются в историю сразу
+    private final HistoryRecorderSettings historyRecorderSettings;
+
+    public PersistenceSettings(long maxJournalRecords, long maxJournalBytes) {
+        this(maxJournalRecords, maxJournalBytes, DurabilityPolicy.SYNC, DEFAULT_COMMIT_WINDOW_MILLIS);
+    }
+
+    public PersistenceSettings(long maxJournalRecords, long maxJournalBytes,
+                               DurabilityPolicy durabilityPolicy, long commitWindowMillis) {
+        this(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis, SnapshotFormat.CSV);
+    }
+
+    public PersistenceSettings(long maxJournalRecords, long maxJournalBytes, DurabilityPolicy durabilityPolicy,
+                               long commitWindowMillis, SnapshotFormat snapshotFormat) {
+        this(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis, snapshotFormat, 0);
+    }
+
+    public PersistenceSettings(long maxJournalRecords, long maxJournalBytes, DurabilityPolicy durabilityPolicy,
+                               long commitWindowMillis, SnapshotFormat snapshotFormat, long historyCompactionMillis) {
+        this(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis, snapshotFormat,
+                historyCompactionMillis, null);
+    }
+
+    public PersistenceSettings(long maxJournalRecords, long maxJournalBytes, DurabilityPolicy durabilityPolicy,
+                               long commitWindowMillis, SnapshotFormat snapshotFormat, long historyCompactionMillis,
+                               HistoryRecorderSettings historyRecorderSettings) {
+        if (maxJournalRecords <= 0 || maxJournalBytes <= 0) {
+            throw new IllegalArgumentException("Пороги журнала должны быть положительными");
+        }
+        if (commitWindowMillis < 0) {
+            throw new IllegalArgumentException("Окно записи не может быть отрицательным");
+        }
+        if (historyCompactionMillis < 0) {
+            throw new IllegalArgumentException("Период сжатия истории не может быть отрицательным");
+        }
+        this.maxJournalRecords = maxJournalRecords;
+        this.maxJournalBytes = maxJournalBytes;
+        this.durabilityPolicy = durabilityPolicy;
+        this.commitWindowMillis = commitWindowMillis;
+        this.snapshotFormat = snapshotFormat;
+        this.historyCompactionMillis = historyCompactionMillis;
+        this.historyRecorderSettings = historyRecorderSettings;
+    }
+
+    public static PersistenceSettings defaults() {
+        return new PersistenceSettings(DEFAULT_MAX_JOURNAL_RECORDS, DEFAULT_MAX_JOURNAL_BYTES);
+    }
+
+    public PersistenceSettings withDurability(DurabilityPolicy durabilityPolicy, long commitWindowMillis) {
+        return new PersistenceSettings(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis,
+                snapshotFormat, historyCompactionMillis, historyRecorderSettings);
+    }
+
+    // Формат, в котором пишутся снимки. Загрузка определяет формат файла сама
+    public PersistenceSettings withSnapshotFormat(SnapshotFormat snapshotFormat) {
+        return new PersistenceSettings(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis,
+                snapshotFormat, historyCompactionMillis, historyRecorderSettings);
+    }
+
+    // Просмотры дописываются в журнал рядом со снимком и сжимаются раз в historyCompactionMillis
+    public PersistenceSettings withHistoryLog(long historyCompactionMillis) {
+        return new PersistenceSettings(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis,
+                snapshotFormat, historyCompactionMillis, historyRecorderSettings);
+    }
+
+    // Просмотры пишутся в историю асинхронно, как в ConcurrentTaskManager с теми же настройками
+    public PersistenceSettings withAsyncHistory(HistoryRecorderSettings historyRecorderSettings) {
+        return new PersistenceSettings(maxJournalRecords, maxJournalBytes, durabilityPolicy, commitWindowMillis,
+                snapshotFormat, historyCompactionMillis, historyRecorderSettings);
+    }
+
+    public long getMaxJournalRecords() {
+        return maxJournalRecords;
+    }
+
+    public long getMaxJournalBytes() {
+        return maxJournalBytes;
+    }
+
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durabilityPolicy;
+    }
+
+    public long getCommitWindowMillis() {
+        return commitWindowMillis;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public long getHistoryCompactionMillis() {
+        return historyCompactionMillis;
+    }
+
+    public HistoryRecorderSettings getHistoryRecorderSettings() {
+        return historyRecorderSettings;
+    }
+
+    public boolean isHistoryLogEnabled() {
+        return historyCompactionMillis > 0;
+    }
+}
@@ -0,0 +1,85 @@
+package service;
+
+import model.Task;
+import model.TaskTypes;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Неизменяемый снимок PrioritizedTaskIndex в том же порядке (startTime, id).
+// Курсор и начало окна времени находятся двоичным поиском, поэтому страница по снимку стоит O(log n + k)
+final class PrioritizedSnapshot {
+    private final Run all;
+    private final Map<TaskTypes, Run> byType;
+
+    // Списки не копируются: после передачи в снимок их нельзя менять
+    PrioritizedSnapshot(List<Task> all, Map<TaskTypes, List<Task>> byType) {
+        this.all = new Run(all);
+        this.byType = new EnumMap<>(TaskTypes.class);
+        byType.forEach((type, tasks) -> this.byType.put(type, new Run(tasks)));
+    }
+
+    // Список только для чтения
+    List<Task> toList() {
+        return all.tasks;
+    }
+
+    // Обход после (afterStart, afterId) начиная с первой задачи, у которой максимум концов до неё не раньше from.
+    // type == null - все типы. Границы могут быть null
+    Iterator<Task> iterator(TaskTypes type, LocalDateTime afterStart, int afterId, LocalDateTime from) {
+        Run run = type == null ? all : byType.get(type);
+        if (run == null) return Collections.emptyIterator();
+        return run.tasks.listIterator(Math.max(run.firstAfter(afterStart, afterId), run.firstEndingFrom(from)));
+    }
+
+    private static final class Run {
+        private final List<Task> tasks;
+        //Наибольший конец среди задач [0..i]. Не убывает, поэтому по нему ищется первая задача, не закончившаяся до from
+        private final LocalDateTime[] maxEnds;
+
+        Run(List<Task> tasks) {
+            this.tasks = Collections.unmodifiableList(tasks);
+            maxEnds = new LocalDateTime[tasks.size()];
+            LocalDateTime maxEnd = null;
+            for (int i = 0; i < maxEnds.length; i++) {
+                LocalDateTime end = this.tasks.get(i).getEndTime();
+                if (maxEnd == null || end.isAfter(maxEnd)) {
+                    maxEnd = end;
+                }
+                maxEnds[i] = maxEnd;
+            }
+        }
+
+        private int firstAfter(LocalDateTime afterStart, int afterId) {
+            if (afterStart == null) return 0;
+            int low = 0;
+            int high = tasks.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                Task task = tasks.get(middle);
+                int cmp = task.getStartTime().compareTo(afterStart);
+                if (cmp < 0 || cmp == 0 && task.getId() <= afterId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int firstEndingFrom(LocalDateTime from) {
+            if (from == null) return 0;
+            int low = 0;
+            int high = maxEnds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (maxEnds[middle].isBefore(from)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package service;
+
+import model.Task;
+import model.TaskTypes;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Задачи с заданным временем, упорядоченные по (startTime, id).
+// Каждый TaskTypes хранится в своём разделе, поэтому очистка одного типа не затрагивает остальные,
+// а удаление по id идёт через сохранённый узел дерева без полного обхода.
+class PrioritizedTaskIndex implements Iterable<Task> {
+
+    private static class Partition {
+        private final TaskIntervalTree tree = new TaskIntervalTree();
+        private final Map<Integer, TaskIntervalTree.Entry> entries = new HashMap<>();
+    }
+
+    private final Map<TaskTypes, Partition> partitions;
+
+    public PrioritizedTaskIndex() {
+        partitions = new EnumMap<>(TaskTypes.class);
+        for (TaskTypes type : TaskTypes.values()) {
+            partitions.put(type, new Partition());
+        }
+    }
+
+    public void add(TaskTypes type, Task task) {
+        if (task.getStartTime() == null || task.getDuration() == null) return;
+        Partition partition = partitions.get(type);
+        remove(partition, task.getId());
+        partition.entries.put(task.getId(), partition.tree.add(task));
+    }
+
+    public boolean remove(TaskTypes type, int id) {
+        return remove(partitions.get(type), id);
+    }
+
+    private boolean remove(Partition partition, int id) {
+        TaskIntervalTree.Entry entry = partition.entries.remove(id);
+        return entry != null && partition.tree.remove(entry);
+    }
+
+    public void clear(TaskTypes type) {
+        partitions.put(type, new Partition());
+    }
+
+    // Заменяет раздел задачами из tasks: одна сортировка и построение сбалансированного дерева за O(n)
+    public void rebuild(TaskTypes type, Collection<? extends Task> tasks) {
+        List<Task> timedTasks = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (task.getStartTime() != null && task.getDuration() != null) {
+                timedTasks.add(task);
+            }
+        }
+        timedTasks.sort(Comparator.comparing(Task::getStartTime).thenComparingInt(Task::getId));
+        Partition partition = new Partition();
+        for (TaskIntervalTree.Entry entry : partition.tree.build(timedTasks)) {
+            partition.entries.put(entry.id, entry);
+        }
+        partitions.put(type, partition);
+    }
+
+    public boolean contains(TaskTypes type, int id) {
+        return partitions.get(type).entries.containsKey(id);
+    }
+
+    // Возвращает любую задачу, кроме excludedId, пересекающуюся с [start, end], либо null
+    public Task findOverlap(LocalDateTime start, LocalDateTime end, int excludedId) {
+        for (Partition partition : partitions.values()) {
+            Task overlap = partition.tree.findOverlap(start, end, excludedId);
+            if (overlap != null) return overlap;
+        }
+        return null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Partition partition : partitions.values()) {
+            size += partition.tree.size();
+        }
+        return size;
+    }
+
+    public List<Task> toList() {
+        List<Task> prioritizedTasks = new ArrayList<>(size());
+        forEach(prioritizedTasks::add);
+        return prioritizedTasks;
+    }
+
+    // Снимок для чтения без блокировок: общий порядок и порядок внутри каждого раздела
+    public PrioritizedSnapshot snapshot() {
+        Map<TaskTypes, List<Task>> byType = new EnumMap<>(TaskTypes.class);
+        for (Map.Entry<TaskTypes, Partition> partition : partitions.entrySet()) {
+            List<Task> tasks = new ArrayList<>(partition.getValue().tree.size());
+            partition.getValue().tree.forEach(tasks::add);
+            byType.put(partition.getKey(), tasks);
+        }
+        return new PrioritizedSnapshot(toList(), byType);
+    }
+
+    // Слияние отсортированных разделов без промежуточной сортировки
+    @Override
+    public Iterator<Task> iterator() {
+        List<Iterator<TaskIntervalTree.Entry>> sources = new ArrayList<>();
+        for (Partition partition : partitions.values()) {
+            if (!partition.tree.isEmpty()) {
+                sources.add(partition.tree.entryIterator());
+            }
+        }
+        return new MergingIterator(sources);
+    }
+
+    // Обход в порядке приоритета после (afterStart, afterId) без задач, закончившихся до from.
+    // type == null - все разделы. Границы могут быть null
+    public Iterator<Task> iterator(TaskTypes type, LocalDateTime afterStart, int afterId, LocalDateTime from) {
+        List<Iterator<TaskIntervalTree.Entry>> sources = new ArrayList<>();
+        for (Map.Entry<TaskTypes, Partition> partition : partitions.entrySet()) {
+            if ((type == null || type == partition.getKey()) && !partition.getValue().tree.isEmpty()) {
+                sources.add(partition.getValue().tree.entryIterator(afterStart, afterId, from));
+            }
+        }
+        return new MergingIterator(sources);
+    }
+
+    private static class MergingIterator implements Iterator<Task> {
+        private final List<Iterator<TaskIntervalTree.Entry>> sources;
+        private final TaskIntervalTree.Entry[] heads;
+
+        MergingIterator(List<Iterator<TaskIntervalTree.Entry>> sources) {
+            this.sources = sources;
+            this.heads = new TaskIntervalTree.Entry[sources.size()];
+            for (int i = 0; i < heads.length; i++) {
+                Iterator<TaskIntervalTree.Entry> source = sources.get(i);
+                heads[i] = source.hasNext() ? source.next() : null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (TaskIntervalTree.Entry head : heads) {
+                if (head != null) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Task next() {
+            int minIndex = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] != null && (minIndex == -1 || TaskIntervalTree.compare(heads[i], heads[minIndex]) < 0)) {
+                    minIndex = i;
+                }
+            }
+            if (minIndex == -1) throw new NoSuchElementException();
+            TaskIntervalTree.Entry result = heads[minIndex];
+            Iterator<TaskIntervalTree.Entry> source = sources.get(minIndex);
+            heads[minIndex] = source.hasNext() ? source.next() : null;
+            return result.task;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package service;
+
+public enum SnapshotFormat {
+    //Текстовый формат для обмена и ручного просмотра
+    CSV,
+    //Компактный двоичный формат TaskBinaryFormat
+    BINARY
+}
@@ -0,0 +1,92 @@
+package service;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Потокобезопасная обёртка над HistoryManager. Все операции выполняются под ReentrantLock обёртки:
+// в отличие от монитора, ожидание на нём не закрепляет виртуальный поток за потоком-носителем
+class SynchronizedHistoryManager implements HistoryManager {
+    private final HistoryManager historyManager;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    SynchronizedHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    // Выполняет несколько операций над историей под одной блокировкой
+    void runLocked(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addToHistory(Task task) {
+        runLocked(() -> historyManager.addToHistory(task));
+    }
+
+    @Override
+    public void remove(int id) {
+        runLocked(() -> historyManager.remove(id));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        lock.lock();
+        try {
+            return historyManager.getHistory();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int limit) {
+        lock.lock();
+        try {
+            return historyManager.getHistory(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Живой итератор нельзя отдавать за пределы блокировки, поэтому обход идёт по копии
+    @Override
+    public Iterator<Task> historyIterator(boolean mostRecentFirst) {
+        return copyHistory(mostRecentFirst, Integer.MAX_VALUE).iterator();
+    }
+
+    @Override
+    public void forEachInHistory(boolean mostRecentFirst, int limit, Consumer<? super Task> action) {
+        copyHistory(mostRecentFirst, limit).forEach(action);
+    }
+
+    private List<Task> copyHistory(boolean mostRecentFirst, int limit) {
+        List<Task> history = new ArrayList<>();
+        runLocked(() -> historyManager.forEachInHistory(mostRecentFirst, limit, history::add));
+        return history;
+    }
+
+    @Override
+    public int getCapacity() {
+        return historyManager.getCapacity();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return historyManager.getEvictionCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package service;
+
+import model.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+
+/*
+ * Двоичное представление снимка задач.
+ * Заголовок: "KNBN", байт версии. Далее словарь строк (названия и описания хранятся один раз)
+ * и задачи по возрастанию id: тип и статус - ordinal, id - разность с предыдущим в varint,
+ * строки - номер в словаре, время - минуты от эпохи и длительность в минутах.
+ * Доли минуты пишутся отдельно только если они есть, поэтому чтение возвращает точно записанные значения
+ */
+final class TaskBinaryFormat {
+    static final byte[] MAGIC = {'K', 'N', 'B', 'N'};
+    static final int VERSION = 1;
+
+    private static final int HAS_DURATION = 1;
+    private static final int HAS_START_TIME = 1 << 1;
+    private static final int DURATION_HAS_NANOS = 1 << 2;
+    private static final int START_TIME_HAS_NANOS = 1 << 3;
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    private static final TaskTypes[] TYPES = TaskTypes.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private TaskBinaryFormat() {
+    }
+
+    static boolean isBinary(File file) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream input = new FileInputStream(file)) {
+            return input.readNBytes(header, 0, header.length) == header.length && Arrays.equals(header, MAGIC);
+        }
+    }
+
+    // Задачи должны быть упорядочены по возрастанию id
+    static void write(OutputStream output, Collection<Task> tasks) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Task task : tasks) {
+            addToDictionary(dictionary, task.getName());
+            addToDictionary(dictionary, task.getDescription());
+        }
+
+        output.write(MAGIC);
+        output.write(VERSION);
+        writeVarLong(output, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(output, bytes.length);
+            output.write(bytes);
+        }
+
+        writeVarLong(output, tasks.size());
+        int previousId = 0;
+        for (Task task : tasks) {
+            TaskTypes type = TaskCsvFormat.typeOf(task);
+            output.write(type.ordinal());
+            writeVarLong(output, zigZag(task.getId() - (long) previousId));
+            previousId = task.getId();
+            output.write(task.getStatus() == null ? 0 : task.getStatus().ordinal() + 1);
+            writeVarLong(output, indexOf(dictionary, task.getName()));
+            writeVarLong(output, indexOf(dictionary, task.getDescription()));
+            if (type == TaskTypes.SUBTASK) {
+                writeVarLong(output, zigZag(((Subtask) task).getEpicId()));
+            }
+            if (type != TaskTypes.EPIC) {
+                writeTime(output, task.getDuration(), task.getStartTime());
+            }
+        }
+    }
+
+    static List<Task> read(InputStream input) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        read(input, tasks::add);
+        return tasks;
+    }
+
+    // Передаёт задачи в consumer по мере чтения, не накапливая их
+    static void read(InputStream input, Consumer<Task> consumer) throws IOException {
+        byte[] header = input.readNBytes(MAGIC.length);
+        if (!Arrays.equals(header, MAGIC)) {
+            throw new IOException("Файл не является двоичным снимком");
+        }
+        int version = input.read();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка: " + version);
+        }
+
+        String[] dictionary = new String[Math.toIntExact(readVarLong(input))];
+        for (int i = 0; i < dictionary.length; i++) {
+            int length = Math.toIntExact(readVarLong(input));
+            byte[] bytes = input.readNBytes(length);
+            if (bytes.length != length) throw new EOFException();
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int taskCount = Math.toIntExact(readVarLong(input));
+        int previousId = 0;
+        for (int i = 0; i < taskCount; i++) {
+            TaskTypes type = TYPES[readByte(input)];
+            int id = Math.toIntExact(previousId + unZigZag(readVarLong(input)));
+            previousId = id;
+            int status = readByte(input);
+            TaskStatus taskStatus = status == 0 ? null : STATUSES[status - 1];
+            String name = fromDictionary(dictionary, readVarLong(input));
+            String description = fromDictionary(dictionary, readVarLong(input));
+
+            if (type == TaskTypes.EPIC) {
+                consumer.accept(new Epic(id, name, description, taskStatus, new ArrayList<>()));
+                continue;
+            }
+            int epicId = type == TaskTypes.SUBTASK ? Math.toIntExact(unZigZag(readVarLong(input))) : 0;
+            int flags = readByte(input);
+            Duration duration = null;
+            LocalDateTime startTime = null;
+            if ((flags & HAS_DURATION) != 0) {
+                duration = Duration.ofMinutes(unZigZag(readVarLong(input)));
+                if ((flags & DURATION_HAS_NANOS) != 0) duration = duration.plusNanos(readVarLong(input));
+            }
+            if ((flags & HAS_START_TIME) != 0) {
+                long epochMinute = unZigZag(readVarLong(input));
+                startTime = LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+                if ((flags & START_TIME_HAS_NANOS) != 0) startTime = startTime.plusNanos(readVarLong(input));
+            }
+
+            if (type == TaskTypes.SUBTASK) {
+                consumer.accept(new Subtask(id, name, description, taskStatus, epicId, duration, startTime));
+            } else {
+                consumer.accept(new Task(id, name, description, taskStatus, duration, startTime));
+            }
+        }
+    }
+
+    private static void writeTime(OutputStream output, Duration duration, LocalDateTime startTime) throws IOException {
+        long durationMinutes = 0;
+        long durationNanos = 0;
+        long epochMinute = 0;
+        long startNanos = 0;
+        int flags = 0;
+        if (duration != null) {
+            flags |= HAS_DURATION;
+            durationMinutes = duration.toMinutes();
+            durationNanos = duration.minusMinutes(durationMinutes).toNanos();
+            //Для отрицательной длительности остаток приводится к неотрицательному
+            if (durationNanos < 0) {
+                durationMinutes--;
+                durationNanos += NANOS_PER_MINUTE;
+            }
+            if (durationNanos != 0) flags |= DURATION_HAS_NANOS;
+        }
+        if (startTime != null) {
+            flags |= HAS_START_TIME;
+            long epochSecond = startTime.toEpochSecond(ZoneOffset.UTC);
+            epochMinute = Math.floorDiv(epochSecond, 60);
+            startNanos = Math.floorMod(epochSecond, 60) * 1_000_000_000L + startTime.getNano();
+            if (startNanos != 0) flags |= START_TIME_HAS_NANOS;
+        }
+        output.write(flags);
+        if (duration != null) {
+            writeVarLong(output, zigZag(durationMinutes));
+            if (durationNanos != 0) writeVarLong(output, durationNanos);
+        }
+        if (startTime != null) {
+            writeVarLong(output, zigZag(epochMinute));
+            if (startNanos != 0) writeVarLong(output, startNanos);
+        }
+    }
+
+    //0 - null, строки словаря нумеруются с 1
+    private static void addToDictionary(Map<String, Integer> dictionary, String value) {
+        if (value != null) {
+            dictionary.putIfAbsent(value, dictionary.size() + 1);
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> dictionary, String value) {
+        return value == null ? 0 : dictionary.get(value);
+    }
+
+    private static String fromDictionary(String[] dictionary, long index) {
+        return index == 0 ? null : dictionary[Math.toIntExact(index - 1)];
+    }
+
+    private static int readByte(InputStream input) throws IOException {
+        int value = input.read();
+        if (value < 0) throw new EOFException();
+        return value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(input);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Слишком длинное число varint");
+    }
+}
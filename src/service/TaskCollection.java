@@ -0,0 +1,10 @@
+package service;
+
+// Коллекции менеджера, у каждой из которых своя версия
+public enum TaskCollection {
+    TASKS,
+    SUBTASKS,
+    EPICS,
+    PRIORITIZED,
+    HISTORY
+}
@@ -0,0 +1,53 @@
+package service;
+
+import model.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+// Строковое представление задачи в CSV-файле сохранения
+final class TaskCsvFormat {
+    static final String HEADER = "id,type,name,status,description,epicId,duration,startTime";
+
+    private TaskCsvFormat() {
+    }
+
+    static TaskTypes typeOf(Task task) {
+        if (task instanceof Subtask) {
+            return TaskTypes.SUBTASK;
+        } else if (task instanceof Epic) {
+            return TaskTypes.EPIC;
+        }
+        return TaskTypes.TASK;
+    }
+
+    static String toString(Task task) {
+        String epicId = "";
+        if (task instanceof Subtask) {
+            epicId = String.valueOf(((Subtask) task).getEpicId());
+        }
+        return String.format("%d,%s,%s,%s,%s,%s,%s,%s",
+                task.getId(), typeOf(task), task.getName(), task.getStatus(), task.getDescription(), epicId,
+                task.getDuration(), task.getStartTime());
+    }
+
+    static Task fromString(String value) {
+        //value = "id,type,name,status,description,epicId,duration,startTime" - CSV
+        String[] taskInfo = value.split(",");
+        int taskId = Integer.parseInt(taskInfo[0]);
+        String taskName = taskInfo[2];
+        TaskStatus taskStatus = taskInfo[3].equals("null") ? null : TaskStatus.valueOf(taskInfo[3]);
+        String taskDescription = taskInfo[4];
+        Duration taskDuration = taskInfo[6].equals("null") ? null : Duration.parse(taskInfo[6]);
+        LocalDateTime taskStartTime = taskInfo[7].equals("null") ? null : LocalDateTime.parse(taskInfo[7]);
+
+        if (taskInfo[1].equals(TaskTypes.SUBTASK.toString())) {
+            return new Subtask(taskId, taskName, taskDescription, taskStatus, Integer.parseInt(taskInfo[5]), taskDuration, taskStartTime);
+        } else if (taskInfo[1].equals(TaskTypes.EPIC.toString())) {
+            return new Epic(taskId, taskName, taskDescription, taskStatus, new ArrayList<>());
+        }
+
+        return new Task(taskId, taskName, taskDescription, taskStatus, taskDuration, taskStartTime);
+    }
+}
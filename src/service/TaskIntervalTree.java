@@ -0,0 +1,271 @@
+package service;
+
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// AVL-дерево интервалов [startTime, endTime], упорядоченное по (startTime, id).
+// В каждом узле хранится максимальный endTime поддерева, что позволяет находить пересечение за O(log n).
+class TaskIntervalTree implements Iterable<Task> {
+
+    static final class Entry {
+        final Task task;
+        final int id;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        private Entry left;
+        private Entry right;
+        private LocalDateTime maxEnd;
+        private int height;
+
+        private Entry(Task task) {
+            this.task = task;
+            this.id = task.getId();
+            this.start = task.getStartTime();
+            this.end = task.getEndTime();
+            this.maxEnd = end;
+            this.height = 1;
+        }
+    }
+
+    private Entry root;
+    private int size;
+
+    public Entry add(Task task) {
+        Entry entry = new Entry(task);
+        root = insert(root, entry);
+        size++;
+        return entry;
+    }
+
+    // Заменяет содержимое дерева задачами, уже упорядоченными по (startTime, id). Возвращает узлы в том же порядке
+    public List<Entry> build(List<Task> sortedTasks) {
+        List<Entry> entries = new ArrayList<>(sortedTasks.size());
+        for (Task task : sortedTasks) {
+            entries.add(new Entry(task));
+        }
+        root = build(entries, 0, entries.size() - 1);
+        size = entries.size();
+        return entries;
+    }
+
+    private static Entry build(List<Entry> entries, int from, int to) {
+        if (from > to) return null;
+        int middle = (from + to) >>> 1;
+        Entry node = entries.get(middle);
+        node.left = build(entries, from, middle - 1);
+        node.right = build(entries, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    public boolean remove(Task task) {
+        return remove(task.getId(), task.getStartTime());
+    }
+
+    public boolean remove(Entry entry) {
+        return remove(entry.id, entry.start);
+    }
+
+    private boolean remove(int id, LocalDateTime start) {
+        if (start == null) return false;
+        int oldSize = size;
+        root = delete(root, id, start);
+        return size != oldSize;
+    }
+
+    // Возвращает любую задачу, кроме excludedId, чей отрезок пересекается с [start, end], либо null
+    public Task findOverlap(LocalDateTime start, LocalDateTime end, int excludedId) {
+        return findOverlap(root, start, end, excludedId);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        Iterator<Entry> entries = entryIterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Task next() {
+                return entries.next().task;
+            }
+        };
+    }
+
+    Iterator<Entry> entryIterator() {
+        return new InOrderIterator(root, null, 0, null);
+    }
+
+    // Обход по порядку, начиная после (afterStart, afterId). Поддеревья, целиком закончившиеся до from, пропускаются.
+    // Любая из границ может быть null
+    Iterator<Entry> entryIterator(LocalDateTime afterStart, int afterId, LocalDateTime from) {
+        return new InOrderIterator(root, afterStart, afterId, from);
+    }
+
+    private Task findOverlap(Entry node, LocalDateTime start, LocalDateTime end, int excludedId) {
+        if (node == null || node.maxEnd.isBefore(start)) return null;
+        Task found = findOverlap(node.left, start, end, excludedId);
+        if (found != null) return found;
+        // Все узлы правее начинаются не раньше node.start
+        if (node.start.isAfter(end)) return null;
+        if (node.id != excludedId && !node.end.isBefore(start)) return node.task;
+        return findOverlap(node.right, start, end, excludedId);
+    }
+
+    static int compare(Entry e1, Entry e2) {
+        return compare(e1.id, e1.start, e2.id, e2.start);
+    }
+
+    private static int compare(int id1, LocalDateTime start1, int id2, LocalDateTime start2) {
+        int cmp = start1.compareTo(start2);
+        return cmp != 0 ? cmp : Integer.compare(id1, id2);
+    }
+
+    private Entry insert(Entry node, Entry entry) {
+        if (node == null) return entry;
+        if (compare(entry.id, entry.start, node.id, node.start) < 0) {
+            node.left = insert(node.left, entry);
+        } else {
+            node.right = insert(node.right, entry);
+        }
+        return balance(node);
+    }
+
+    private Entry delete(Entry node, int id, LocalDateTime start) {
+        if (node == null) return null;
+        int cmp = compare(id, start, node.id, node.start);
+        if (cmp < 0) {
+            node.left = delete(node.left, id, start);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, id, start);
+        } else {
+            size--;
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            Entry successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private Entry deleteMin(Entry node) {
+        if (node.left == null) return node.right;
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Entry node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Entry node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) maxEnd = node.left.maxEnd;
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) maxEnd = node.right.maxEnd;
+        node.maxEnd = maxEnd;
+    }
+
+    private static Entry rotateRight(Entry node) {
+        Entry newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private static Entry rotateLeft(Entry node) {
+        Entry newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private static Entry balance(Entry node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static class InOrderIterator implements Iterator<Entry> {
+        private final Deque<Entry> stack = new ArrayDeque<>();
+        private final LocalDateTime afterStart;
+        private final int afterId;
+        private final LocalDateTime from;
+
+        InOrderIterator(Entry root, LocalDateTime afterStart, int afterId, LocalDateTime from) {
+            this.afterStart = afterStart;
+            this.afterId = afterId;
+            this.from = from;
+            pushLeft(root);
+        }
+
+        private void pushLeft(Entry node) {
+            while (node != null) {
+                if (from != null && node.maxEnd.isBefore(from)) return;
+                if (afterStart != null && compare(node.id, node.start, afterId, afterStart) <= 0) {
+                    node = node.right;
+                    continue;
+                }
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Entry next() {
+            if (stack.isEmpty()) throw new NoSuchElementException();
+            Entry node = stack.pop();
+            pushLeft(node.right);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package service;
+
+import exceptions.ManagerSaveException;
+import model.Task;
+import model.TaskTypes;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ * Журнал изменений менеджера: одна строка на операцию, запись только в конец файла.
+ * PUT,<строка задачи в формате CSV> - добавление или обновление задачи
+ * DELETE,<тип>,<id> - удаление задачи
+ * CLEAR,<тип> - удаление всех задач типа
+ */
+class TaskJournal implements Closeable {
+
+    enum Operation {
+        PUT,
+        DELETE,
+        CLEAR
+    }
+
+    static final class Record {
+        final Operation operation;
+        final TaskTypes type;
+        final int id;
+        final Task task;
+
+        private Record(Operation operation, TaskTypes type, int id, Task task) {
+            this.operation = operation;
+            this.type = type;
+            this.id = id;
+            this.task = task;
+        }
+
+        static Record put(Task task) {
+            return new Record(Operation.PUT, TaskCsvFormat.typeOf(task), task.getId(), task);
+        }
+
+        static Record delete(TaskTypes type, int id) {
+            return new Record(Operation.DELETE, type, id, null);
+        }
+
+        static Record clear(TaskTypes type) {
+            return new Record(Operation.CLEAR, type, -1, null);
+        }
+
+        byte[] toBytes() {
+            return encode().getBytes(StandardCharsets.UTF_8);
+        }
+
+        String encode() {
+            switch (operation) {
+                case PUT:
+                    return Operation.PUT + "," + TaskCsvFormat.toString(task);
+                case DELETE:
+                    return Operation.DELETE + "," + type + "," + id;
+                default:
+                    return Operation.CLEAR + "," + type;
+            }
+        }
+
+        static Record decode(String line) {
+            int separator = line.indexOf(',');
+            Operation operation = Operation.valueOf(line.substring(0, separator));
+            String value = line.substring(separator + 1);
+            switch (operation) {
+                case PUT:
+                    return put(TaskCsvFormat.fromString(value));
+                case DELETE:
+                    String[] parts = value.split(",");
+                    return delete(TaskTypes.valueOf(parts[0]), Integer.parseInt(parts[1]));
+                default:
+                    return clear(TaskTypes.valueOf(value));
+            }
+        }
+    }
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final File file;
+    private FileOutputStream fileOutput;
+    private OutputStream output;
+    private long recordCount;
+    private long sizeBytes;
+
+    TaskJournal(File file) {
+        this.file = file;
+        this.recordCount = 0;
+        this.sizeBytes = file.length();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    void append(Record record) {
+        try {
+            append(List.of(record.toBytes()));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала");
+        }
+    }
+
+    /*
+     * Дописывает пачку закодированных записей одной записью и сбрасывает её на диск одним fsync.
+     * При ошибке журнал обрезается до прежней длины, чтобы повтор пачки не оставил оборванную строку в середине
+     */
+    synchronized void append(List<byte[]> lines) throws IOException {
+        long appendedBytes = 0;
+        try {
+            OutputStream currOutput = getOutput();
+            for (byte[] line : lines) {
+                currOutput.write(line);
+                currOutput.write(LINE_SEPARATOR);
+                appendedBytes += line.length + LINE_SEPARATOR.length;
+            }
+            currOutput.flush();
+            fileOutput.getChannel().force(false);
+        } catch (IOException e) {
+            discardOutput();
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(Math.min(sizeBytes, randomAccessFile.length()));
+            } catch (IOException ignored) {
+                //Обрезать не удалось: неполная строка в конце отбросится при восстановлении
+            }
+            throw e;
+        }
+        recordCount += lines.size();
+        sizeBytes += appendedBytes;
+    }
+
+    // Применяет записи журнала по порядку. Недописанная последняя строка (сбой во время записи) отбрасывается
+    synchronized long replay(Consumer<Record> consumer) {
+        if (!file.exists()) return 0;
+        long replayed = 0;
+        long validLength = 0;
+        boolean isTorn = false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
+                String nextLine = reader.readLine();
+                if (!line.isEmpty()) {
+                    Record record;
+                    try {
+                        record = Record.decode(line);
+                    } catch (RuntimeException e) {
+                        if (nextLine != null) {
+                            throw new ManagerSaveException("Повреждённая запись журнала: " + line);
+                        }
+                        isTorn = true;
+                        break;
+                    }
+                    consumer.accept(record);
+                    replayed++;
+                }
+                validLength += line.getBytes(StandardCharsets.UTF_8).length + LINE_SEPARATOR.length;
+                line = nextLine;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения журнала");
+        }
+        if (isTorn) {
+            cutTo(validLength);
+        }
+        recordCount = replayed;
+        sizeBytes = file.length();
+        return replayed;
+    }
+
+    /*
+     * Переносит накопленные записи в target, после чего журнал пуст и принимает новые записи.
+     * Если target уже есть (прошлое сжатие не завершилось), записи дописываются в его конец
+     */
+    synchronized void rotate(File target) {
+        close();
+        try {
+            if (target.exists()) {
+                try (OutputStream targetOutput = new FileOutputStream(target, true)) {
+                    Files.copy(file.toPath(), targetOutput);
+                }
+                new FileOutputStream(file, false).close();
+            } else {
+                Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                //Журнал должен существовать и между ротацией и следующей записью
+                new FileOutputStream(file, false).close();
+            }
+            recordCount = 0;
+            sizeBytes = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка ротации журнала");
+        }
+    }
+
+    private void cutTo(long length) {
+        close();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(Math.min(length, randomAccessFile.length()));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка восстановления журнала");
+        }
+    }
+
+    // Очищает журнал после того, как его содержимое попало в снимок
+    synchronized void truncate() {
+        close();
+        try {
+            new FileOutputStream(file, false).close();
+            recordCount = 0;
+            sizeBytes = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка очистки журнала");
+        }
+    }
+
+    private OutputStream getOutput() throws IOException {
+        if (output == null) {
+            fileOutput = new FileOutputStream(file, true);
+            output = new BufferedOutputStream(fileOutput);
+        }
+        return output;
+    }
+
+    // Закрывает файл после ошибки записи, не сбрасывая буфер с недописанными данными
+    private void discardOutput() {
+        try {
+            if (fileOutput != null) {
+                fileOutput.close();
+            }
+        } catch (IOException ignored) {
+            //Файл всё равно будет открыт заново при следующей записи
+        } finally {
+            output = null;
+            fileOutput = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка закрытия журнала");
+            } finally {
+                output = null;
+                fileOutput = null;
+            }
+        }
+    }
+}
@@ -3,8 +3,11 @@ package service;
 import model.Task;
 import model.Subtask;
 import model.Epic;
+import model.TaskTypes;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TaskManager {
     List<Task> getTaskList();
@@ -17,6 +20,33 @@ public interface TaskManager {
 
     List<Task> getPrioritizedTasks();
 
+    // Обход без копирования в список, для потоковой выдачи больших коллекций
+    default void forEachTask(Consumer<? super Task> action) {
+        getTaskList().forEach(action);
+    }
+
+    default void forEachSubtask(Consumer<? super Subtask> action) {
+        getSubtaskList().forEach(action);
+    }
+
+    default void forEachEpic(Consumer<? super Epic> action) {
+        getEpicList().forEach(action);
+    }
+
+    default void forEachPrioritized(Consumer<? super Task> action) {
+        getPrioritizedTasks().forEach(action);
+    }
+
+    // Страница задач, подходящих под фильтры query, по возрастанию id после курсора query
+    List<Task> findTasks(TaskQuery query);
+
+    List<Subtask> findSubtasks(TaskQuery query);
+
+    List<Epic> findEpics(TaskQuery query);
+
+    // Страница в порядке getPrioritizedTasks после курсора (afterStartTime, afterId)
+    List<Task> findPrioritized(TaskQuery query);
+
     void clearTaskMap();
 
     void clearSubtaskMap();
@@ -29,8 +59,31 @@ public interface TaskManager {
 
     Epic getEpic(int id);
 
+    // Задача, подзадача или эпик по id без записи в историю, null - если такой нет
+    Task findById(int id);
+
     List<Task> getHistory();
 
+    // Не больше limit последних просмотров, начиная с самого свежего
+    default List<Task> getHistory(int limit) {
+        List<Task> history = new ArrayList<>();
+        forEachInHistory(true, limit, history::add);
+        return history;
+    }
+
+    default void forEachInHistory(boolean mostRecentFirst, int limit, Consumer<? super Task> action) {
+        List<Task> history = getHistory();
+        int from = Math.max(history.size() - Math.max(limit, 0), 0);
+        history = history.subList(from, history.size());
+        (mostRecentFirst ? history.reversed() : history).forEach(action);
+    }
+
+    // Версия растёт при каждом изменении содержимого коллекции и не повторяется после перезапуска. Используется для ETag
+    long getVersion(TaskCollection collection);
+
+    // Версия задачи, подзадачи или эпика: растёт при каждом изменении самой задачи или расчётных полей эпика
+    long getTaskVersion(int id);
+
     void addTask(Task task);
 
     void addSubtask(Subtask subtask);
@@ -48,4 +101,27 @@ public interface TaskManager {
     void deleteSubtask(int id);
 
     void deleteEpic(int id);
+
+    /*
+     * Пакетные операции над задачами, подзадачами и эпиками (тип берётся из объекта или по id).
+     * Элементы применяются по порядку, ошибка одного не отменяет остальные.
+     * Результат по каждому элементу возвращается в том же порядке
+     */
+    List<BatchResult> addTasks(List<? extends Task> tasks);
+
+    List<BatchResult> updateTasks(List<? extends Task> tasks);
+
+    // Элементы без id добавляются, с id - обновляются
+    List<BatchResult> addOrUpdateTasks(List<? extends Task> tasks);
+
+    // type == null - задачи любого типа, иначе id другого типа считается ненайденным
+    List<BatchResult> deleteTasks(TaskTypes type, List<Integer> ids);
+
+    default List<BatchResult> deleteTasks(List<Integer> ids) {
+        return deleteTasks(null, ids);
+    }
+
+    // Ожидает, пока изменения текущего потока будут сохранены так, как требует политика хранения
+    default void awaitDurability() {
+    }
 }
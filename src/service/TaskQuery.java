@@ -0,0 +1,129 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskTypes;
+
+import java.time.LocalDateTime;
+
+/*
+ * Фильтры и страница для запросов find* в TaskManager.
+ * Пустые (null) фильтры не применяются. Окно времени [from, to] включает задачи, чей отрезок с ним пересекается,
+ * задачи без времени в окно не попадают.
+ * Курсор - последняя выданная задача: для списков по id достаточно afterId,
+ * для списка по приоритету нужен ещё afterStartTime, так как порядок там (startTime, id)
+ */
+public class TaskQuery {
+    private final TaskStatus status;
+    private final TaskTypes type;
+    private final Integer epicId;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final int afterId;
+    private final LocalDateTime afterStartTime;
+    private final int limit;
+
+    private TaskQuery(TaskStatus status, TaskTypes type, Integer epicId, LocalDateTime from, LocalDateTime to,
+                      int afterId, LocalDateTime afterStartTime, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало окна времени позже его конца");
+        }
+        this.status = status;
+        this.type = type;
+        this.epicId = epicId;
+        this.from = from;
+        this.to = to;
+        this.afterId = afterId;
+        this.afterStartTime = afterStartTime;
+        this.limit = limit;
+    }
+
+    public static TaskQuery all() {
+        return new TaskQuery(null, null, null, null, null, 0, null, Integer.MAX_VALUE);
+    }
+
+    public TaskQuery withStatus(TaskStatus status) {
+        return new TaskQuery(status, type, epicId, from, to, afterId, afterStartTime, limit);
+    }
+
+    public TaskQuery withType(TaskTypes type) {
+        return new TaskQuery(status, type, epicId, from, to, afterId, afterStartTime, limit);
+    }
+
+    public TaskQuery withEpicId(Integer epicId) {
+        return new TaskQuery(status, type, epicId, from, to, afterId, afterStartTime, limit);
+    }
+
+    public TaskQuery withTimeWindow(LocalDateTime from, LocalDateTime to) {
+        return new TaskQuery(status, type, epicId, from, to, afterId, afterStartTime, limit);
+    }
+
+    public TaskQuery withCursor(int afterId, LocalDateTime afterStartTime) {
+        return new TaskQuery(status, type, epicId, from, to, afterId, afterStartTime, limit);
+    }
+
+    public TaskQuery withLimit(int limit) {
+        return new TaskQuery(status, type, epicId, from, to, afterId, afterStartTime, limit);
+    }
+
+    public TaskStatus getStatus() {
+        return status;
+    }
+
+    public TaskTypes getType() {
+        return type;
+    }
+
+    public Integer getEpicId() {
+        return epicId;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public LocalDateTime getAfterStartTime() {
+        return afterStartTime;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasTimeWindow() {
+        return from != null || to != null;
+    }
+
+    public boolean matches(Task task) {
+        if (status != null && task.getStatus() != status) return false;
+        if (type != null && typeOf(task) != type) return false;
+        if (epicId != null && !(task instanceof Subtask subtask && subtask.getEpicId() == epicId)) return false;
+        if (hasTimeWindow()) {
+            LocalDateTime start = task.getStartTime();
+            LocalDateTime end = task.getEndTime();
+            if (start == null || end == null) return false;
+            if (from != null && end.isBefore(from)) return false;
+            if (to != null && start.isAfter(to)) return false;
+        }
+        return true;
+    }
+
+    private static TaskTypes typeOf(Task task) {
+        if (task instanceof Epic) return TaskTypes.EPIC;
+        if (task instanceof Subtask) return TaskTypes.SUBTASK;
+        return TaskTypes.TASK;
+    }
+}
@@ -0,0 +1,200 @@
+package service;
+
+import exceptions.ManagerSaveException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Очередь отложенной записи. Изменения копятся в памяти, отдельный поток после первого изменения
+ * ждёт окно и передаёт всю накопленную пачку в Sink, который пишет её одной записью с одним fsync.
+ * Каждое изменение получает номер, по которому можно дождаться его записи на диск.
+ * Пачка, которую не удалось записать, не теряется: поток повторяет её каждые RETRY_DELAY_MILLIS,
+ * а пока ошибка не ушла, ensureWritable() сообщает о ней до того, как изменение будет применено в памяти.
+ * Ожидание идёт на ReentrantLock, а не на мониторе: виртуальные потоки обработчиков, ждущие fsync,
+ * не закрепляются за потоками-носителями.
+ */
+class WriteBehindQueue {
+    static final long RETRY_DELAY_MILLIS = 100;
+
+    interface Sink {
+        void write(List<byte[]> batch) throws IOException;
+    }
+
+    private final Sink sink;
+    private final long windowMillis;
+    private final Thread flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    //Появились изменения или очередь закрыта
+    private final Condition changed = lock.newCondition();
+    //Продвинулся durableSequence или запись не удалась
+    private final Condition written = lock.newCondition();
+
+    private List<byte[]> pending = new ArrayList<>();
+    private long enqueuedSequence = 0;
+    private long durableSequence = 0;
+    //Ошибка последней попытки записи, null после успешной записи
+    private Exception failure;
+    private boolean closed = false;
+
+    WriteBehindQueue(Sink sink, long windowMillis, String name) {
+        this.sink = sink;
+        this.windowMillis = windowMillis;
+        flusher = new Thread(this::run, name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Бросает исключение, если очередь закрыта или запись на диск сейчас не удаётся
+    void ensureWritable() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new ManagerSaveException("Очередь записи закрыта");
+            }
+            if (failure != null) {
+                throw new ManagerSaveException("Ошибка отложенной записи: " + failure.getMessage());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long enqueue(byte[] record) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new ManagerSaveException("Очередь записи закрыта");
+            }
+            //Поток записи ждёт только пустую очередь, поэтому будить его нужно лишь при первом изменении
+            if (pending.isEmpty()) {
+                changed.signal();
+            }
+            pending.add(record);
+            return ++enqueuedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ждёт, пока изменение с номером sequence и все предыдущие будут записаны на диск.
+    // При ошибке записи не ждёт повтора: изменение останется в очереди и будет записано позже
+    void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                written.await();
+            }
+            if (durableSequence < sequence) {
+                throw new ManagerSaveException("Ошибка отложенной записи: " + failure.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getEnqueuedSequence() {
+        lock.lock();
+        try {
+            return enqueuedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Записывает всё накопленное и останавливает поток записи. Если последняя попытка не удалась, бросает исключение
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (durableSequence < enqueuedSequence) {
+                throw new ManagerSaveException("Не удалось записать изменения при закрытии"
+                        + (failure == null ? "" : ": " + failure.getMessage()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        //Пачка, запись которой не удалась. Повторяется вместе с изменениями, пришедшими после неё
+        List<byte[]> batch = new ArrayList<>();
+        long batchSequence;
+        while (true) {
+            lock.lock();
+            try {
+                while (batch.isEmpty() && pending.isEmpty() && !closed) {
+                    changed.await();
+                }
+                //Даём окну набрать ещё изменений, чтобы записать их одним fsync. Закрытие прерывает ожидание
+                if (batch.isEmpty() && windowMillis > 0) {
+                    awaitUnlessClosed(windowMillis);
+                }
+                if (batch.isEmpty() && pending.isEmpty()) {
+                    if (closed) return;
+                    continue;
+                }
+                batch.addAll(pending);
+                pending = new ArrayList<>();
+                batchSequence = enqueuedSequence;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sink.write(batch);
+                lock.lock();
+                try {
+                    durableSequence = batchSequence;
+                    failure = null;
+                    written.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                batch = new ArrayList<>();
+            } catch (IOException | RuntimeException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    written.signalAll();
+                    //При закрытии не повторяем бесконечно: close() сообщит о незаписанных изменениях
+                    if (closed) return;
+                    awaitUnlessClosed(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Вызывается под lock
+    private void awaitUnlessClosed(long millis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(millis);
+        while (!closed && remaining > 0) {
+            remaining = changed.awaitNanos(remaining);
+        }
+    }
+}
@@ -13,11 +13,42 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    public static ConcurrentTaskManager getConcurrent(HistoryRecorderSettings historyRecorderSettings) {
+        return new ConcurrentTaskManager(historyRecorderSettings);
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
 
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
+    }
+
+    // Истории просмотров отдельных клиентов поверх задач taskManager
+    public static HistorySessions getHistorySessions(TaskManager taskManager, HistorySessionSettings settings) {
+        return new HistorySessions(taskManager::findById, settings);
+    }
+
     public static FileBackedTaskManager getFileBacked(File saveFile) throws FileNotFoundException {
         return new FileBackedTaskManager(saveFile);
     }
+
+    public static FileBackedTaskManager getFileBacked(File saveFile, PersistenceSettings settings)
+            throws FileNotFoundException {
+        return new FileBackedTaskManager(saveFile, null, settings);
+    }
+
+    public static FileBackedTaskManager getJournaled(File saveFile, File journalFile) throws FileNotFoundException {
+        return getJournaled(saveFile, journalFile, PersistenceSettings.defaults());
+    }
+
+    public static FileBackedTaskManager getJournaled(File saveFile, File journalFile, PersistenceSettings settings)
+            throws FileNotFoundException {
+        return new FileBackedTaskManager(saveFile, journalFile, settings);
+    }
 }
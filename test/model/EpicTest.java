@@ -3,6 +3,8 @@ package model;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -58,4 +60,45 @@ class EpicTest {
     }
 
 
+    @Test
+    public void shouldRollUpStatusFromSubtaskData() {
+        Epic epic = new Epic(1, "Epic", "Descr", TaskStatus.NEW, new ArrayList<>());
+        Subtask subtask1 = new Subtask(2, "Subtask1", "Descr1", TaskStatus.DONE, 1);
+        Subtask subtask2 = new Subtask(3, "Subtask2", "Descr2", TaskStatus.NEW, 1);
+
+        epic.addSubtaskData(subtask1);
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        epic.addSubtaskData(subtask2);
+        assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
+        epic.removeSubtaskData(subtask1);
+        assertEquals(TaskStatus.NEW, epic.getStatus());
+        epic.removeSubtaskData(subtask2);
+        assertEquals(TaskStatus.NEW, epic.getStatus());
+    }
+
+    @Test
+    public void shouldRollUpTimeFromSubtaskData() {
+        LocalDateTime now = LocalDateTime.now();
+        Epic epic = new Epic(1, "Epic", "Descr", TaskStatus.NEW, new ArrayList<>());
+        Subtask subtask1 = new Subtask(2, "Subtask1", "Descr1", TaskStatus.NEW, 1, Duration.ofMinutes(10), now);
+        Subtask subtask2 = new Subtask(3, "Subtask2", "Descr2", TaskStatus.NEW, 1, Duration.ofMinutes(5), now.plusMinutes(30));
+        Subtask subtask3 = new Subtask(4, "Subtask3", "Descr3", TaskStatus.NEW, 1);
+
+        epic.addSubtaskData(subtask1);
+        epic.addSubtaskData(subtask2);
+        epic.addSubtaskData(subtask3);
+        assertEquals(now, epic.getStartTime());
+        assertEquals(now.plusMinutes(35), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(15), epic.getDuration());
+
+        epic.removeSubtaskData(subtask1);
+        assertEquals(now.plusMinutes(30), epic.getStartTime());
+        assertEquals(Duration.ofMinutes(5), epic.getDuration());
+
+        epic.removeSubtaskData(subtask2);
+        assertNull(epic.getStartTime());
+        assertNull(epic.getEndTime());
+        assertNull(epic.getDuration());
+    }
+
 }
\ No newline at end of file
@@ -8,9 +8,11 @@ import model.TaskStatus;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
+import server.handlers.ResponseCache;
 import server.json.EpicListTypeToken;
 import server.json.SubtaskListTypeToken;
 import server.json.TaskListTypeToken;
+import service.BatchResult;
 import service.InMemoryTaskManager;
 import service.TaskManager;
 
@@ -104,6 +106,249 @@ public class HttpTaskManagerEndpointsTest {
         assertEquals(tasksFromManager, tasksFromResponse);
     }
 
+    @Test
+    public void shouldAnswerNotModifiedUntilTasksChange() throws IOException, InterruptedException {
+        manager.addTask(new Task("T1", "TD1", TaskStatus.NEW, Duration.ofMinutes(5), now));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/tasks");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpRequest conditional = HttpRequest.newBuilder().uri(url).header("If-None-Match", etag).GET().build();
+        response = client.send(conditional, HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, response.statusCode());
+        assertTrue(response.body().isEmpty());
+
+        manager.addEpic(new Epic("E2", "ED2"));
+        assertEquals(304, client.send(conditional, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        manager.addTask(new Task("T3", "TD3", TaskStatus.NEW));
+        response = client.send(conditional, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertNotEquals(etag, response.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test
+    public void shouldServeCachedResponseUntilSubtaskChanges() throws IOException, InterruptedException {
+        Epic epic = new Epic("E1", "ED1");
+        manager.addEpic(epic);
+        Subtask subtask = new Subtask("S2", "SD2", TaskStatus.NEW, epic.getId(), Duration.ofMinutes(5), now);
+        manager.addSubtask(subtask);
+        ResponseCache.Stats before = taskServer.getResponseCache().getStats();
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/prioritized")).GET().build();
+        String first = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        String second = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        assertEquals(first, second);
+        assertEquals(before.getHits() + 1, taskServer.getResponseCache().getStats().getHits());
+
+        subtask.setStatus(TaskStatus.DONE);
+        manager.updateSubtask(subtask);
+        List<Subtask> subtasksFromResponse = gson.fromJson(client.send(request, HttpResponse.BodyHandlers.ofString()).body(),
+                new SubtaskListTypeToken().getType());
+        assertEquals(TaskStatus.DONE, subtasksFromResponse.getFirst().getStatus());
+    }
+
+    @Test
+    public void shouldReturnPagesWithNextCursor() throws IOException, InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            manager.addTask(new Task("T" + i, "TD" + i, TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(10L * (5 - i))));
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        List<Task> tasks = new ArrayList<>();
+        String cursor = null;
+        do {
+            URI url = URI.create("http://localhost:8080/prioritized?limit=2" + (cursor == null ? "" : "&cursor=" + cursor));
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            List<Task> page = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+            assertTrue(page.size() <= 2);
+            tasks.addAll(page);
+            cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+        } while (cursor != null);
+        assertEquals(manager.getPrioritizedTasks(), tasks);
+
+        URI url = URI.create("http://localhost:8080/tasks?status=done");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("[]", response.body());
+
+        url = URI.create("http://localhost:8080/tasks?limit=0");
+        response = client.send(HttpRequest.newBuilder().uri(url).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void shouldAddAndDeleteTasksInBatch() throws IOException, InterruptedException {
+        manager.addTask(new Task("T1", "TD1", TaskStatus.NEW, Duration.ofMinutes(5), now));
+        List<Task> batch = List.of(
+                new Task("T2", "TD2", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(2)),
+                new Task("T3", "TD3", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(10)),
+                new Task(1, "T1new", "TD1", TaskStatus.DONE, Duration.ofMinutes(5), now));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/tasks/batch");
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(batch))).build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        BatchResult[] results = gson.fromJson(response.body(), BatchResult[].class);
+        assertEquals(BatchResult.Status.TIME_OVERLAP, results[0].getStatus());
+        assertEquals(BatchResult.Status.OK, results[1].getStatus());
+        assertEquals(BatchResult.Status.OK, results[2].getStatus());
+        assertEquals("T1new", manager.getTask(1).getName());
+        assertEquals(2, manager.getTaskList().size());
+
+        request = HttpRequest.newBuilder().uri(url)
+                .method("DELETE", HttpRequest.BodyPublishers.ofString("[1, " + results[1].getId() + ", 42]")).build();
+        results = gson.fromJson(client.send(request, HttpResponse.BodyHandlers.ofString()).body(), BatchResult[].class);
+        assertEquals(BatchResult.Status.NOT_FOUND, results[2].getStatus());
+        assertTrue(manager.getTaskList().isEmpty());
+    }
+
+    @Test
+    public void shouldApplyBatchInRequestOrderAndDeleteOnlyOwnType() throws IOException, InterruptedException {
+        manager.addTask(new Task("T1", "TD1", TaskStatus.NEW, Duration.ofMinutes(5), now));
+        manager.addEpic(new Epic("E2", "ED2"));
+        List<Task> batch = List.of(
+                new Task(1, "T1", "TD1", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(30)),
+                new Task("T3", "TD3", TaskStatus.NEW, Duration.ofMinutes(5), now));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/tasks/batch");
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(batch))).build();
+        BatchResult[] results = gson.fromJson(client.send(request, HttpResponse.BodyHandlers.ofString()).body(),
+                BatchResult[].class);
+        assertTrue(results[0].isOk());
+        assertTrue(results[1].isOk());
+
+        request = HttpRequest.newBuilder().uri(url)
+                .method("DELETE", HttpRequest.BodyPublishers.ofString("[2]")).build();
+        results = gson.fromJson(client.send(request, HttpResponse.BodyHandlers.ofString()).body(), BatchResult[].class);
+        assertEquals(BatchResult.Status.NOT_FOUND, results[0].getStatus());
+        assertEquals(1, manager.getEpicList().size());
+    }
+
+    @Test
+    public void shouldReturn405WithAllowedMethods() throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/epics/5/subtasks");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).DELETE().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+        assertEquals("GET", response.headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    public void shouldRejectOversizedAndMalformedBodies() throws IOException, InterruptedException {
+        HttpTaskServer limitedServer = new HttpTaskServer(manager,
+                HttpServerSettings.dispatcherThread().withPort(8081).withMaxRequestBodyBytes(64));
+        limitedServer.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI url = URI.create("http://localhost:8081/tasks");
+            String taskJson = gson.toJson(new Task("T1".repeat(50), "TD1", TaskStatus.NEW));
+            HttpRequest request = HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString(taskJson)).build();
+            assertEquals(413, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+            HttpRequest.BodyPublisher chunked = HttpRequest.BodyPublishers.ofInputStream(
+                    () -> new java.io.ByteArrayInputStream(taskJson.getBytes(StandardCharsets.UTF_8)));
+            request = HttpRequest.newBuilder().uri(url).POST(chunked).build();
+            assertEquals(413, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+            request = HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString("{\"name\":")).build();
+            assertEquals(400, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+            assertTrue(manager.getTaskList().isEmpty());
+        } finally {
+            limitedServer.stop();
+        }
+    }
+
+    @Test
+    public void shouldCompressLargeResponsesAndReuseCachedBody() throws IOException, InterruptedException {
+        manager.addTask(new Task("T1", "TD1", TaskStatus.NEW));
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks"))
+                .header("Accept-Encoding", "gzip").GET().build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty(), "Маленький ответ не сжимается");
+
+        for (int i = 0; i < 100; i++) {
+            manager.addTask(new Task("T" + i, "TD" + i, TaskStatus.NEW));
+        }
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+            bodies.add(new String(new java.util.zip.GZIPInputStream(
+                    new java.io.ByteArrayInputStream(response.body())).readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(bodies.get(0), bodies.get(1));
+        List<Task> tasksFromResponse = gson.fromJson(bodies.get(0), new TaskListTypeToken().getType());
+        assertEquals(manager.getTaskList(), tasksFromResponse);
+
+        HttpRequest plain = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks")).GET().build();
+        HttpResponse<String> plainResponse = client.send(plain, HttpResponse.BodyHandlers.ofString());
+        assertEquals(bodies.get(0), plainResponse.body());
+
+        String gzipEtag = response.headers().firstValue("ETag").orElseThrow();
+        String plainEtag = plainResponse.headers().firstValue("ETag").orElseThrow();
+        assertNotEquals(gzipEtag, plainEtag, "Сжатое и несжатое тело - разные представления");
+        HttpRequest conditional = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks"))
+                .header("Accept-Encoding", "gzip").header("If-None-Match", gzipEtag).GET().build();
+        HttpResponse<String> notModified = client.send(conditional, HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, notModified.statusCode());
+        assertEquals("Accept-Encoding", notModified.headers().firstValue("Vary").orElse(null));
+        conditional = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks"))
+                .header("If-None-Match", gzipEtag).GET().build();
+        assertEquals(200, client.send(conditional, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void shouldStreamUncompressedWhenCompressionDisabled() throws IOException, InterruptedException {
+        for (int i = 0; i < 2000; i++) {
+            manager.addTask(new Task("T" + i, "TD" + i, TaskStatus.NEW));
+        }
+        HttpTaskServer plainServer = new HttpTaskServer(manager,
+                HttpServerSettings.dispatcherThread().withPort(8081).withCompression(false));
+        plainServer.start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8081/tasks"))
+                    .header("Accept-Encoding", "gzip").GET().build();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(request,
+                    HttpResponse.BodyHandlers.ofString());
+            assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+            assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null),
+                    "Отключённое сжатие не должно буферизовать ответ целиком");
+            assertEquals(manager.getTaskList(), gson.fromJson(response.body(), new TaskListTypeToken().getType()));
+        } finally {
+            plainServer.stop();
+        }
+    }
+
+    @Test
+    public void shouldStreamLargeTaskListInChunks() throws IOException, InterruptedException {
+        for (int i = 0; i < 5000; i++) {
+            manager.addTask(new Task("T" + i, "TD" + i, TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(10L * i)));
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/prioritized");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null));
+
+        List<Task> tasksFromResponse = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+        assertEquals(manager.getPrioritizedTasks(), tasksFromResponse);
+    }
+
     @Test
     public void shouldGetTaskById() throws IOException, InterruptedException {
         Task task = new Task("T1", "TD1", TaskStatus.NEW, Duration.ofMinutes(5), now);
@@ -595,6 +840,65 @@ public class HttpTaskManagerEndpointsTest {
         assertEquals(historyFromManager.get(3).getId(), historyFromResponse.get(3).getId());
     }
 
+    @Test
+    public void shouldGetLimitedHistoryMostRecentFirst() throws IOException, InterruptedException {
+        for (int i = 1; i <= 4; i++) {
+            manager.addTask(new Task("T" + i, "TD" + i, TaskStatus.NEW));
+            manager.getTask(i);
+        }
+        manager.getTask(2);
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/history?limit=3&order=desc")).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        List<Task> historyFromResponse = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+        assertEquals(List.of(2, 4, 3), historyFromResponse.stream().map(Task::getId).toList());
+
+        request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/history?limit=2")).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        historyFromResponse = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+        assertEquals(List.of(4, 2), historyFromResponse.stream().map(Task::getId).toList());
+
+        request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/history?order=sideways")).GET().build();
+        assertEquals(400, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void shouldKeepSeparateHistoryPerClient() throws IOException, InterruptedException {
+        for (int i = 1; i <= 3; i++) {
+            manager.addTask(new Task("T" + i, "TD" + i, TaskStatus.NEW));
+        }
+        HttpClient client = HttpClient.newHttpClient();
+        for (String view : List.of("alice:1", "bob:2", "alice:3", "bob:1")) {
+            String[] parts = view.split(":");
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks/" + parts[1]))
+                    .header("X-Client-Id", parts[0]).GET().build();
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        HttpRequest aliceHistory = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/history"))
+                .header("X-Client-Id", "alice").GET().build();
+        List<Task> history = gson.fromJson(client.send(aliceHistory, HttpResponse.BodyHandlers.ofString()).body(),
+                new TaskListTypeToken().getType());
+        assertEquals(List.of(1, 3), history.stream().map(Task::getId).toList());
+
+        HttpRequest bobHistory = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/history?order=desc"))
+                .header("Authorization", "Bearer bob").GET().build();
+        history = gson.fromJson(client.send(bobHistory, HttpResponse.BodyHandlers.ofString()).body(),
+                new TaskListTypeToken().getType());
+        assertEquals(List.of(1, 2), history.stream().map(Task::getId).toList());
+
+        HttpRequest globalHistory = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/history"))
+                .GET().build();
+        history = gson.fromJson(client.send(globalHistory, HttpResponse.BodyHandlers.ofString()).body(),
+                new TaskListTypeToken().getType());
+        assertEquals(List.of(2, 3, 1), history.stream().map(Task::getId).toList());
+    }
+
     @Test
     public void shouldReturn404WhenUnknownHistoryEndpoint() throws IOException, InterruptedException {
         HttpClient client = HttpClient.newHttpClient();
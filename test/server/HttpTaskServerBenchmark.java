@@ -0,0 +1,124 @@
+package server;
+
+import model.Task;
+import model.TaskStatus;
+import service.FileBackedTaskManager;
+import utils.Managers;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Сравнение режимов выполнения HttpTaskServer по пропускной способности и p99 задержки.
+ * Нагрузка: FileBackedTaskManager с заранее сохранёнными задачами, CLIENTS клиентов,
+ * каждый пятый запрос - POST /tasks (полная перезапись файла), остальные - GET /tasks/{id}.
+ * Запуск вручную: java -cp ... server.HttpTaskServerBenchmark
+ */
+public class HttpTaskServerBenchmark {
+    private static final int PORT = 8081;
+    private static final int PRELOADED_TASKS = 1_000;
+    private static final int CLIENTS = 16;
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long MEASURE_MILLIS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        List<HttpServerSettings> modes = List.of(
+                HttpServerSettings.dispatcherThread(),
+                HttpServerSettings.platformPool(availableProcessors * 2, 1024),
+                HttpServerSettings.virtualThreads());
+        System.out.printf("%-20s %12s %12s %12s%n", "mode", "req/s", "p50, ms", "p99, ms");
+        for (HttpServerSettings settings : modes) {
+            Result result = run(settings.withPort(PORT).withBacklog(CLIENTS * 2));
+            System.out.printf("%-20s %12.0f %12.2f %12.2f%n", settings.getExecutionMode(),
+                    result.throughput, result.p50Millis, result.p99Millis);
+        }
+    }
+
+    private static Result run(HttpServerSettings settings) throws Exception {
+        File saveFile = File.createTempFile("benchmarkSave", ".csv");
+        saveFile.deleteOnExit();
+        FileBackedTaskManager manager = Managers.getFileBacked(saveFile);
+        for (int i = 0; i < PRELOADED_TASKS; i++) {
+            manager.addTask(new Task("name" + i, "description" + i, TaskStatus.NEW));
+        }
+        HttpTaskServer server = new HttpTaskServer(manager, settings);
+        server.start();
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+        try {
+            runClients(client, WARMUP_MILLIS);
+            long[] latencies = runClients(client, MEASURE_MILLIS);
+            Arrays.sort(latencies);
+            return new Result(latencies.length * 1000.0 / MEASURE_MILLIS,
+                    percentile(latencies, 0.50) / 1_000_000.0,
+                    percentile(latencies, 0.99) / 1_000_000.0);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long[] runClients(HttpClient client, long durationMillis) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int clientNumber = c;
+            futures.add(clients.submit(() -> {
+                List<Long> latencies = new ArrayList<>();
+                int requestNumber = 0;
+                while (running.get()) {
+                    HttpRequest request = nextRequest(clientNumber, requestNumber++);
+                    long start = System.nanoTime();
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies.add(System.nanoTime() - start);
+                }
+                return latencies;
+            }));
+        }
+        Thread.sleep(durationMillis);
+        running.set(false);
+        List<Long> all = new ArrayList<>();
+        for (Future<List<Long>> future : futures) {
+            all.addAll(future.get());
+        }
+        clients.shutdown();
+        return all.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static HttpRequest nextRequest(int clientNumber, int requestNumber) {
+        if (requestNumber % 5 == 0) {
+            String body = HttpTaskServer.getGson().toJson(
+                    new Task("bench" + clientNumber, "request" + requestNumber, TaskStatus.NEW));
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/tasks"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        }
+        int id = 1 + ThreadLocalRandom.current().nextInt(PRELOADED_TASKS);
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/tasks/" + id)).GET().build();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static class Result {
+        private final double throughput;
+        private final double p50Millis;
+        private final double p99Millis;
+
+        private Result(double throughput, double p50Millis, double p99Millis) {
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+        }
+    }
+}
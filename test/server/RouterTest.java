@@ -0,0 +1,25 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterTest {
+
+    @Test
+    public void shouldParseIdWithoutSubstrings() {
+        assertEquals(42, Router.parseId("/tasks/42/x", 7, 9));
+        assertEquals(Integer.MAX_VALUE, Router.parseId("2147483647", 0, 10));
+        assertEquals(Router.NO_ID, Router.parseId("2147483648", 0, 10));
+        assertEquals(Router.NO_ID, Router.parseId("-1", 0, 2));
+        assertEquals(Router.NO_ID, Router.parseId("12a", 0, 3));
+        assertEquals(Router.NO_ID, Router.parseId("", 0, 0));
+    }
+
+    @Test
+    public void shouldRejectDuplicateRoutes() {
+        Router router = new Router().add("GET", "/tasks/{id}", (exchange, id) -> { });
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "/tasks/{id}", (exchange, id) -> { }));
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "/a/{id}/b/{id}", (exchange, id) -> { }));
+    }
+}
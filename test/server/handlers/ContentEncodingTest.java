@@ -0,0 +1,37 @@
+package server.handlers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentEncodingTest {
+
+    @Test
+    public void shouldNegotiateByQuality() {
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("br, identity"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip;q=0"));
+    }
+
+    @Test
+    public void shouldEncodeReadableBodies() throws IOException {
+        byte[] body = "[{\"name\":\"task\"}]".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        byte[] gzipped = ContentEncoding.GZIP.encode(body);
+        assertTrue(gzipped.length < body.length);
+        assertArrayEquals(body, new GZIPInputStream(new ByteArrayInputStream(gzipped)).readAllBytes());
+
+        byte[] deflated = ContentEncoding.DEFLATE.encode(body);
+        assertArrayEquals(body, new InflaterInputStream(new ByteArrayInputStream(deflated)).readAllBytes());
+        assertSame(body, ContentEncoding.IDENTITY.encode(body));
+    }
+}
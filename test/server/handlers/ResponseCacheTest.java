@@ -0,0 +1,66 @@
+package server.handlers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    @Test
+    public void shouldReturnBodyOnlyForSameVersion() {
+        ResponseCache cache = new ResponseCache();
+        byte[] body = "[]".getBytes();
+        cache.put("/tasks", 1, body);
+
+        assertSame(body, cache.get("/tasks", 1));
+        assertNull(cache.get("/tasks", 2));
+        assertNull(cache.get("/epics", 1));
+
+        cache.put("/tasks", 2, "[1]".getBytes());
+        cache.put("/tasks", 1, body);
+        assertNull(cache.get("/tasks", 1), "Старая версия не должна затирать новую");
+
+        ResponseCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(0.25, stats.getHitRatio());
+        assertEquals(1, stats.getEntries());
+        assertEquals(3, stats.getBytes());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedWhenOverBudget() {
+        ResponseCache cache = new ResponseCache(10, 4);
+        cache.put("/a", 1, new byte[4]);
+        cache.put("/b", 1, new byte[4]);
+        cache.get("/a", 1);
+        cache.put("/c", 1, new byte[4]);
+
+        assertNotNull(cache.get("/a", 1));
+        assertNull(cache.get("/b", 1));
+        assertNotNull(cache.get("/c", 1));
+
+        cache.put("/d", 1, new byte[5]);
+        assertNull(cache.get("/d", 1), "Слишком большое тело не кэшируется");
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(8, cache.getStats().getBytes());
+    }
+
+    @Test
+    public void shouldKeepEncodedBodiesInSameEntry() {
+        ResponseCache cache = new ResponseCache();
+        ResponseCache.Body identity = new ResponseCache.Body(new byte[10], ContentEncoding.IDENTITY);
+        ResponseCache.Body gzip = new ResponseCache.Body(new byte[3], ContentEncoding.GZIP);
+        cache.put("/tasks", 1, identity);
+
+        assertSame(identity, cache.get("/tasks", 1, ContentEncoding.GZIP));
+        cache.put("/tasks", 1, gzip);
+        assertSame(gzip, cache.get("/tasks", 1, ContentEncoding.GZIP));
+        assertSame(identity, cache.get("/tasks", 1, ContentEncoding.DEFLATE));
+        assertEquals(13, cache.getStats().getBytes());
+
+        cache.put("/tasks", 2, new ResponseCache.Body(new byte[4], ContentEncoding.GZIP));
+        assertNull(cache.get("/tasks", 2, ContentEncoding.IDENTITY));
+        assertEquals(4, cache.getStats().getBytes());
+    }
+}
@@ -0,0 +1,77 @@
+package server.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import server.HttpTaskServer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskAdaptersTest {
+    private static final Gson gson = HttpTaskServer.getGson();
+
+    @Test
+    public void shouldWriteRealNulls() {
+        JsonObject json = gson.toJsonTree(new Task(1, "t1", null, TaskStatus.NEW)).getAsJsonObject();
+        assertTrue(json.get("description").isJsonNull());
+        assertTrue(json.get("duration").isJsonNull());
+        assertTrue(json.get("startTime").isJsonNull());
+    }
+
+    @Test
+    public void shouldReadLegacyNullStrings() {
+        Task task = gson.fromJson("{\"id\":3,\"name\":\"t3\",\"description\":\"d3\",\"status\":\"DONE\","
+                + "\"duration\":\"null\",\"startTime\":\"null\",\"unknown\":[1,{\"a\":2}]}", Task.class);
+        assertEquals(3, task.getId());
+        assertEquals(TaskStatus.DONE, task.getStatus());
+        assertNull(task.getDuration());
+        assertNull(task.getStartTime());
+    }
+
+    @Test
+    public void shouldWriteTaskListByRuntimeType() {
+        LocalDateTime start = LocalDateTime.of(2024, 2, 29, 23, 59, 1, 500_000_000);
+        Epic epic = new Epic(2, "e2", "ed2", TaskStatus.IN_PROGRESS, new ArrayList<>(List.of(3)),
+                Duration.ofMinutes(5), start);
+        epic.setEndTime(start.plusMinutes(5));
+        List<Task> tasks = List.of(new Task(1, "t1", "td1", TaskStatus.NEW), epic,
+                new Subtask(3, "s3", "sd3", TaskStatus.DONE, 2, Duration.ofMinutes(5), start));
+
+        String json = gson.toJson(tasks);
+        assertTrue(json.contains("\"epicId\":2"));
+        assertTrue(json.contains("\"subtaskIdList\":[3]"));
+        assertTrue(json.contains("\"startTime\":\"2024-02-29T23:59:01.5\""));
+
+        Epic epicFromJson = gson.fromJson(gson.toJson(epic), Epic.class);
+        assertEquals(List.of(3), epicFromJson.getSubtaskIdList());
+        assertEquals(epic.getEndTime(), epicFromJson.getEndTime());
+        Subtask subtaskFromJson = gson.fromJson(gson.toJson(tasks.get(2)), Subtask.class);
+        assertEquals(2, subtaskFromJson.getEpicId());
+        assertEquals(start, subtaskFromJson.getStartTime());
+    }
+
+    @Test
+    public void shouldFormatAndParseLikeIsoFormatter() {
+        List<LocalDateTime> values = List.of(LocalDateTime.of(2024, 1, 1, 0, 0),
+                LocalDateTime.of(5, 12, 31, 9, 8, 7), LocalDateTime.of(2024, 6, 1, 12, 30, 0, 1),
+                LocalDateTime.of(2024, 6, 1, 12, 30, 0, 120_000_000), LocalDateTime.of(12024, 6, 1, 12, 30));
+        for (LocalDateTime value : values) {
+            String formatted = IsoTimeCodec.format(value);
+            assertEquals(value.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), formatted);
+            assertEquals(value, IsoTimeCodec.parseDateTime(formatted));
+        }
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 0), IsoTimeCodec.parseDateTime("2024-01-01T10:00"));
+        assertEquals(Duration.ofMinutes(90), IsoTimeCodec.parseDuration("PT90M"));
+        assertEquals(Duration.ofHours(2), IsoTimeCodec.parseDuration("PT2H"));
+    }
+}
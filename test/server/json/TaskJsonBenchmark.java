@@ -0,0 +1,104 @@
+package server.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import server.HttpTaskServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Сравнение сериализации больших списков задач: прежняя настройка Gson (рефлексия, время через DateTimeFormatter,
+ * строка "null") и TaskAdapter/SubtaskAdapter/EpicAdapter из HttpTaskServer.getGson().
+ * Запуск вручную: java -cp ... server.json.TaskJsonBenchmark
+ */
+public class TaskJsonBenchmark {
+    private static final int TASKS = 100_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        Gson before = new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(Duration.class, new LegacyDurationAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LegacyLocalDateTimeAdapter())
+                .create();
+        Gson after = HttpTaskServer.getGson();
+
+        List<Task> tasks = new ArrayList<>(TASKS);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < TASKS; i++) {
+            if (i % 10 == 0) {
+                tasks.add(new Epic(i, "epic" + i, "description" + i, TaskStatus.NEW, new ArrayList<>(List.of(i + 1))));
+            } else if (i % 10 == 1) {
+                tasks.add(new Subtask(i, "subtask" + i, "description" + i, TaskStatus.DONE, i - 1,
+                        Duration.ofMinutes(5), start.plusMinutes(10L * i)));
+            } else {
+                tasks.add(new Task(i, "task" + i, "description" + i, TaskStatus.IN_PROGRESS,
+                        Duration.ofMinutes(5), start.plusMinutes(10L * i)));
+            }
+        }
+
+        System.out.printf("%-12s %14s %14s%n", "gson", "write, ms", "read, ms");
+        for (int warmup = 0; warmup < 2; warmup++) {
+            measure(before, tasks);
+            measure(after, tasks);
+        }
+        long[] beforeResult = measure(before, tasks);
+        long[] afterResult = measure(after, tasks);
+        System.out.printf("%-12s %14d %14d%n", "before", beforeResult[0], beforeResult[1]);
+        System.out.printf("%-12s %14d %14d%n", "after", afterResult[0], afterResult[1]);
+    }
+
+    // Среднее время записи списка и чтения его же как List<Task> за ROUNDS повторов
+    private static long[] measure(Gson gson, List<Task> tasks) {
+        String json = gson.toJson(tasks);
+        long writeNanos = 0;
+        long readNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long begin = System.nanoTime();
+            gson.toJson(tasks);
+            writeNanos += System.nanoTime() - begin;
+            begin = System.nanoTime();
+            gson.fromJson(json, new TaskListTypeToken().getType());
+            readNanos += System.nanoTime() - begin;
+        }
+        return new long[]{writeNanos / ROUNDS / 1_000_000, readNanos / ROUNDS / 1_000_000};
+    }
+
+    private static class LegacyDurationAdapter extends TypeAdapter<Duration> {
+        @Override
+        public void write(JsonWriter jsonWriter, Duration duration) throws IOException {
+            jsonWriter.value(duration == null ? "null" : "PT" + duration.toMinutes() + "M");
+        }
+
+        @Override
+        public Duration read(JsonReader jsonReader) throws IOException {
+            String nextString = jsonReader.nextString();
+            return nextString.equals("null") ? null : Duration.parse(nextString);
+        }
+    }
+
+    private static class LegacyLocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
+        @Override
+        public void write(JsonWriter jsonWriter, LocalDateTime localDateTime) throws IOException {
+            jsonWriter.value(localDateTime == null ? "null" : localDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+
+        @Override
+        public LocalDateTime read(JsonReader jsonReader) throws IOException {
+            String nextString = jsonReader.nextString();
+            return nextString.equals("null") ? null : LocalDateTime.parse(nextString);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package service;
+
+import exceptions.TaskNotFoundException;
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.Managers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest {
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 500;
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void beforeEach() {
+        taskManager = Managers.getConcurrent();
+    }
+
+    private void runInParallel(IntConsumerWithException action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int threadNumber = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                action.accept(threadNumber);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private interface IntConsumerWithException {
+        void accept(int value) throws Exception;
+    }
+
+    @Test
+    public void shouldGenerateUniqueIdsWhenAddInParallel() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        runInParallel(threadNumber -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                int slot = threadNumber * TASKS_PER_THREAD + i;
+                taskManager.addTask(new Task("n" + slot, "d" + slot, TaskStatus.NEW,
+                        Duration.ofMinutes(5), start.plusMinutes(slot * 10L)));
+            }
+        });
+
+        List<Task> tasks = taskManager.getTaskList();
+        assertEquals(THREADS * TASKS_PER_THREAD, tasks.size());
+        Set<Integer> ids = new HashSet<>();
+        tasks.forEach(task -> ids.add(task.getId()));
+        assertEquals(THREADS * TASKS_PER_THREAD, ids.size());
+        assertEquals(THREADS * TASKS_PER_THREAD, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void shouldKeepEpicConsistentWhenSubtasksChangeInParallel() throws Exception {
+        taskManager.addEpic(new Epic("epic", "descr"));
+        runInParallel(threadNumber -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                Subtask subtask = new Subtask("n", "d", TaskStatus.DONE, 1);
+                taskManager.addSubtask(subtask);
+                taskManager.getSubtask(subtask.getId());
+                taskManager.getEpic(1);
+                if (i % 2 == 0) {
+                    taskManager.deleteSubtask(subtask.getId());
+                }
+            }
+        });
+
+        assertEquals(THREADS * TASKS_PER_THREAD / 2, taskManager.getSubtaskList().size());
+        assertEquals(THREADS * TASKS_PER_THREAD / 2, taskManager.getSubtaskListOfEpic(1).size());
+        assertEquals(TaskStatus.DONE, taskManager.getEpic(1).getStatus());
+        assertEquals(THREADS * TASKS_PER_THREAD / 2 + 1, taskManager.getHistory().size());
+    }
+
+    @Test
+    public void shouldReturnConsistentEpicSnapshotsWhileSubtaskIsUpdated() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        taskManager.addEpic(new Epic("epic", "descr"));
+        taskManager.addSubtask(new Subtask("n", "d", TaskStatus.NEW, 1, Duration.ofMinutes(10), start));
+        runInParallel(threadNumber -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                if (threadNumber == 0) {
+                    TaskStatus status = i % 2 == 0 ? TaskStatus.DONE : TaskStatus.NEW;
+                    taskManager.updateSubtask(new Subtask(2, "n", "d", status, 1,
+                            Duration.ofMinutes(10 + i % 2), start.plusHours(i)));
+                } else {
+                    Epic epic = taskManager.getEpic(1);
+                    long minutes = epic.getStatus() == TaskStatus.DONE ? 10 : 11;
+                    if (epic.getStartTime().equals(start)) {
+                        minutes = 10;
+                    }
+                    assertEquals(Duration.ofMinutes(minutes), epic.getDuration());
+                    assertEquals(epic.getStartTime().plus(epic.getDuration()), epic.getEndTime());
+                }
+            }
+        });
+
+        Epic snapshot = taskManager.getEpic(1);
+        taskManager.deleteSubtask(2);
+        assertNotNull(snapshot.getStartTime(), "Полученная копия эпика не должна меняться вместе с менеджером");
+        assertNull(taskManager.getEpic(1).getStartTime());
+    }
+
+    @Test
+    public void shouldIterateEpicCopiesWhileEpicsChange() {
+        for (int i = 0; i < 10; i++) {
+            taskManager.addEpic(new Epic("epic" + i, "descr"));
+        }
+        taskManager.forEachEpic(epic -> epic.setName("changed"));
+        taskManager.getEpicList().forEach(epic -> assertNotEquals("changed", epic.getName()));
+
+        List<Integer> visited = new ArrayList<>();
+        taskManager.forEachEpic(epic -> {
+            visited.add(epic.getId());
+            taskManager.deleteEpic(epic.getId());
+        });
+        assertEquals(10, visited.size());
+        assertTrue(taskManager.getEpicList().isEmpty());
+    }
+
+    @Test
+    public void shouldRebuildPrioritizedSnapshotAfterChanges() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            taskManager.addTask(new Task("n" + i, "d", TaskStatus.NEW, Duration.ofMinutes(10), start.plusHours(i)));
+        }
+        List<Task> before = taskManager.getPrioritizedTasks();
+        assertSame(before, taskManager.getPrioritizedTasks(), "Без изменений снимок должен переиспользоваться");
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(0));
+
+        taskManager.addTask(new Task("first", "d", TaskStatus.NEW, Duration.ofMinutes(10), start.minusHours(1)));
+        assertEquals(5, before.size(), "Выданный снимок не должен меняться вместе с менеджером");
+        List<Task> after = taskManager.getPrioritizedTasks();
+        assertEquals(6, after.size());
+        assertEquals(6, after.get(0).getId());
+
+        Task last = after.get(2);
+        List<Task> page = taskManager.findPrioritized(TaskQuery.all()
+                .withCursor(last.getId(), last.getStartTime()).withLimit(2));
+        assertEquals(after.subList(3, 5), page);
+        page = taskManager.findPrioritized(TaskQuery.all().withTimeWindow(start.plusHours(3), null));
+        assertEquals(after.subList(4, 6), page);
+    }
+
+    @Test
+    public void shouldNotKeepDeletedTasksInHistoryWhenViewedInParallel() throws Exception {
+        for (int i = 0; i < TASKS_PER_THREAD; i++) {
+            taskManager.addTask(new Task("n" + i, "d" + i, TaskStatus.NEW));
+        }
+        runInParallel(threadNumber -> {
+            for (int id = 1; id <= TASKS_PER_THREAD; id++) {
+                if (threadNumber == 0) {
+                    taskManager.deleteTask(id);
+                } else {
+                    try {
+                        taskManager.getTask(id);
+                    } catch (TaskNotFoundException ignored) {
+                    }
+                }
+            }
+        });
+
+        assertTrue(taskManager.getTaskList().isEmpty());
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    public void shouldRecordViewsAsynchronouslyWithoutKeepingDeletedTasks() throws Exception {
+        ConcurrentTaskManager asyncManager = Managers.getConcurrent(HistoryRecorderSettings.defaults());
+        taskManager = asyncManager;
+        for (int i = 0; i < TASKS_PER_THREAD; i++) {
+            taskManager.addTask(new Task("n" + i, "d" + i, TaskStatus.NEW));
+        }
+        runInParallel(threadNumber -> {
+            for (int id = 1; id <= TASKS_PER_THREAD; id++) {
+                if (threadNumber == 0 && id % 2 == 0) {
+                    taskManager.deleteTask(id);
+                } else {
+                    try {
+                        taskManager.getTask(id);
+                    } catch (TaskNotFoundException ignored) {
+                    }
+                }
+            }
+        });
+        asyncManager.flushHistory();
+
+        List<Task> history = taskManager.getHistory();
+        assertEquals(TASKS_PER_THREAD / 2, history.size());
+        assertTrue(history.stream().allMatch(task -> task.getId() % 2 == 1));
+        assertEquals(0, asyncManager.getDroppedViewCount());
+    }
+
+    @Test
+    public void shouldApplyBufferedViewsOnCloseAndRecordLaterViewsDirectly() {
+        ConcurrentTaskManager asyncManager = Managers.getConcurrent(new HistoryRecorderSettings(1024, 60_000, 1));
+        asyncManager.addTask(new Task("n1", "d1", TaskStatus.NEW));
+        asyncManager.addTask(new Task("n2", "d2", TaskStatus.NEW));
+        asyncManager.getTask(1);
+        asyncManager.close();
+        assertEquals(List.of(1), asyncManager.getHistory().stream().map(Task::getId).toList());
+
+        asyncManager.getTask(2);
+        assertEquals(List.of(1, 2), asyncManager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void shouldDropAndSampleViewsWhenRecorderBufferIsFull() throws Exception {
+        CountDownLatch consumerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        AsyncHistoryRecorder recorder = new AsyncHistoryRecorder(batch -> {
+            consumerBlocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batch.forEach(task -> applied.add(task.getId()));
+        }, new HistoryRecorderSettings(4, 1, 1), "test-history-recorder");
+
+        assertTrue(recorder.record(new Task(1, "n1", "d1", TaskStatus.NEW)));
+        assertTrue(consumerBlocked.await(5, TimeUnit.SECONDS));
+        for (int id = 2; id <= 5; id++) {
+            assertTrue(recorder.record(new Task(id, "n" + id, "d" + id, TaskStatus.NEW)));
+        }
+        assertFalse(recorder.record(new Task(6, "n6", "d6", TaskStatus.NEW)));
+        assertEquals(1, recorder.getDroppedCount());
+
+        release.countDown();
+        recorder.flush();
+        recorder.close();
+        assertEquals(List.of(1, 2, 3, 4, 5), applied);
+
+        AsyncHistoryRecorder sampling = new AsyncHistoryRecorder(batch -> {
+        }, new HistoryRecorderSettings(2, 60_000, 1_000_000), "test-history-sampler");
+        for (int id = 1; id <= 10; id++) {
+            sampling.record(new Task(id, "n" + id, "d" + id, TaskStatus.NEW));
+        }
+        assertTrue(sampling.getSampledOutCount() > 0);
+        sampling.close();
+    }
+}
@@ -1,9 +1,12 @@
 package service;
 
+import exceptions.ManagerSaveException;
+import exceptions.TaskTimeOverlapException;
 import model.Epic;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +15,9 @@ import utils.Managers;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,6 +25,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class FileBackedTaskManagerTest {
     private static File tempFile;
+    private static File journalFile;
     private static TaskManager fileBackedTaskManager;
 
     @BeforeAll
@@ -34,6 +41,15 @@ class FileBackedTaskManagerTest {
             tempFile.deleteOnExit();
         }
         fileBackedTaskManager = Managers.getFileBacked(tempFile);
+        journalFile = new File(tempFile.getPath() + ".journal");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        journalFile.delete();
+        new File(journalFile.getPath() + ".compacting").delete();
+        new File(tempFile.getPath() + ".history").delete();
+        new File(tempFile.getPath() + ".tmp").delete();
     }
 
     @Test
@@ -95,4 +111,363 @@ class FileBackedTaskManagerTest {
         assertEquals(new ArrayList<>(List.of(epic1)), fileBackedTaskManager.getEpicList());
         assertEquals(new ArrayList<>(List.of(subtask1, subtask2)), fileBackedTaskManager.getSubtaskList());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAppendToJournalWithoutRewritingSnapshot() throws IOException {
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile);
+        journaledManager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        journaledManager.addEpic(new Epic("Epic1", "Description epic1"));
+        journaledManager.addSubtask(new Subtask("Sub Task1", "Description sub task1", TaskStatus.DONE, 2));
+        journaledManager.deleteTask(1);
+
+        assertTrue(Files.readString(tempFile.toPath(), StandardCharsets.UTF_8).isEmpty());
+        List<String> journalLines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, journalLines.size());
+        assertEquals("PUT,1,TASK,Task1,NEW,Description task1,,null,null", journalLines.getFirst());
+        assertEquals("DELETE,TASK,1", journalLines.getLast());
+    }
+
+    @Test
+    public void shouldReplayJournalOnTopOfSnapshot() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile);
+        journaledManager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW, Duration.ofMinutes(5), now));
+        journaledManager.addEpic(new Epic("Epic1", "Description epic1"));
+        journaledManager.addSubtask(new Subtask("Sub Task1", "Description sub task1", TaskStatus.DONE, 2));
+        journaledManager.checkpoint();
+        assertTrue(Files.readString(journalFile.toPath(), StandardCharsets.UTF_8).isEmpty());
+
+        journaledManager.addSubtask(new Subtask("Sub Task2", "Description sub task2", TaskStatus.NEW, 2));
+        journaledManager.updateTask(new Task(1, "Task1new", "Description task1", TaskStatus.DONE,
+                Duration.ofMinutes(5), now.plusMinutes(10)));
+        journaledManager.addTask(new Task("Task5", "Description task5", TaskStatus.NEW));
+        journaledManager.deleteTask(5);
+        journaledManager.updateEpic(new Epic(2, "Epic1new", "Description epic1new", TaskStatus.NEW, new ArrayList<>()));
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        assertEquals(journaledManager.getTaskList(), restoredManager.getTaskList());
+        assertEquals(journaledManager.getSubtaskList(), restoredManager.getSubtaskList());
+        assertEquals("Task1new", restoredManager.getTask(1).getName());
+        assertEquals(now.plusMinutes(10), restoredManager.getTask(1).getStartTime());
+        assertEquals("Epic1new", restoredManager.getEpic(2).getName());
+        assertEquals(TaskStatus.IN_PROGRESS, restoredManager.getEpic(2).getStatus());
+        assertEquals(List.of(restoredManager.getTask(1)), restoredManager.getPrioritizedTasks());
+
+        Task task = new Task("Task6", "Description task6", TaskStatus.NEW);
+        restoredManager.addTask(task);
+        assertEquals(6, task.getId());
+    }
+
+    @Test
+    public void shouldJournalBatchInOneAppend() throws IOException {
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile);
+        journaledManager.addEpic(new Epic("Epic1", "Description epic1"));
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i % 2 == 0 ? new Task("Task" + i, "Description", TaskStatus.NEW)
+                    : new Subtask("Sub Task" + i, "Description", TaskStatus.DONE, 1));
+        }
+        assertTrue(journaledManager.addTasks(batch).stream().allMatch(BatchResult::isOk));
+        journaledManager.deleteTasks(List.of(2, 3, 500));
+
+        assertEquals(103, Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8).size());
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        assertEquals(49, restoredManager.getTaskList().size());
+        assertEquals(49, restoredManager.getSubtaskList().size());
+        assertEquals(TaskStatus.DONE, restoredManager.getEpic(1).getStatus());
+    }
+
+    @Test
+    public void shouldIgnoreTornLastJournalRecord() throws IOException {
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile);
+        journaledManager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        Files.writeString(journalFile.toPath(), "PUT,2,TA", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        assertEquals(1, restoredManager.getTaskList().size());
+
+        restoredManager.addTask(new Task("Task2", "Description task2", TaskStatus.NEW));
+        FileBackedTaskManager reloadedManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        assertEquals(2, reloadedManager.getTaskList().size());
+    }
+
+    @Test
+    public void shouldCompactJournalInBackgroundWhenThresholdReached() throws IOException {
+        PersistenceSettings settings = new PersistenceSettings(5, Long.MAX_VALUE);
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile, settings);
+        for (int i = 1; i <= 12; i++) {
+            journaledManager.addTask(new Task("Task" + i, "Description task" + i, TaskStatus.NEW));
+        }
+        journaledManager.deleteTask(3);
+        journaledManager.awaitCompaction();
+
+        assertFalse(new File(journalFile.getPath() + ".compacting").exists());
+        assertTrue(Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8).size() < 13);
+        assertFalse(Files.readString(tempFile.toPath(), StandardCharsets.UTF_8).isEmpty());
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile, settings);
+        assertEquals(11, restoredManager.getTaskList().size());
+        assertEquals(journaledManager.getTaskList(), restoredManager.getTaskList());
+    }
+
+    @Test
+    public void shouldRestoreEpicsChangedWhileCompactionCopiesTasks() throws IOException {
+        PersistenceSettings settings = new PersistenceSettings(4, Long.MAX_VALUE);
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile, settings);
+        for (int i = 0; i < 50; i++) {
+            journaledManager.addEpic(new Epic("Epic" + i, "Description"));
+            int epicId = journaledManager.getEpicList().stream().mapToInt(Task::getId).max().orElseThrow();
+            journaledManager.addSubtask(new Subtask("Subtask" + i, "Description", TaskStatus.DONE, epicId));
+            if (i % 3 == 0) {
+                journaledManager.deleteEpic(epicId);
+            }
+        }
+        journaledManager.awaitCompaction();
+        journaledManager.close();
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile, settings);
+        assertEquals(journaledManager.getEpicList(), restoredManager.getEpicList());
+        assertEquals(journaledManager.getSubtaskList(), restoredManager.getSubtaskList());
+        restoredManager.close();
+    }
+
+    @Test
+    public void shouldReplayUnfinishedCompactionSegment() throws IOException {
+        File compactingFile = new File(journalFile.getPath() + ".compacting");
+        Files.writeString(compactingFile.toPath(), String.format("%s%n%s%n",
+                "PUT,1,TASK,Task1,NEW,Description task1,,null,null",
+                "PUT,2,TASK,Task2,NEW,Description task2,,null,null"), StandardCharsets.UTF_8);
+        Files.writeString(journalFile.toPath(), String.format("%s%n", "DELETE,TASK,1"), StandardCharsets.UTF_8);
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        assertEquals(1, restoredManager.getTaskList().size());
+        assertEquals("Task2", restoredManager.getTask(2).getName());
+        assertFalse(compactingFile.exists());
+        assertTrue(Files.readString(journalFile.toPath(), StandardCharsets.UTF_8).isEmpty());
+        assertEquals(restoredManager.getTaskList(), FileBackedTaskManager.loadFromFile(tempFile).getTaskList());
+    }
+
+    @Test
+    public void shouldGroupCommitJournalAndWaitForDurability() throws IOException, InterruptedException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withDurability(DurabilityPolicy.GROUP_COMMIT, 20);
+        FileBackedTaskManager journaledManager = Managers.getJournaled(tempFile, journalFile, settings);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            String name = "Task" + i;
+            Thread writer = new Thread(() -> {
+                journaledManager.addTask(new Task(name, "Description", TaskStatus.NEW));
+                journaledManager.awaitDurability();
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(8, Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8).size());
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        assertEquals(journaledManager.getTaskList(), restoredManager.getTaskList());
+    }
+
+    @Test
+    public void shouldWriteSnapshotBehindOnInterval() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withDurability(DurabilityPolicy.INTERVAL, 50);
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        manager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        manager.addTask(new Task("Task2", "Description task2", TaskStatus.NEW));
+        manager.awaitDurability();
+        manager.flush();
+
+        assertEquals(manager.getTaskList(), FileBackedTaskManager.loadFromFile(tempFile).getTaskList());
+    }
+
+    @Test
+    public void shouldWriteAcceptedChangesOnClose() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withDurability(DurabilityPolicy.INTERVAL, 60_000);
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        manager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        manager.addEpic(new Epic("Epic1", "Description epic1"));
+        manager.close();
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(manager.getTaskList(), restoredManager.getTaskList());
+        assertEquals(manager.getEpicList(), restoredManager.getEpicList());
+        assertThrows(ManagerSaveException.class, () -> manager.addTask(new Task("Task3", "Description", TaskStatus.NEW)));
+    }
+
+    @Test
+    public void shouldRejectChangesWhileWriteFailsAndRetryFailedWrite() throws IOException {
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, PersistenceSettings.defaults());
+        manager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        //Каталог на месте временного файла снимка не даёт записать снимок
+        File blocker = new File(tempFile.getPath() + ".tmp");
+        assertTrue(blocker.mkdir());
+
+        assertThrows(ManagerSaveException.class, () -> manager.addTask(new Task("Task2", "Description", TaskStatus.NEW)));
+        assertThrows(ManagerSaveException.class, () -> manager.addTask(new Task("Task3", "Description", TaskStatus.NEW)));
+        assertEquals(List.of(1, 2), manager.getTaskList().stream().map(Task::getId).sorted().toList(),
+                "Изменение, отклонённое из-за ошибки записи, не должно применяться в памяти");
+
+        assertTrue(blocker.delete());
+        manager.close();
+        assertEquals(manager.getTaskList(), FileBackedTaskManager.loadFromFile(tempFile).getTaskList());
+    }
+
+    @Test
+    public void shouldSaveAndLoadBinarySnapshot() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 9, 0);
+        manager.addTask(new Task("Task1", "Description", TaskStatus.NEW, Duration.ofMinutes(5), now));
+        manager.addEpic(new Epic("Epic1", "Description"));
+        manager.addSubtask(new Subtask("Sub Task1", "Description", TaskStatus.DONE, 2,
+                Duration.ofMinutes(5), now.plusMinutes(10)));
+
+        assertTrue(TaskBinaryFormat.isBinary(tempFile));
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(manager.getTaskList(), restoredManager.getTaskList());
+        assertEquals(manager.getEpicList(), restoredManager.getEpicList());
+        assertEquals(manager.getSubtaskList(), restoredManager.getSubtaskList());
+        assertEquals(manager.getPrioritizedTasks(), restoredManager.getPrioritizedTasks());
+
+        restoredManager.deleteTask(1);
+        assertTrue(TaskBinaryFormat.isBinary(tempFile));
+    }
+
+    @Test
+    public void shouldKeepBinaryFormatWhenJournaledManagerLoadedFromBinarySnapshot() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager manager = Managers.getJournaled(tempFile, journalFile, settings);
+        manager.addTask(new Task("Task1", "Description", TaskStatus.NEW));
+        manager.checkpoint();
+        assertTrue(TaskBinaryFormat.isBinary(tempFile));
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, journalFile);
+        restoredManager.addTask(new Task("Task2", "Description", TaskStatus.NEW));
+        restoredManager.checkpoint();
+
+        assertTrue(TaskBinaryFormat.isBinary(tempFile));
+        assertEquals(restoredManager.getTaskList(), FileBackedTaskManager.loadFromFile(tempFile).getTaskList());
+    }
+
+    @Test
+    public void shouldRebuildEpicsAndPrioritizedTasksAfterLoad() throws IOException {
+        Files.writeString(tempFile.toPath(), String.format("%s%n%s%n%s%n%s%n",
+                "id,type,name,status,description,epicId,duration,startTime",
+                "1,SUBTASK,Sub Task1,DONE,Description,3,PT10M,2024-01-01T10:00",
+                "2,TASK,Task2,NEW,Description,,PT10M,2024-01-01T09:00",
+                "3,EPIC,Epic3,NEW,Description,,null,null"), StandardCharsets.UTF_8);
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile);
+        Epic epic = restoredManager.getEpic(3);
+        assertEquals(List.of(1), epic.getSubtaskIdList());
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 10), epic.getEndTime());
+        assertEquals(List.of(2, 1), restoredManager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertThrows(TaskTimeOverlapException.class, () -> restoredManager.addTask(new Task("Task4", "Description",
+                TaskStatus.NEW, Duration.ofMinutes(5), LocalDateTime.of(2024, 1, 1, 9, 5))));
+
+        restoredManager.addTask(new Task("Task4", "Description", TaskStatus.NEW));
+        assertEquals(4, restoredManager.getTaskList().stream().mapToInt(Task::getId).max().getAsInt());
+    }
+
+    @Test
+    public void shouldRestoreViewHistoryFromAccessLog() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withHistoryLog(60_000);
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        for (int i = 1; i <= 4; i++) {
+            manager.addTask(new Task("Task" + i, "Description task" + i, TaskStatus.NEW));
+        }
+        manager.getTask(3);
+        manager.getTask(1);
+        manager.getTask(4);
+        manager.getTask(3);
+        manager.getTask(2);
+        manager.deleteTask(4);
+        manager.flushHistory();
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, settings);
+        assertEquals(List.of(1, 3, 2), restoredManager.getHistory().stream().map(Task::getId).toList());
+        assertTrue(FileBackedTaskManager.loadFromFile(tempFile).getHistory().isEmpty());
+    }
+
+    @Test
+    public void shouldCompactAccessLogToLatestUniqueViews() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withHistoryLog(60_000);
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        manager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        manager.addTask(new Task("Task2", "Description task2", TaskStatus.NEW));
+        manager.addTask(new Task("Task3", "Description task3", TaskStatus.NEW));
+        for (int i = 0; i < 50; i++) {
+            manager.getTask(1 + i % 3);
+        }
+        manager.deleteTask(1);
+        File historyFile = new File(tempFile.getPath() + ".history");
+        manager.flushHistory();
+        assertEquals(50L * HistoryLog.RECORD_BYTES, historyFile.length());
+
+        manager.compactHistory();
+        assertEquals(2L * HistoryLog.RECORD_BYTES, historyFile.length());
+        manager.getTask(3);
+        manager.flushHistory();
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, settings);
+        assertEquals(List.of(2, 3), restoredManager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void shouldRecordViewsAsynchronouslyAndApplyThemOnClose() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withHistoryLog(60_000)
+                .withAsyncHistory(new HistoryRecorderSettings(1024, 60_000, 1));
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        manager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        manager.addTask(new Task("Task2", "Description task2", TaskStatus.NEW));
+        manager.getTask(2);
+        manager.getTask(1);
+        manager.close();
+        assertEquals(List.of(2, 1), manager.getHistory().stream().map(Task::getId).toList());
+
+        FileBackedTaskManager restoredManager = FileBackedTaskManager.loadFromFile(tempFile, settings);
+        assertEquals(List.of(2, 1), restoredManager.getHistory().stream().map(Task::getId).toList());
+        restoredManager.close();
+    }
+
+    @Test
+    public void shouldReadLatestViewsBackwardsAcrossChunks() throws IOException {
+        HistoryLog historyLog = new HistoryLog(new File(tempFile.getPath() + ".history"));
+        List<byte[]> records = new ArrayList<>();
+        int recordCount = HistoryLog.READ_CHUNK_RECORDS * 2 + 7;
+        for (int i = 0; i < recordCount; i++) {
+            records.add(HistoryLog.encode(i % 5000 + 1, i));
+        }
+        historyLog.append(records);
+        historyLog.close();
+
+        int skippedId = (recordCount - 2) % 5000 + 1;
+        List<HistoryLog.Entry> latest = historyLog.readLatest(id -> id != skippedId, 3);
+        assertEquals(List.of(recordCount - 4, recordCount - 3, recordCount - 1),
+                latest.stream().map(entry -> (int) entry.timestamp).toList());
+        List<HistoryLog.Entry> all = historyLog.readLatest(id -> true, Integer.MAX_VALUE);
+        assertEquals(5000, all.size());
+        assertEquals(recordCount - 5000, all.getFirst().timestamp);
+        assertEquals(recordCount - 1, all.getLast().timestamp);
+    }
+
+    @Test
+    public void shouldNotLogViewsSkippedByHistory() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withHistoryLog(60_000)
+                .withAsyncHistory(new HistoryRecorderSettings(1024, 60_000, 1));
+        FileBackedTaskManager manager = Managers.getFileBacked(tempFile, settings);
+        manager.addTask(new Task("Task1", "Description task1", TaskStatus.NEW));
+        manager.addTask(new Task("Task2", "Description task2", TaskStatus.NEW));
+        manager.getTask(1);
+        manager.getTask(2);
+        manager.deleteTask(1);
+        manager.flushHistory();
+
+        assertEquals(HistoryLog.RECORD_BYTES, new File(tempFile.getPath() + ".history").length());
+        manager.close();
+    }
+}
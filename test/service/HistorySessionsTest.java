@@ -0,0 +1,159 @@
+package service;
+
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistorySessionsTest {
+    private final Map<Integer, Task> tasks = new HashMap<>();
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @BeforeEach
+    public void beforeEach() {
+        for (int id = 1; id <= 10; id++) {
+            tasks.put(id, new Task(id, "n" + id, "d" + id, TaskStatus.NEW));
+        }
+    }
+
+    private HistorySessions sessions(HistorySessionSettings settings) {
+        return new HistorySessions(tasks::get, settings, now::get);
+    }
+
+    private static List<Integer> ids(List<Task> history) {
+        return history.stream().map(Task::getId).toList();
+    }
+
+    @Test
+    public void shouldKeepSeparateCappedHistoriesPerClient() {
+        HistorySessions sessions = sessions(HistorySessionSettings.defaults().withMaxEntriesPerSession(3));
+        for (int id = 1; id <= 5; id++) {
+            sessions.recordView("alice", id);
+        }
+        sessions.recordView("alice", 4);
+        sessions.recordView("bob", 7);
+
+        assertEquals(List.of(3, 5, 4), ids(sessions.getHistory("alice", Integer.MAX_VALUE, false)));
+        assertEquals(List.of(4, 5), ids(sessions.getHistory("alice", 2, true)));
+        assertEquals(List.of(7), ids(sessions.getSession("bob").getHistory()));
+        assertTrue(sessions.getHistory("carol", 10, false).isEmpty());
+        assertEquals(2, sessions.getSessionCount());
+    }
+
+    @Test
+    public void shouldSkipDeletedTasks() {
+        HistorySessions sessions = sessions(HistorySessionSettings.defaults());
+        sessions.recordView("alice", 1);
+        sessions.recordView("alice", 2);
+        tasks.remove(1);
+
+        assertEquals(List.of(2), ids(sessions.getHistory("alice", 10, false)));
+        tasks.put(1, new Task(1, "n1", "d1", TaskStatus.NEW));
+        assertEquals(List.of(2), ids(sessions.getHistory("alice", 10, false)));
+    }
+
+    @Test
+    public void shouldExpireIdleSessions() {
+        HistorySessions sessions = sessions(HistorySessionSettings.defaults().withIdleTimeoutMillis(100));
+        sessions.recordView("alice", 1);
+        now.addAndGet(60);
+        sessions.recordView("bob", 2);
+        now.addAndGet(60);
+
+        assertEquals(List.of(2), ids(sessions.getHistory("bob", 10, false)));
+        assertEquals(1, sessions.getSessionCount());
+        assertEquals(1, sessions.getExpiredCount());
+        assertTrue(sessions.getHistory("alice", 10, false).isEmpty());
+    }
+
+    @Test
+    public void shouldEvictColdestSessionsOverMemoryBudget() {
+        long sessionBytes = HistorySessions.SESSION_OVERHEAD_BYTES + 2 + 4 * 4;
+        HistorySessions sessions = sessions(HistorySessionSettings.defaults().withMaxMemoryBytes(sessionBytes * 3));
+        sessions.recordView("a", 1);
+        sessions.recordView("b", 1);
+        sessions.recordView("c", 1);
+        sessions.getHistory("a", 10, false);
+        sessions.recordView("d", 1);
+
+        assertEquals(3, sessions.getSessionCount());
+        assertEquals(1, sessions.getEvictedCount());
+        assertTrue(sessions.getHistory("b", 10, false).isEmpty());
+        assertEquals(List.of(1), ids(sessions.getHistory("a", 10, false)));
+        assertTrue(sessions.getMemoryBytes() <= sessionBytes * 3);
+    }
+
+    @Test
+    public void shouldNotHoldSessionWhileLookingUpTasks() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HistorySessions sessions = new HistorySessions(id -> {
+            if (id == 1) {
+                lookupStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return tasks.get(id);
+        }, HistorySessionSettings.defaults(), now::get);
+        sessions.recordView("alice", 1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Task>> history = executor.submit(() -> sessions.getHistory("alice", 10, false));
+            assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+            sessions.recordView("alice", 2);
+            sessions.recordView("bob", 3);
+            release.countDown();
+            assertEquals(List.of(1), ids(history.get(5, TimeUnit.SECONDS)));
+            assertEquals(List.of(1, 2), ids(sessions.getHistory("alice", 10, false)));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldKeepMemoryAccountingConsistentUnderParallelClients() throws Exception {
+        long sessionBytes = HistorySessions.SESSION_OVERHEAD_BYTES + 2 * 3 + 4 * 4;
+        HistorySessions sessions = sessions(HistorySessionSettings.defaults().withMaxMemoryBytes(sessionBytes * 8));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        String clientId = String.format("c%02d", offset * 10 + i % 10);
+                        sessions.recordView(clientId, 1 + i % 3);
+                        sessions.getHistory(clientId, 2, true);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(sessions.getSessionCount() <= 8);
+        assertEquals(sessions.getSessionCount() * sessionBytes, sessions.getMemoryBytes());
+        assertTrue(sessions.getEvictedCount() > 0);
+    }
+}
@@ -8,7 +8,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import utils.Managers;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -170,4 +176,69 @@ class InMemoryHistoryManagerTest {
         assertEquals(0, taskManager.getHistory().size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldEvictOldestViewWhenCapacityReached() {
+        HistoryManager boundedHistory = Managers.getDefaultHistory(3);
+        for (int i = 1; i <= 5; i++) {
+            boundedHistory.addToHistory(new Task(i, "name" + i, "descr", TaskStatus.NEW));
+        }
+        assertEquals(List.of(3, 4, 5), boundedHistory.getHistory().stream().map(Task::getId).toList());
+        assertEquals(2, boundedHistory.getEvictionCount());
+
+        boundedHistory.addToHistory(new Task(3, "name3", "descr", TaskStatus.NEW));
+        boundedHistory.remove(4);
+        boundedHistory.addToHistory(new Task(6, "name6", "descr", TaskStatus.NEW));
+        assertEquals(List.of(5, 3, 6), boundedHistory.getHistory().stream().map(Task::getId).toList());
+        assertEquals(2, boundedHistory.getEvictionCount());
+        assertEquals(3, boundedHistory.getCapacity());
+    }
+
+    @Test
+    public void shouldKeepIdIndexConsistentUnderChurn() {
+        InMemoryHistoryManager.IdSlotIndex index = new InMemoryHistoryManager.IdSlotIndex();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(500) - 10;
+            if (random.nextBoolean()) {
+                index.put(id, i);
+                expected.put(id, i);
+            } else {
+                assertEquals(expected.getOrDefault(id, InMemoryHistoryManager.IdSlotIndex.NO_SLOT), index.remove(id));
+                expected.remove(id);
+            }
+        }
+        for (int id = -10; id < 490; id++) {
+            assertEquals(expected.getOrDefault(id, InMemoryHistoryManager.IdSlotIndex.NO_SLOT), index.get(id));
+        }
+    }
+
+    @Test
+    public void shouldIterateHistoryInBothDirectionsWithLimit() {
+        for (int i = 1; i <= 5; i++) {
+            historyManager.addToHistory(new Task(i, "name" + i, "descr", TaskStatus.NEW));
+        }
+        historyManager.addToHistory(new Task(2, "name2", "descr", TaskStatus.NEW));
+
+        assertEquals(List.of(2, 5, 4), historyManager.getHistory(3).stream().map(Task::getId).toList());
+        List<Integer> ids = new ArrayList<>();
+        historyManager.forEachInHistory(false, 3, task -> ids.add(task.getId()));
+        assertEquals(List.of(4, 5, 2), ids);
+        ids.clear();
+        historyManager.historyIterator(true).forEachRemaining(task -> ids.add(task.getId()));
+        assertEquals(List.of(2, 5, 4, 3, 1), ids);
+        assertEquals(0, historyManager.getHistory(0).size());
+    }
+
+    @Test
+    public void shouldExposeReadOnlyFailFastIterator() {
+        historyManager.addToHistory(new Task(1, "name1", "descr", TaskStatus.NEW));
+        historyManager.addToHistory(new Task(2, "name2", "descr", TaskStatus.NEW));
+        Iterator<Task> iterator = historyManager.historyIterator(false);
+
+        assertEquals(1, iterator.next().getId());
+        assertThrows(UnsupportedOperationException.class, iterator::remove);
+        historyManager.remove(1);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+}
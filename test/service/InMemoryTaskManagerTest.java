@@ -5,8 +5,10 @@ import model.Epic;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskTypes;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import service.TaskCollection;
 import utils.Managers;
 
 import java.time.Duration;
@@ -324,6 +326,28 @@ class InMemoryTaskManagerTest {
 
     }
 
+    @Test
+    public void shouldRecalculateEpicWhenStoredSubtaskChangedInPlaceAndUpdated() {
+        LocalDateTime now = LocalDateTime.now();
+        taskManager.addEpic(new Epic("n1", "d1"));
+        taskManager.addSubtask(new Subtask("n2", "d2", TaskStatus.NEW, 1, Duration.ofMinutes(5), now));
+
+        Subtask subtask = taskManager.getSubtask(2);
+        subtask.setStatus(TaskStatus.DONE);
+        subtask.setStartTime(now.plusHours(1));
+        taskManager.updateSubtask(subtask);
+
+        Epic epic = taskManager.getEpic(1);
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        assertEquals(now.plusHours(1), epic.getStartTime());
+        assertEquals(now.plusHours(1).plusMinutes(5), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(5), epic.getDuration());
+
+        taskManager.deleteSubtask(2);
+        assertEquals(TaskStatus.NEW, taskManager.getEpic(1).getStatus());
+        assertNull(taskManager.getEpic(1).getStartTime());
+    }
+
     @Test
     public void shouldCalculateTaskOverlapTimeCorrectly() {
         LocalDateTime now = LocalDateTime.now();
@@ -347,6 +371,30 @@ class InMemoryTaskManagerTest {
         });
     }
 
+    @Test
+    public void shouldThrowOverlapWhenAddTaskWithIdOfOverlappingTask() {
+        LocalDateTime now = LocalDateTime.now();
+        taskManager.addTask(new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(5), now));
+        assertThrows(TaskTimeOverlapException.class, () -> {
+            taskManager.addTask(new Task(1, "n2", "d2", TaskStatus.NEW, Duration.ofMinutes(5), now));
+        });
+        assertEquals(1, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void shouldAllowUpdateTaskOverItsOwnTimeSlot() {
+        LocalDateTime now = LocalDateTime.now();
+        taskManager.addTask(new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(10), now));
+        taskManager.addTask(new Task(2, "n2", "d2", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(20)));
+        assertDoesNotThrow(() -> {
+            taskManager.updateTask(new Task(1, "n1", "d1", TaskStatus.DONE, Duration.ofMinutes(15), now.plusMinutes(2)));
+        });
+        assertThrows(TaskTimeOverlapException.class, () -> {
+            taskManager.updateTask(new Task(1, "n1", "d1", TaskStatus.DONE, Duration.ofMinutes(15), now.plusMinutes(10)));
+        });
+        assertEquals(now.plusMinutes(2), taskManager.getPrioritizedTasks().getFirst().getStartTime());
+    }
+
     @Test
     public void shouldReturnCorrectSizeOfPrioritizedTaskList() {
         LocalDateTime now = LocalDateTime.now();
@@ -436,4 +484,163 @@ class InMemoryTaskManagerTest {
 
         assertEquals(List.of(st1New, st2New), taskManager.getPrioritizedTasks());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldBumpOnlyAffectedVersions() {
+        LocalDateTime now = LocalDateTime.now();
+        taskManager.addTask(new Task("n1", "d1", TaskStatus.NEW));
+        taskManager.addEpic(new Epic("e2", "ed2"));
+        taskManager.addSubtask(new Subtask("s3", "sd3", TaskStatus.NEW, 2, Duration.ofMinutes(5), now));
+
+        long tasksVersion = taskManager.getVersion(TaskCollection.TASKS);
+        long epicsVersion = taskManager.getVersion(TaskCollection.EPICS);
+        long prioritizedVersion = taskManager.getVersion(TaskCollection.PRIORITIZED);
+        long taskVersion = taskManager.getTaskVersion(1);
+        long epicVersion = taskManager.getTaskVersion(2);
+
+        taskManager.updateSubtask(new Subtask(3, "s3", "sd3", TaskStatus.DONE, 2, Duration.ofMinutes(5), now));
+        assertEquals(tasksVersion, taskManager.getVersion(TaskCollection.TASKS));
+        assertEquals(taskVersion, taskManager.getTaskVersion(1));
+        assertTrue(taskManager.getVersion(TaskCollection.EPICS) > epicsVersion);
+        assertTrue(taskManager.getVersion(TaskCollection.PRIORITIZED) > prioritizedVersion);
+        assertTrue(taskManager.getTaskVersion(2) > epicVersion);
+
+        long historyVersion = taskManager.getVersion(TaskCollection.HISTORY);
+        taskManager.getTask(1);
+        assertTrue(taskManager.getVersion(TaskCollection.HISTORY) > historyVersion);
+        assertEquals(tasksVersion, taskManager.getVersion(TaskCollection.TASKS));
+    }
+
+    @Test
+    public void shouldPageAndFilterTasksById() {
+        for (int i = 1; i <= 10; i++) {
+            taskManager.addTask(new Task("n" + i, "d" + i, i % 2 == 0 ? TaskStatus.DONE : TaskStatus.NEW));
+        }
+        taskManager.addEpic(new Epic("e11", "ed11"));
+        taskManager.deleteTask(4);
+
+        List<Task> page = taskManager.findTasks(TaskQuery.all().withStatus(TaskStatus.DONE).withLimit(2));
+        assertEquals(List.of(2, 6), page.stream().map(Task::getId).toList());
+        page = taskManager.findTasks(TaskQuery.all().withStatus(TaskStatus.DONE).withCursor(6, null).withLimit(2));
+        assertEquals(List.of(8, 10), page.stream().map(Task::getId).toList());
+        assertTrue(taskManager.findTasks(TaskQuery.all().withCursor(10, null)).isEmpty());
+        assertEquals(1, taskManager.findEpics(TaskQuery.all()).size());
+    }
+
+    @Test
+    public void shouldPageByTypeAfterDeletesAndClear() {
+        taskManager.addEpic(new Epic("e1", "ed1"));
+        taskManager.addEpic(new Epic("e2", "ed2"));
+        taskManager.addSubtask(new Subtask("s3", "sd3", TaskStatus.NEW, 1));
+        taskManager.addSubtask(new Subtask("s4", "sd4", TaskStatus.NEW, 2));
+        taskManager.addSubtask(new Subtask("s5", "sd5", TaskStatus.NEW, 1));
+        taskManager.addTask(new Task("n6", "d6", TaskStatus.NEW));
+
+        assertEquals(List.of(5), taskManager.findSubtasks(TaskQuery.all().withEpicId(1).withCursor(3, null))
+                .stream().map(Task::getId).toList());
+        taskManager.deleteEpic(1);
+        assertEquals(List.of(4), taskManager.findSubtasks(TaskQuery.all()).stream().map(Task::getId).toList());
+        assertEquals(List.of(2), taskManager.findEpics(TaskQuery.all()).stream().map(Task::getId).toList());
+
+        taskManager.clearEpicMap();
+        assertTrue(taskManager.findSubtasks(TaskQuery.all()).isEmpty());
+        taskManager.addEpic(new Epic("e7", "ed7"));
+        assertEquals(List.of(7), taskManager.findEpics(TaskQuery.all()).stream().map(Task::getId).toList());
+        assertEquals(List.of(6), taskManager.findTasks(TaskQuery.all()).stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void shouldPagePrioritizedTasksInTimeWindow() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        taskManager.addEpic(new Epic("e1", "ed1"));
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                taskManager.addTask(new Task("n" + i, "d" + i, TaskStatus.NEW, Duration.ofMinutes(5), start.plusMinutes(10L * i)));
+            } else {
+                taskManager.addSubtask(new Subtask("s" + i, "sd" + i, TaskStatus.NEW, 1, Duration.ofMinutes(5), start.plusMinutes(10L * i)));
+            }
+        }
+
+        TaskQuery window = TaskQuery.all().withTimeWindow(start.plusMinutes(14), start.plusMinutes(60));
+        List<Task> page = taskManager.findPrioritized(window.withLimit(3));
+        assertEquals(List.of(start.plusMinutes(10), start.plusMinutes(20), start.plusMinutes(30)),
+                page.stream().map(Task::getStartTime).toList());
+        Task last = page.getLast();
+        page = taskManager.findPrioritized(window.withCursor(last.getId(), last.getStartTime()));
+        assertEquals(List.of(start.plusMinutes(40), start.plusMinutes(50), start.plusMinutes(60)),
+                page.stream().map(Task::getStartTime).toList());
+
+        page = taskManager.findPrioritized(TaskQuery.all().withEpicId(1));
+        assertEquals(5, page.size());
+        assertTrue(page.stream().allMatch(task -> task instanceof Subtask));
+        assertEquals(page, taskManager.findSubtasks(TaskQuery.all().withEpicId(1).withTimeWindow(start, null)));
+    }
+
+    @Test
+    public void shouldApplyBatchAndReportEachItem() {
+        LocalDateTime now = LocalDateTime.now();
+        taskManager.addEpic(new Epic("e1", "ed1"));
+        List<BatchResult> results = taskManager.addTasks(List.of(
+                new Task("n2", "d2", TaskStatus.NEW, Duration.ofMinutes(10), now),
+                new Task("n3", "d3", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(5)),
+                new Subtask("s3", "sd3", TaskStatus.DONE, 1, Duration.ofMinutes(5), now.plusMinutes(20)),
+                new Subtask("s4", "sd4", TaskStatus.NEW, 99)));
+
+        assertEquals(List.of(BatchResult.Status.OK, BatchResult.Status.TIME_OVERLAP, BatchResult.Status.OK,
+                BatchResult.Status.NOT_FOUND), results.stream().map(BatchResult::getStatus).toList());
+        assertEquals(List.of(2, -1, 3, -1), results.stream().map(BatchResult::getId).toList());
+        assertEquals(TaskStatus.DONE, taskManager.getEpic(1).getStatus());
+
+        results = taskManager.updateTasks(List.of(new Task(2, "n2new", "d2", TaskStatus.DONE),
+                new Task(7, "n7", "d7", TaskStatus.NEW)));
+        assertTrue(results.get(0).isOk());
+        assertEquals(BatchResult.Status.NOT_FOUND, results.get(1).getStatus());
+        assertEquals("n2new", taskManager.getTask(2).getName());
+
+        results = taskManager.deleteTasks(List.of(1, 3, 2));
+        assertEquals(List.of(true, false, true), results.stream().map(BatchResult::isOk).toList());
+        assertTrue(taskManager.getTaskList().isEmpty());
+        assertTrue(taskManager.getSubtaskList().isEmpty());
+        assertTrue(taskManager.getEpicList().isEmpty());
+    }
+
+    @Test
+    public void shouldCheckBatchOverlapsInRequestOrder() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 10, 0);
+        taskManager.addTask(new Task("n1", "d1", TaskStatus.NEW, Duration.ofMinutes(10), now));
+        taskManager.addTask(new Task("n2", "d2", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(30)));
+
+        List<BatchResult> results = taskManager.addOrUpdateTasks(List.of(
+                new Task("n3", "d3", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(2)),
+                new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(60)),
+                new Task("n4", "d4", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(2)),
+                new Task("n5", "d5", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(4)),
+                new Task(2, "n2", "d2", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(62)),
+                new Task("n6", "d6", TaskStatus.NEW, Duration.ofMinutes(5), now.plusMinutes(30))));
+
+        assertEquals(List.of(BatchResult.Status.TIME_OVERLAP, BatchResult.Status.OK, BatchResult.Status.OK,
+                        BatchResult.Status.TIME_OVERLAP, BatchResult.Status.TIME_OVERLAP, BatchResult.Status.TIME_OVERLAP),
+                results.stream().map(BatchResult::getStatus).toList());
+        assertEquals(List.of(-1, 1, 3, -1, 2, -1), results.stream().map(BatchResult::getId).toList());
+        assertEquals(now.plusMinutes(30), taskManager.getTask(2).getStartTime());
+
+        results = taskManager.updateTasks(List.of(
+                new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(100)),
+                new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(10), now.plusMinutes(105))));
+        assertTrue(results.stream().allMatch(BatchResult::isOk));
+        assertEquals(now.plusMinutes(105), taskManager.getTask(1).getStartTime());
+        assertEquals(3, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void shouldDeleteOnlyTasksOfGivenTypeInBatch() {
+        taskManager.addEpic(new Epic("e1", "ed1"));
+        taskManager.addSubtask(new Subtask("s2", "sd2", TaskStatus.NEW, 1));
+        taskManager.addTask(new Task("n3", "d3", TaskStatus.NEW));
+
+        List<BatchResult> results = taskManager.deleteTasks(TaskTypes.TASK, List.of(1, 2, 3));
+        assertEquals(List.of(false, false, true), results.stream().map(BatchResult::isOk).toList());
+        assertEquals(1, taskManager.getEpicList().size());
+        assertEquals(1, taskManager.getSubtaskList().size());
+    }
+}
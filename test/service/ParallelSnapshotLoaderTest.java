@@ -0,0 +1,91 @@
+package service;
+
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelSnapshotLoaderTest {
+    private File saveFile;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        saveFile = File.createTempFile("parallelSave", ".csv");
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        pool.shutdown();
+        saveFile.delete();
+    }
+
+    private List<String> writeSave(int epicCount, String lineSeparator) throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder content = new StringBuilder(TaskCsvFormat.HEADER).append(lineSeparator);
+        int id = 0;
+        for (int i = 0; i < epicCount; i++) {
+            int epicId = ++id;
+            lines.add(epicId + ",EPIC,Эпик" + epicId + ",NEW,Описание,,null,null");
+            for (int j = 0; j < 3; j++) {
+                ++id;
+                lines.add(id + ",SUBTASK,Подзадача" + id + ",DONE,Описание," + epicId + ",PT5M,2024-01-01T00:00");
+            }
+        }
+        lines.forEach(line -> content.append(line).append(lineSeparator));
+        Files.writeString(saveFile.toPath(), content.toString(), StandardCharsets.UTF_8);
+        return lines;
+    }
+
+    @Test
+    public void shouldParseAllRecordsAcrossChunksInOrder() throws IOException {
+        List<String> lines = writeSave(250, "\r\n");
+        List<Task> tasks = new ArrayList<>();
+        ParallelSnapshotLoader.read(saveFile, pool, 7, tasks::add);
+
+        assertEquals(lines.size(), tasks.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(lines.get(i), TaskCsvFormat.toString(tasks.get(i)));
+        }
+        assertEquals(1, ((Subtask) tasks.get(1)).getEpicId());
+    }
+
+    @Test
+    public void shouldHandleMoreChunksThanLines() throws IOException {
+        List<String> lines = writeSave(1, "\n");
+        List<Task> tasks = new ArrayList<>();
+        ParallelSnapshotLoader.read(saveFile, pool, 64, tasks::add);
+
+        assertEquals(lines, tasks.stream().map(TaskCsvFormat::toString).toList());
+    }
+
+    @Test
+    public void shouldAllowAtomicReplaceOfSnapshotRightAfterLoad() throws IOException {
+        writeSave(250, "\n");
+        List<Task> tasks = new ArrayList<>();
+        ParallelSnapshotLoader.read(saveFile, pool, 7, tasks::add);
+
+        File newSave = new File(saveFile.getPath() + ".tmp");
+        Files.writeString(newSave.toPath(), TaskCsvFormat.HEADER + "\n" + TaskCsvFormat.toString(tasks.get(0)) + "\n",
+                StandardCharsets.UTF_8);
+        Files.move(newSave.toPath(), saveFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        List<Task> reloaded = new ArrayList<>();
+        ParallelSnapshotLoader.read(saveFile, pool, 7, reloaded::add);
+        assertEquals(List.of(tasks.get(0)), reloaded);
+    }
+}
@@ -0,0 +1,113 @@
+package service;
+
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskTypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrioritizedTaskIndexTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private PrioritizedTaskIndex index;
+
+    @BeforeEach
+    public void beforeEach() {
+        index = new PrioritizedTaskIndex();
+    }
+
+    @Test
+    public void shouldKeepTasksWithEqualStartTimeOrderedById() {
+        Task task3 = new Task(3, "n3", "d3", TaskStatus.NEW, Duration.ofMinutes(5), START);
+        Task task1 = new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(5), START);
+        index.add(TaskTypes.TASK, task3);
+        index.add(TaskTypes.TASK, task1);
+
+        assertEquals(List.of(task1, task3), index.toList());
+    }
+
+    @Test
+    public void shouldMergePartitionsInStartTimeOrder() {
+        Task task1 = new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(5), START.plusMinutes(20));
+        Subtask subtask2 = new Subtask(2, "n2", "d2", TaskStatus.NEW, 5, Duration.ofMinutes(5), START);
+        Task task3 = new Task(3, "n3", "d3", TaskStatus.NEW, Duration.ofMinutes(5), START.plusMinutes(40));
+        Subtask subtask4 = new Subtask(4, "n4", "d4", TaskStatus.NEW, 5, Duration.ofMinutes(5), START.plusMinutes(30));
+        index.add(TaskTypes.TASK, task1);
+        index.add(TaskTypes.SUBTASK, subtask2);
+        index.add(TaskTypes.TASK, task3);
+        index.add(TaskTypes.SUBTASK, subtask4);
+
+        assertEquals(List.of(subtask2, task1, subtask4, task3), index.toList());
+        assertEquals(subtask4, index.findOverlap(START.plusMinutes(32), START.plusMinutes(33), -1));
+    }
+
+    @Test
+    public void shouldClearOnlyOnePartition() {
+        Task task1 = new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(5), START);
+        Subtask subtask2 = new Subtask(2, "n2", "d2", TaskStatus.NEW, 5, Duration.ofMinutes(5), START.plusMinutes(10));
+        index.add(TaskTypes.TASK, task1);
+        index.add(TaskTypes.SUBTASK, subtask2);
+
+        index.clear(TaskTypes.SUBTASK);
+        assertEquals(List.of(task1), index.toList());
+        assertFalse(index.contains(TaskTypes.SUBTASK, 2));
+        assertNull(index.findOverlap(START.plusMinutes(10), START.plusMinutes(12), -1));
+    }
+
+    @Test
+    public void shouldRemoveById() {
+        Task task1 = new Task(1, "n1", "d1", TaskStatus.NEW, Duration.ofMinutes(5), START);
+        Task task2 = new Task(2, "n2", "d2", TaskStatus.NEW);
+        index.add(TaskTypes.TASK, task1);
+        index.add(TaskTypes.TASK, task2);
+        assertEquals(1, index.size());
+
+        assertFalse(index.remove(TaskTypes.SUBTASK, 1));
+        assertTrue(index.remove(TaskTypes.TASK, 1));
+        assertFalse(index.remove(TaskTypes.TASK, 1));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void shouldRebuildPartitionFromUnsortedTasks() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            tasks.add(new Task(i, "n" + i, "d" + i, TaskStatus.NEW, Duration.ofMinutes(5), START.plusMinutes((i * 37) % 100 * 10)));
+        }
+        tasks.add(new Task(101, "n101", "d101", TaskStatus.NEW));
+        index.rebuild(TaskTypes.TASK, tasks);
+
+        assertEquals(100, index.size());
+        List<Task> ordered = index.toList();
+        for (int i = 1; i < ordered.size(); i++) {
+            assertTrue(ordered.get(i - 1).getStartTime().isBefore(ordered.get(i).getStartTime()));
+        }
+        assertEquals(37, index.findOverlap(START.plusMinutes(692), START.plusMinutes(693), -1).getId());
+        assertTrue(index.remove(TaskTypes.TASK, 37));
+        assertNull(index.findOverlap(START.plusMinutes(692), START.plusMinutes(693), -1));
+    }
+
+    @Test
+    public void shouldIterateFromCursorSkippingFinishedTasks() {
+        for (int i = 1; i <= 50; i++) {
+            index.add(i % 2 == 0 ? TaskTypes.TASK : TaskTypes.SUBTASK,
+                    new Task(i, "n" + i, "d" + i, TaskStatus.NEW, Duration.ofMinutes(5), START.plusMinutes(i * 10L)));
+        }
+        List<Integer> ids = new ArrayList<>();
+        index.iterator(null, START.plusMinutes(200), 20, START.plusMinutes(153)).forEachRemaining(task -> ids.add(task.getId()));
+        assertEquals(30, ids.size());
+        assertEquals(21, ids.getFirst());
+
+        ids.clear();
+        index.iterator(TaskTypes.TASK, null, 0, START.plusMinutes(153)).forEachRemaining(task -> ids.add(task.getId()));
+        assertEquals(16, ids.getFirst());
+        assertEquals(18, ids.size());
+    }
+}
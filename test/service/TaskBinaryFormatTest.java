@@ -0,0 +1,60 @@
+package service;
+
+import model.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskBinaryFormatTest {
+
+    private static List<Task> roundTrip(List<Task> tasks) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TaskBinaryFormat.write(output, tasks);
+        return TaskBinaryFormat.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    @Test
+    public void shouldReadBackAllFieldsExactly() throws IOException {
+        LocalDateTime start = LocalDateTime.of(1960, 5, 17, 10, 3, 27, 123_456_789);
+        Task task = new Task(1, "Имя", "Описание", TaskStatus.IN_PROGRESS, Duration.ofSeconds(-90), start);
+        Epic epic = new Epic(5, "Эпик", null, TaskStatus.DONE, new ArrayList<>());
+        Subtask subtask = new Subtask(1000, "Имя", "Описание", null, 5,
+                Duration.ofMinutes(15), LocalDateTime.of(2024, 1, 1, 12, 0));
+        Task untimed = new Task(100_000, null, "", TaskStatus.NEW);
+
+        List<Task> restored = roundTrip(List.of(task, epic, subtask, untimed));
+        assertEquals(4, restored.size());
+        for (int i = 0; i < restored.size(); i++) {
+            Task expected = List.of(task, epic, subtask, untimed).get(i);
+            Task actual = restored.get(i);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getStatus(), actual.getStatus());
+            if (!(expected instanceof Epic)) {
+                assertEquals(expected.getDuration(), actual.getDuration());
+                assertEquals(expected.getStartTime(), actual.getStartTime());
+            }
+        }
+        assertEquals(5, ((Subtask) restored.get(2)).getEpicId());
+    }
+
+    @Test
+    public void shouldRejectUnknownVersion() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TaskBinaryFormat.write(output, List.of());
+        byte[] bytes = output.toByteArray();
+        bytes[TaskBinaryFormat.MAGIC.length] = (byte) (TaskBinaryFormat.VERSION + 1);
+
+        assertThrows(IOException.class, () -> TaskBinaryFormat.read(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,84 @@
+package service;
+
+import model.Task;
+import model.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskIntervalTreeTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private TaskIntervalTree tree;
+
+    @BeforeEach
+    public void beforeEach() {
+        tree = new TaskIntervalTree();
+    }
+
+    private static Task task(int id, int startMinute, int durationMinutes) {
+        return new Task(id, "n" + id, "d" + id, TaskStatus.NEW,
+                Duration.ofMinutes(durationMinutes), START.plusMinutes(startMinute));
+    }
+
+    @Test
+    public void shouldFindOverlapWithClosedBounds() {
+        tree.add(task(1, 0, 5));
+        tree.add(task(2, 10, 5));
+
+        assertEquals(1, tree.findOverlap(START.plusMinutes(5), START.plusMinutes(7), -1).getId());
+        assertEquals(2, tree.findOverlap(START.plusMinutes(8), START.plusMinutes(10), -1).getId());
+        assertNull(tree.findOverlap(START.plusMinutes(6), START.plusMinutes(9), -1));
+        assertNull(tree.findOverlap(START.plusMinutes(16), START.plusMinutes(20), -1));
+    }
+
+    @Test
+    public void shouldIgnoreExcludedId() {
+        tree.add(task(1, 0, 5));
+        assertNull(tree.findOverlap(START, START.plusMinutes(5), 1));
+        assertNotNull(tree.findOverlap(START, START.plusMinutes(5), 2));
+    }
+
+    @Test
+    public void shouldKeepOrderAndFindOverlapsOnLargeTree() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1000; i >= 1; i--) {
+            Task task = task(i, i * 10, 5);
+            tasks.addFirst(task);
+            tree.add(task);
+        }
+        assertEquals(1000, tree.size());
+
+        List<Task> ordered = new ArrayList<>();
+        tree.forEach(ordered::add);
+        assertEquals(tasks, ordered);
+
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals(i, tree.findOverlap(START.plusMinutes(i * 10 + 2), START.plusMinutes(i * 10 + 3), -1).getId());
+            assertNull(tree.findOverlap(START.plusMinutes(i * 10 + 6), START.plusMinutes(i * 10 + 9), -1));
+        }
+    }
+
+    @Test
+    public void shouldNotFindRemovedTask() {
+        Task task1 = task(1, 0, 5);
+        Task task2 = task(2, 10, 5);
+        tree.add(task1);
+        tree.add(task2);
+
+        assertTrue(tree.remove(task1));
+        assertFalse(tree.remove(task1));
+        assertEquals(1, tree.size());
+        assertNull(tree.findOverlap(START, START.plusMinutes(5), -1));
+        assertEquals(task2, tree.findOverlap(START, START.plusMinutes(10), -1));
+
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertNull(tree.findOverlap(START, START.plusMinutes(100), -1));
+    }
+}
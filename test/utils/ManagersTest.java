@@ -23,6 +23,11 @@ class ManagersTest {
         assertNotNull(taskManager);
     }
 
+    @Test
+    public void shouldReturnNonNullConcurrentTaskManager() {
+        assertNotNull(Managers.getConcurrent());
+    }
+
     @Test
     public void shouldReturnNonNullHistoryManager() {
         assertNotNull(historyManager);